@@ -37,13 +37,99 @@ application {
 dependencies {
     implementation("org.xerial:sqlite-jdbc:3.45.3.0")
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.10.0")
+    testImplementation("org.junit.jupiter:junit-jupiter-params:5.10.0")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.10.0")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher:1.10.0")
+    testRuntimeOnly("org.testfx:openjfx-monocle:21.0.2")
 }
 
 tasks.withType<org.gradle.api.tasks.testing.Test> {
     useJUnitPlatform()
 }
 
+// Unit tests that need the FX toolkit start it headless; they lay nothing out, so no font stack is needed.
+tasks.test {
+    systemProperty("glass.platform", "Monocle")
+    systemProperty("monocle.platform", "Headless")
+    systemProperty("prism.order", "sw")
+}
+
+// Headless performance tests: the real EMR frame driven by a synthetic typist under Monocle,
+// so no display server is needed. `check` (and so `build`) runs them and fails when a latency
+// budget in perf-budgets.properties is exceeded; run them alone with `gradle perfTest`. On a
+// machine without the native font stack below, build with -PskipPerf to leave them out.
+//
+// Monocle needs no display, but JavaFX still lays text out with the platform's native font
+// stack. A plain Linux machine needs pango (libpango-1.0, libpangoft2-1.0), fontconfig and
+// freetype, plus at least one font; on Debian or Ubuntu:
+//   apt-get install libpango-1.0-0 libpangoft2-1.0-0 libfontconfig1 libfreetype6 fonts-dejavu-core
+//
+// The budgets come from a calibration run on such a machine: `gradle perfTest -Pperf.calibrate`
+// writes build/reports/perf/perf-budgets.calibrated.properties (worst p50/p99 per workload and
+// note size, times -Pperf.calibrate.headroom, default 2) to review and copy over the committed file.
+val perfTest by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[perfTest.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[perfTest.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
+dependencies {
+    "perfTestImplementation"("org.junit.jupiter:junit-jupiter-api:5.10.0")
+    "perfTestImplementation"("org.junit.jupiter:junit-jupiter-params:5.10.0")
+    "perfTestImplementation"("org.testfx:testfx-core:4.0.18")
+    "perfTestImplementation"("org.testfx:testfx-junit5:4.0.18")
+    "perfTestRuntimeOnly"("org.testfx:openjfx-monocle:21.0.2")
+    "perfTestRuntimeOnly"("org.junit.jupiter:junit-jupiter-engine:5.10.0")
+    "perfTestRuntimeOnly"("org.junit.platform:junit-platform-launcher:1.10.0")
+}
+
+val perfTestTask = tasks.register<Test>("perfTest") {
+    description = "Measures per-keystroke latency of the EMR frame against the configured budgets."
+    group = "verification"
+    testClassesDirs = perfTest.output.classesDirs
+    classpath = perfTest.runtimeClasspath
+    shouldRunAfter(tasks.test)
+    outputs.upToDateWhen { false }
+
+    // The frame keeps its dictionary and notes under user.dir; give it a scratch home.
+    val home = layout.buildDirectory.dir("perf/home").get().asFile
+    doFirst { home.mkdirs() }
+    workingDir = home
+    systemProperty("app.env", "prod")
+    // A throwaway data key, so a run never touches the keystore in the user's home.
+    systemProperty("gds.keystore", File(home, "keys/data.p12").absolutePath)
+    systemProperty("gds.keystore.password", "perf-only")
+    systemProperty("perf.reportDir", layout.buildDirectory.dir("reports/perf").get().asFile.absolutePath)
+    systemProperty("testfx.robot", "glass")
+    systemProperty("testfx.headless", "true")
+    systemProperty("glass.platform", "Monocle")
+    systemProperty("monocle.platform", "Headless")
+    systemProperty("headless.geometry", "1920x1080-32")
+    systemProperty("prism.order", "sw")
+    systemProperty("java.awt.headless", "true")
+    // -Pperf.noteSizes=1024,65536 -Pperf.dictionarySizes=100 -Pperf.budget.typing.p99=20 and so on.
+    providers.gradlePropertiesPrefixedBy("perf.").get().forEach { (key, value) -> systemProperty(key, value) }
+    maxHeapSize = "2g"
+    testLogging {
+        showStandardStreams = true
+    }
+}
+
+// Plain versus encrypted file throughput: gradle encryptionBenchmark [-PbenchmarkArgs="256 /some/dir"]
+tasks.register<JavaExec>("encryptionBenchmark") {
+    description = "Compares plain and StreamingAead-encrypted file throughput."
+    group = "verification"
+    classpath = perfTest.runtimeClasspath
+    mainClass.set("com.ittia.gds.crypto.EncryptionBenchmark")
+    args = providers.gradleProperty("benchmarkArgs").getOrElse("").split(" ").filter { it.isNotBlank() }
+}
+
+if (!providers.gradleProperty("skipPerf").isPresent) {
+    tasks.check { dependsOn(perfTestTask) }
+}
+
 // Skip duplicate resources to avoid processResources failure
 tasks.withType<Copy> {
     duplicatesStrategy = DuplicatesStrategy.EXCLUDE
@@ -0,0 +1,154 @@
+package com.ittia.gds;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.ittia.gds.audit.AuditLog;
+import com.ittia.gds.crypto.StreamingAead;
+import com.ittia.gds.db.DatabaseBackup;
+import com.ittia.gds.db.DatabaseManager;
+import com.ittia.gds.note.NoteStore;
+import com.ittia.gds.note.index.NoteIndex;
+import com.ittia.gds.note.outbox.Outbox;
+import com.ittia.gds.note.outbox.OutboxSender;
+import com.ittia.gds.ui.mainframe.changestring.AbbreviationsMain;
+import com.ittia.gds.ui.mainframe.predict.PhraseSuggestionService;
+
+/**
+ * The services behind the EMR windows: one set per JVM, shared by every window the way the
+ * abbreviation dictionary is. Each owns files under HOME_DIR that a second copy would race on
+ * (note ids, index segment names, outbox deliveries, the phrase model), so windows must never
+ * open their own. The set is opened with the first window and closed once, when the instance
+ * exits; {@link #get()} after {@link #closeShared()} opens a new one.
+ * A service that fails to open is null, and the windows carry on without it.
+ */
+final class EmrServices {
+
+    private static EmrServices shared;
+
+    final NoteStore noteStore;
+    final NoteIndex noteIndex;
+    final Outbox outbox;
+    final AuditLog auditLog;
+    final PhraseSuggestionService phraseService;
+    final DatabaseBackup dictionaryBackup; // The only one, so backups and restores never overlap
+    private final List<Consumer<String>> statusListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> closeActions = new ArrayList<>(); // In the order they must run
+
+    /** @return The services of this JVM, opening them on first use. */
+    static synchronized EmrServices get() {
+        if (shared == null) {
+            shared = new EmrServices();
+        }
+        return shared;
+    }
+
+    /** Stops every shared service; called once on instance exit. */
+    static synchronized void closeShared() {
+        if (shared != null) {
+            shared.closeActions.forEach(Runnable::run);
+            shared = null;
+        }
+        AbbreviationsMain.shutdownUsageRecorder();
+    }
+
+    private EmrServices() {
+        StreamingAead cipher = null;
+        try {
+            cipher = StreamingAead.forInstallation();
+        } catch (IOException e) {
+            System.err.println("Failed to load the data key; notes are unavailable: " + e.getMessage());
+        }
+
+        // Outbound first, so delivery stops before the stores it reads from.
+        Outbox outbox = null;
+        if (cipher != null) {
+            try {
+                outbox = new Outbox(EntryDir.HOME_DIR.resolve("outbox"), cipher);
+                String gateway = System.getProperty("gds.emr.gateway");
+                if (gateway != null && !gateway.isBlank()) {
+                    OutboxSender sender = new OutboxSender(outbox, URI.create(gateway.trim()));
+                    sender.setStatusListener(message -> statusListeners.forEach(listener -> listener.accept(message)));
+                    sender.start();
+                    closeActions.add(sender::stop);
+                }
+                closeActions.add(outbox::shutdown);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Failed to start EMR outbox: " + e.getMessage());
+            }
+        }
+        this.outbox = outbox;
+
+        // The model, the notes and their index all hold patient text, so all are encrypted at rest.
+        PhraseSuggestionService phraseService = null;
+        NoteStore noteStore = null;
+        NoteIndex noteIndex = null;
+        if (cipher != null) {
+            phraseService = new PhraseSuggestionService(
+                    EntryDir.HOME_DIR.resolve("model/phrases.bin"), GDSEMR_frame.TEXT_AREA_TITLES.length, cipher);
+            try {
+                noteStore = new NoteStore(EntryDir.HOME_DIR.resolve("notes"), cipher);
+                closeActions.add(noteStore::shutdown);
+                // Saved notes feed the phrase model; training runs on the note store's thread.
+                PhraseSuggestionService phrases = phraseService;
+                noteStore.addSaveListener(note -> phrases.train(note.sections()));
+
+                // Each saved note is indexed incrementally; notes saved while the index was missing are replayed.
+                NoteIndex index = new NoteIndex(EntryDir.HOME_DIR.resolve("notes/index"),
+                        GDSEMR_frame.TEXT_AREA_TITLES, cipher);
+                closeActions.add(index::shutdown);
+                index.scheduleCompaction(10, 6 * 60, TimeUnit.MINUTES);
+                noteStore.addSaveListener(note -> index.addNoteAsync(note.id(), note.sections()));
+                noteStore.replayAsync(index.getMaxIndexedId(), note -> index.addNoteAsync(note.id(), note.sections()));
+                noteIndex = index;
+            } catch (IOException e) {
+                System.err.println("Failed to open note store: " + e.getMessage());
+            }
+        }
+        this.phraseService = phraseService;
+        this.noteStore = noteStore;
+        this.noteIndex = noteIndex;
+
+        // Hourly online backups of the dictionary into the rescue directory, off the FX thread.
+        // The Rescue window takes its backups and restores through this same instance.
+        // Without the key there are no backups at all rather than unencrypted ones.
+        DatabaseBackup dictionaryBackup = null;
+        if (cipher == null) {
+            System.err.println("Dictionary backups are off: the data key is unavailable.");
+        } else {
+            try {
+                dictionaryBackup = new DatabaseBackup(DatabaseManager.DB_FILE, EntryDir.BACKUP_DIR,
+                        GDSittiaEntry.BACKUP_GENERATIONS, cipher);
+                dictionaryBackup.schedule(1, 60, TimeUnit.MINUTES);
+                closeActions.add(dictionaryBackup::shutdown);
+            } catch (IOException e) {
+                System.err.println("Failed to schedule dictionary backups: " + e.getMessage());
+            }
+        }
+        this.dictionaryBackup = dictionaryBackup;
+
+        // Audit trail: records are queued from the FX thread and written in batches by the log's own thread.
+        AuditLog auditLog = null;
+        try {
+            auditLog = new AuditLog(EntryDir.HOME_DIR.resolve("audit"), System.getProperty("user.name", "unknown"));
+            closeActions.add(auditLog::close);
+        } catch (IOException e) {
+            System.err.println("Failed to open audit log: " + e.getMessage());
+        }
+        this.auditLog = auditLog;
+    }
+
+    /** Adds a listener for the EMR sender's status messages, which arrive on the sender's thread. */
+    void addStatusListener(Consumer<String> listener) {
+        statusListeners.add(listener);
+    }
+
+    void removeStatusListener(Consumer<String> listener) {
+        statusListeners.remove(listener);
+    }
+}
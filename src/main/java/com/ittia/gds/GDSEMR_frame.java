@@ -1,21 +1,35 @@
 package com.ittia.gds;
 
+import com.ittia.gds.audit.AuditLog;
+import com.ittia.gds.audit.AuditRecord;
 import com.ittia.gds.db.DatabaseManager;
+import com.ittia.gds.note.NoteStore;
+import com.ittia.gds.note.outbox.Outbox;
 import com.ittia.gds.ui.mainframe.changestring.AbbreviationManagerUI;
 import com.ittia.gds.ui.mainframe.changestring.AbbreviationsMain;
+import com.ittia.gds.ui.mainframe.document.SectionDocument;
+import com.ittia.gds.ui.mainframe.output.CombinedOutputView;
+import com.ittia.gds.ui.mainframe.predict.PhraseSuggestionService;
+import com.ittia.gds.ui.mainframe.search.NoteSearchUI;
+import com.ittia.gds.ui.mainframe.spellcheck.MedicalSpellChecker;
+import com.ittia.gds.ui.mainframe.spellcheck.SpellCheckService;
+import com.ittia.gds.ui.theme.StyleProfiler;
+import com.ittia.gds.ui.theme.ThemeManager;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
@@ -23,14 +37,12 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.RowConstraints;
 import javafx.scene.layout.VBox;
-import javafx.scene.paint.Color;
-import javafx.scene.paint.CycleMethod;
-import javafx.scene.paint.LinearGradient;
-import javafx.scene.paint.Stop;
-import javafx.scene.text.Font;
-import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 public class GDSEMR_frame extends Application {
     private static final double FRAME_WIDTH = 1350;
     private static final double FRAME_HEIGHT = 900;
@@ -38,82 +50,140 @@ public class GDSEMR_frame extends Application {
         "CC>", "PI>", "ROS>", "PMH>", "S>",
         "O>", "Physical Exam>", "A>", "P>", "Comment>"
     };
-    public static TextArea[] textAreas;
-    public static TextArea tempOutputArea;
+    // Per window: a running instance can have several EMR windows open at once.
+    private TextArea[] textAreas;
+    private SectionDocument[] documents; // Edit model and undo history of each text area
+    private CombinedOutputView outputView;
     public static TextField gradientInputField;
 
+    private NoteStore noteStore;
+    private NoteSearchUI noteSearchUI;
+    private Consumer<NoteStore.SavedNote> noteLoader;
+    private Outbox outbox;
+    private Label statusLabel;
+    private AuditLog auditLog;
+    private boolean exitOnClose = true;
+    private final List<Runnable> closeActions = new ArrayList<>(); // Releases this window's services
+
     @Override
     public void start(Stage primaryStage) {
         textAreas = new TextArea[TEXT_AREA_TITLES.length];
+        documents = new SectionDocument[TEXT_AREA_TITLES.length];
         BooleanProperty cleared = new SimpleBooleanProperty(false);
 
         for (int i = 0; i < TEXT_AREA_TITLES.length; i++) {
             TextArea ta = new TextArea();
             ta.setPromptText(TEXT_AREA_TITLES[i]);
-            ta.setFont(Font.font("Consolas", 13));
             ta.setWrapText(true);
             ta.setPrefRowCount(3);
-            ta.setStyle("-fx-border-color: #e0e0e0; -fx-border-width: 1px; -fx-border-radius: 5px;");
+            ta.getStyleClass().add("section-area");
             ta.focusedProperty().addListener((obs, oldVal, newVal) -> {
                 if (newVal && !cleared.get()) {
-                    for (TextArea t : textAreas) {
-                        if (t != null) t.clear();
+                    for (SectionDocument d : documents) {
+                        if (d != null) d.load("");
                     }
                     cleared.set(true);
                 }
             });
             textAreas[i] = ta;
+            // Listeners below get only the changed range (TextDelta) instead of old and new copies of the section.
+            documents[i] = new SectionDocument(ta);
         }
 
-        tempOutputArea = new TextArea();
-        tempOutputArea.setEditable(true);
-        tempOutputArea.setPromptText("Output");
-        tempOutputArea.setFont(Font.font("Consolas", 13));
-        tempOutputArea.setWrapText(true);
-        tempOutputArea.setPrefRowCount(40);
-        tempOutputArea.setStyle("-fx-border-color: #d0d0d0; -fx-border-width: 1px; -fx-border-radius: 5px;");
+        // Read-only and virtualised: only the paragraphs in view are laid out, however long the note.
+        outputView = new CombinedOutputView(TEXT_AREA_TITLES);
 
         // --- NEW ABBREVIATION SYSTEM INTEGRATION ---
         DatabaseManager dbManager = new DatabaseManager();
 
-        // Pass TEXT_AREA_TITLES to AbbreviationsMain constructor
-        AbbreviationsMain abbreviationHandler = new AbbreviationsMain(textAreas, tempOutputArea, TEXT_AREA_TITLES);
+        // Expansions are applied through the section documents, so each one is a single undo step.
+        AbbreviationsMain abbreviationHandler = new AbbreviationsMain(documents);
 
         AbbreviationManagerUI abbreviationManagerUI = new AbbreviationManagerUI(abbreviationHandler, dbManager);
         // --- END NEW ABBREVIATION SYSTEM INTEGRATION ---
 
-        // The listener for combining text into the output area remains.
-        // This listener is conceptually distinct from the abbreviation expansion.
-        for (TextArea ta : textAreas) {
-            ta.textProperty().addListener((obs, oldVal, newVal) -> {
-                StringBuilder sb = new StringBuilder();
-                for (int j = 0; j < TEXT_AREA_TITLES.length; j++) {
-                    String content = textAreas[j].getText();
-                    if (content != null && !content.trim().isEmpty()) {
-                        sb.append(TEXT_AREA_TITLES[j]).append(" ").append(content.trim()).append("\n\n");
+        // Notes, index, outbox, phrase model, backups and audit log are shared by every window in the JVM.
+        EmrServices services = EmrServices.get();
+
+        // Edits are recorded once per visit to a section (on focus loss), not per keystroke.
+        auditLog = services.auditLog;
+        if (auditLog != null) {
+            abbreviationHandler.setAuditLog(auditLog);
+            for (int i = 0; i < textAreas.length; i++) {
+                final int section = i;
+                boolean[] edited = { false };
+                documents[i].addListener(delta -> edited[0] = true);
+                textAreas[i].focusedProperty().addListener((obs, oldVal, newVal) -> {
+                    if (!newVal && edited[0]) {
+                        edited[0] = false;
+                        auditLog.record(AuditRecord.Type.EDIT, section, textAreas[section].getLength() + " chars");
                     }
+                });
+            }
+        }
+
+        // Each change refreshes only the paragraphs it touched in the combined output.
+        // This listener is conceptually distinct from the abbreviation expansion.
+        for (int i = 0; i < documents.length; i++) {
+            final int section = i;
+            documents[i].addListener(delta -> outputView.updateSection(section, documents[section].getContent(), delta));
+        }
+
+        // Background spell check; findings are summarised next to each section title.
+        Label[] spellLabels = new Label[TEXT_AREA_TITLES.length];
+        SpellCheckService spellCheckService = new SpellCheckService(
+                EntryDir.SUPPORT_DIR.resolve("medical_terms.txt"),
+                (section, findings) -> showSpellFindings(spellLabels[section], findings));
+        spellCheckService.attach(documents);
+        closeActions.add(spellCheckService::shutdown);
+
+        // Ghost text comes from the shared phrase model; search and copy forward read the shared notes.
+        Label[] ghostLabels = new Label[TEXT_AREA_TITLES.length];
+        PhraseSuggestionService phraseService = services.phraseService;
+        noteStore = services.noteStore;
+        if (noteStore != null) {
+            noteLoader = note -> {
+                cleared.set(true); // Keep the first-focus clearing from wiping the opened note
+                for (int i = 0; i < documents.length && i < note.sections().length; i++) {
+                    documents[i].load(note.sections()[i]);
                 }
-                tempOutputArea.setText(sb.toString().trim());
-            });
+            };
+            if (services.noteIndex != null) {
+                noteSearchUI = new NoteSearchUI(services.noteIndex, noteStore, noteLoader);
+            }
         }
 
+        // Submitted notes wait in the shared outbox; its one sender reports to every open window.
+        outbox = services.outbox;
+        Consumer<String> deliveryStatus = message -> Platform.runLater(() -> statusLabel.setText(message));
+        services.addStatusListener(deliveryStatus);
+        closeActions.add(() -> services.removeStatusListener(deliveryStatus));
+
         GridPane rightInputGrid = new GridPane();
         rightInputGrid.setHgap(15);
         rightInputGrid.setVgap(10);
         rightInputGrid.setPadding(new Insets(15));
-        rightInputGrid.setStyle("-fx-background-color: #f5f5f5; -fx-border-radius: 10px; -fx-background-radius: 10px; " +
-                "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.1), 10, 0, 0, 0);");
+        rightInputGrid.getStyleClass().add("input-grid");
 
         for (int i = 0; i < TEXT_AREA_TITLES.length; i++) {
             Label lbl = new Label(TEXT_AREA_TITLES[i]);
-            lbl.setFont(Font.font("Arial", FontWeight.BOLD, 14));
-            lbl.setTextFill(Color.web("#333333"));
-            VBox section = new VBox(3, lbl, textAreas[i]);
+            lbl.getStyleClass().add("section-title");
+            spellLabels[i] = new Label();
+            spellLabels[i].getStyleClass().add("spell-summary");
+            ghostLabels[i] = new Label();
+            ghostLabels[i].getStyleClass().add("ghost-text");
+            HBox header = new HBox(8, lbl, spellLabels[i], ghostLabels[i]);
+            header.setAlignment(Pos.BASELINE_LEFT);
+            VBox section = new VBox(3, header, textAreas[i]);
             VBox.setVgrow(textAreas[i], Priority.ALWAYS);
             GridPane.setConstraints(section, i % 2, i / 2);
             rightInputGrid.getChildren().add(section);
         }
 
+        if (phraseService != null) {
+            phraseService.attach(textAreas, ghostLabels);
+        }
+
         ColumnConstraints col1 = new ColumnConstraints();
         col1.setHgrow(Priority.ALWAYS);
         ColumnConstraints col2 = new ColumnConstraints();
@@ -129,19 +199,10 @@ public class GDSEMR_frame extends Application {
 
         VBox leftOutputPane = new VBox();
         leftOutputPane.setPadding(new Insets(15));
-        LinearGradient gradient = new LinearGradient(
-                0, 0, 0, 1, true, CycleMethod.NO_CYCLE,
-                new Stop(0, Color.rgb(230, 245, 230)),
-                new Stop(1, Color.rgb(200, 230, 200))
-        );
-        leftOutputPane.setBackground(new javafx.scene.layout.Background(new javafx.scene.layout.BackgroundFill(gradient, new javafx.scene.layout.CornerRadii(10), Insets.EMPTY)));
-        leftOutputPane.setStyle("-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.1), 10, 0, 0, 0);");
-
-        ScrollPane outSp = new ScrollPane(tempOutputArea);
-        outSp.setFitToWidth(true);
-        outSp.setVbarPolicy(ScrollPane.ScrollBarPolicy.ALWAYS);
-        VBox.setVgrow(outSp, Priority.ALWAYS);
-        leftOutputPane.getChildren().add(outSp);
+        leftOutputPane.getStyleClass().add("output-pane");
+
+        VBox.setVgrow(outputView, Priority.ALWAYS);
+        leftOutputPane.getChildren().add(outputView);
 
         SplitPane splitPane = new SplitPane();
         splitPane.getItems().addAll(leftOutputPane, rightInputGrid);
@@ -150,50 +211,192 @@ public class GDSEMR_frame extends Application {
         HBox northPanel = new HBox(15);
         northPanel.setPadding(new Insets(10, 15, 10, 15));
         northPanel.setAlignment(Pos.CENTER_RIGHT);
-        northPanel.setStyle("-fx-background-color: #e8e8e8;");
+        northPanel.getStyleClass().add("toolbar-panel");
+
+        ComboBox<ThemeManager.Theme> themeBox = new ComboBox<>();
+        themeBox.getItems().setAll(ThemeManager.Theme.values());
+        themeBox.setValue(ThemeManager.getTheme());
+        themeBox.setOnAction(e -> ThemeManager.setTheme(themeBox.getValue()));
+        northPanel.getChildren().add(themeBox);
 
         Button manageAbbrBtn = new Button("Manage Abbreviations");
-        manageAbbrBtn.setStyle("-fx-background-color: #f0ad4e; -fx-text-fill: white; -fx-font-weight: bold;");
+        manageAbbrBtn.getStyleClass().addAll("action-button", "warning");
         manageAbbrBtn.setOnAction(e -> abbreviationManagerUI.display());
         northPanel.getChildren().add(manageAbbrBtn);
+
+        Button copyForwardBtn = new Button("Copy Forward");
+        copyForwardBtn.getStyleClass().addAll("action-button", "info");
+        copyForwardBtn.setOnAction(e -> copyForward());
+        northPanel.getChildren().add(copyForwardBtn);
                 
         HBox southPanel = new HBox(15);
         southPanel.setPadding(new Insets(10, 15, 10, 15));
         southPanel.setAlignment(Pos.CENTER_LEFT);
-        southPanel.setStyle("-fx-background-color: #e8e8e8;");
+        southPanel.getStyleClass().add("toolbar-panel");
+        statusLabel = new Label();
 
         String[] btns = {"Save", "Load", "Clear", "Submit"};
         for (String name : btns) {
             Button b1 = new Button(name);
             b1.setPrefWidth(80);
-            b1.setStyle("-fx-background-color: #5cb85c; -fx-text-fill: white; -fx-font-weight: bold; -fx-border-radius: 5px; -fx-background-radius: 5px;");
-            b1.setOnMouseEntered(e -> b1.setStyle("-fx-background-color: #4cae4c; -fx-text-fill: white; -fx-font-weight: bold; -fx-border-radius: 5px; -fx-background-radius: 5px;"));
-            b1.setOnMouseExited(e -> b1.setStyle("-fx-background-color: #5cb85c; -fx-text-fill: white; -fx-font-weight: bold; -fx-border-radius: 5px; -fx-background-radius: 5px;"));
+            b1.getStyleClass().addAll("action-button", "success"); // Hover comes from the stylesheet
+            b1.setOnAction(e -> handleButton(name));
             northPanel.getChildren().add(b1);
 
             Button b2 = new Button(name);
             b2.setPrefWidth(80);
-            b2.setStyle("-fx-background-color: #0275d8; -fx-text-fill: white; -fx-font-weight: bold; -fx-border-radius: 5px; -fx-background-radius: 5px;");
-            b2.setOnMouseEntered(e -> b2.setStyle("-fx-background-color: #025aa5; -fx-text-fill: white; -fx-font-weight: bold; -fx-border-radius: 5px; -fx-background-radius: 5px;"));
-            b2.setOnMouseExited(e -> b2.setStyle("-fx-background-color: #0275d8; -fx-text-fill: white; -fx-font-weight: bold; -fx-border-radius: 5px; -fx-background-radius: 5px;"));
+            b2.getStyleClass().add("action-button");
+            b2.setOnAction(e -> handleButton(name));
             southPanel.getChildren().add(b2);
         }
+        southPanel.getChildren().add(statusLabel);
 
         BorderPane root = new BorderPane();
         root.setCenter(splitPane);
         root.setTop(northPanel);
         root.setBottom(southPanel);
-        root.setStyle("-fx-background-color: #ffffff;");
+        root.getStyleClass().add("frame-root");
         root.setPrefSize(FRAME_WIDTH, FRAME_HEIGHT);
 
         Scene scene = new Scene(root, FRAME_WIDTH, FRAME_HEIGHT);
+        ThemeManager.apply(scene);
+        // -Dgds.profile.css=true reports the per-pulse CSS and layout cost on exit.
+        StyleProfiler styleProfiler = Boolean.getBoolean("gds.profile.css") ? StyleProfiler.attach(scene) : null;
         primaryStage.setTitle("GDS EMR Interface for Physician - Enhanced");
         primaryStage.setScene(scene);
-        primaryStage.setOnCloseRequest(e -> System.exit(0));
+        primaryStage.setOnCloseRequest(e -> {
+            if (styleProfiler != null) System.out.println(styleProfiler.summary());
+            closeActions.forEach(Runnable::run);
+            if (exitOnClose) Platform.exit();
+        });
         primaryStage.show();
     }
 
+    /** Runs when this frame is the application itself; the launcher closes the services on its own exit. */
+    @Override
+    public void stop() {
+        EmrServices.closeShared();
+    }
+
+    /**
+     * Whether closing the window ends the process (the default, for a standalone frame).
+     * The launcher turns it off so one EMR window can close while the instance keeps serving others.
+     */
+    public void setExitOnClose(boolean exitOnClose) {
+        this.exitOnClose = exitOnClose;
+    }
+
+    /** @return This window's section text areas, in {@link #TEXT_AREA_TITLES} order. */
+    public TextArea[] getTextAreas() {
+        return textAreas;
+    }
+
+    private void handleButton(String name) {
+        switch (name) {
+            case "Save":
+                saveNote();
+                break;
+            case "Load":
+                if (noteSearchUI != null) noteSearchUI.display();
+                break;
+            case "Submit":
+                submitNote();
+                break;
+            default:
+                System.out.println(name + " is not implemented yet.");
+        }
+    }
+
+    private void saveNote() {
+        if (noteStore == null) {
+            statusLabel.setText("Note store is unavailable.");
+            return;
+        }
+        String[] sections = new String[textAreas.length];
+        for (int i = 0; i < textAreas.length; i++) {
+            sections[i] = textAreas[i].getText();
+        }
+        statusLabel.setText("Saving...");
+        noteStore.saveAsync(sections).whenComplete((note, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println(error.getMessage());
+                statusLabel.setText("Save failed.");
+            } else {
+                statusLabel.setText("Saved note #" + note.id() + " (" + note.newChunks() + " changed section(s) stored)");
+                if (auditLog != null) auditLog.record(AuditRecord.Type.NOTE_SAVED, -1, "note #" + note.id());
+            }
+        }));
+    }
+
+    private void submitNote() {
+        if (outbox == null) {
+            statusLabel.setText("EMR outbox is unavailable.");
+            return;
+        }
+        StringBuilder note = new StringBuilder();
+        for (int j = 0; j < TEXT_AREA_TITLES.length; j++) {
+            String content = textAreas[j].getText();
+            if (content != null && !content.trim().isEmpty()) {
+                note.append(TEXT_AREA_TITLES[j]).append(" ").append(content.trim()).append("\n\n");
+            }
+        }
+        if (note.length() == 0) {
+            statusLabel.setText("Nothing to submit.");
+            return;
+        }
+        outbox.submitAsync(note.toString().trim()).whenComplete((queued, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println(error.getMessage());
+                statusLabel.setText("Submit failed.");
+            } else if (!queued) {
+                statusLabel.setText("EMR outbox is full; try again once the gateway catches up.");
+            } else {
+                statusLabel.setText("Queued for EMR delivery.");
+                if (auditLog != null) auditLog.record(AuditRecord.Type.NOTE_SUBMITTED, -1, "");
+            }
+        }));
+    }
+
+    /**
+     * Starts a follow-up note from the previous one. Unchanged sections hash to the chunks the
+     * previous note already references, so saving the follow-up only stores what was edited.
+     */
+    private void copyForward() {
+        if (noteStore == null) {
+            statusLabel.setText("Note store is unavailable.");
+            return;
+        }
+        noteStore.loadLatestAsync().whenComplete((note, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println(error.getMessage());
+                statusLabel.setText("Copy forward failed.");
+            } else if (note == null) {
+                statusLabel.setText("No previous note to copy forward.");
+            } else {
+                noteLoader.accept(note);
+                statusLabel.setText("Copied forward note #" + note.id());
+            }
+        }));
+    }
+
+    private static void showSpellFindings(Label label, List<MedicalSpellChecker.Misspelling> findings) {
+        if (findings.isEmpty()) {
+            label.setText("");
+            label.setTooltip(null);
+            return;
+        }
+        StringBuilder details = new StringBuilder();
+        for (MedicalSpellChecker.Misspelling m : findings) {
+            details.append(m.word()).append(" \u2192 ").append(String.join(", ", m.suggestions())).append("\n");
+        }
+        MedicalSpellChecker.Misspelling first = findings.get(0);
+        label.setText("\u26A0 " + first.word() + " \u2192 " + first.suggestions().get(0)
+                + (findings.size() > 1 ? " (+" + (findings.size() - 1) + ")" : ""));
+        label.setTooltip(new Tooltip(details.toString().trim()));
+    }
+
     public static void main(String[] args) {
         launch(args);
+        System.exit(0); // Runs the shutdown hooks, as the launcher does
     }
 }
\ No newline at end of file
@@ -1,10 +1,19 @@
 package com.ittia.gds;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.concurrent.CompletableFuture;
+
+import com.ittia.gds.crypto.StreamingAead;
+import com.ittia.gds.instance.SingleInstance;
+import com.ittia.gds.support.SupportLibrary;
+import com.ittia.gds.ui.support.DocumentViewerUI;
+import com.ittia.gds.ui.support.SupportLibraryUI;
+import com.ittia.gds.ui.rescue.RescueUI;
+import com.ittia.gds.ui.mainframe.changestring.AbbreviationsMain;
+import com.ittia.gds.ui.theme.ThemeManager;
+
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
@@ -15,23 +24,83 @@ import javafx.stage.Stage;
 public class GDSittiaEntry extends Application {
 
     private static final String[] BUTTON_NAMES = {
-        "Log In", "Ittia Start", "Prologue", "Version Information", "Rescue", "Quit"
+        "Log In", "Ittia Start", "Prologue", "Version Information", "Support Library", "Rescue", "Quit"
+    };
+    private static final long SUPPORT_CACHE_BYTES = 256L << 20;
+    private static final SupportLibrary SUPPORT_LIBRARY = new SupportLibrary(EntryDir.SUPPORT_DIR, SUPPORT_CACHE_BYTES);
+    static final int BACKUP_GENERATIONS = 10;
+    // Loaded while the launcher is idle, so the first EMR window skips class loading and verification.
+    private static final String[] PREWARM_CLASSES = {
+        "com.ittia.gds.GDSEMR_frame",
+        "com.ittia.gds.EmrServices",
+        "com.ittia.gds.ui.mainframe.output.CombinedOutputView",
+        "com.ittia.gds.ui.mainframe.changestring.AbbreviationManagerUI",
+        "com.ittia.gds.ui.mainframe.spellcheck.SpellCheckService",
+        "com.ittia.gds.ui.mainframe.predict.PhraseSuggestionService",
+        "com.ittia.gds.note.NoteStore",
+        "com.ittia.gds.note.index.NoteIndex",
+        "com.ittia.gds.note.outbox.Outbox",
+        "com.ittia.gds.audit.AuditLog",
+        "javafx.scene.control.TextArea",
+        "javafx.scene.control.SplitPane",
+        "javafx.scene.control.ComboBox",
     };
 
+    private SingleInstance instance;
+
+    /**
+     * Single-instance mode is on unless started with {@code -Dgds.singleInstance=false}.
+     * A launch that finds a running instance asks it to open an EMR window ({@code --launcher}
+     * asks it to show the launcher instead) and exits without starting JavaFX.
+     */
+    private static boolean singleInstanceEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("gds.singleInstance"));
+    }
+
+    private static String commandFor(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--launcher")) return SingleInstance.SHOW_LAUNCHER;
+        }
+        return SingleInstance.OPEN_EMR;
+    }
+
     @Override
     public void start(Stage primaryStage) {
+        if (singleInstanceEnabled()) {
+            try {
+                instance = SingleInstance.listen(SingleInstance.defaultSocket(),
+                        command -> Platform.runLater(() -> handleInstanceCommand(command, primaryStage)));
+                if (instance == null) {
+                    // Another launch won the race to become the instance; hand over to it instead.
+                    SingleInstance.sendToRunning(SingleInstance.defaultSocket(), commandFor(getParameters().getRaw().toArray(new String[0])));
+                    Platform.exit();
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Single-instance mode unavailable: " + e.getMessage());
+            }
+        }
+        prewarm();
+
         primaryStage.setTitle("ITTIA Launcher");
 
         VBox root = new VBox(10);
-        root.setStyle("-fx-padding: 20; -fx-alignment: center;");
+        root.getStyleClass().add("launcher-root");
 
         createButtons(root);
 
         Scene scene = new Scene(root, 300, 350);
+        ThemeManager.apply(scene);
         primaryStage.setScene(scene);
         primaryStage.show();
     }
 
+    /** Closes the services shared by the EMR windows, once, as the instance exits. */
+    @Override
+    public void stop() {
+        EmrServices.closeShared();
+    }
+
     private void createButtons(VBox root) {
         for (String name : BUTTON_NAMES) {
             Button button = new Button(name);
@@ -74,12 +143,16 @@ public class GDSittiaEntry extends Application {
                 launchGDSEMRFrame();
                 break;
 
+            case "Support Library":
+                new SupportLibraryUI(SUPPORT_LIBRARY).display();
+                break;
             case "Rescue":
                 System.out.println("Rescue action triggered.");
+                openRescue();
                 break;
             case "Quit":
                 System.out.println("Exiting application.");
-                System.exit(0);
+                Platform.exit(); // Through stop(), so the shared EMR services close first
                 break;
             default:
                 System.err.println("Unrecognized action for button: " + buttonText);
@@ -87,39 +160,83 @@ public class GDSittiaEntry extends Application {
     }
 
     /**
-     * Reads the content of a specified resource file and displays it in an Alert dialog.
+     * Loads a resource through the support library off the FX thread and shows it page by page.
      * @param resourcePath The absolute path to the resource file within the classpath (e.g., "/path/to/file.txt").
-     * @param title The title for the Alert dialog.
-     * @throws IOException If the resource file cannot be found or read.
+     * @param title The title for the viewer window.
      */
-    private void displayResourceFile(String resourcePath, String title) throws IOException {
-        StringBuilder content = new StringBuilder();
-        try (InputStream is = getClass().getResourceAsStream(resourcePath);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-
-            if (is == null) {
-                System.err.println("Resource not found: " + resourcePath);
-                throw new IOException("File not found at: " + resourcePath);
+    private void displayResourceFile(String resourcePath, String title) {
+        SUPPORT_LIBRARY.openResourceAsync(resourcePath).whenComplete((document, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println("Error: Resource file not found or path is incorrect: " + resourcePath);
+                Alert errorAlert = new Alert(AlertType.ERROR);
+                errorAlert.setTitle("Error");
+                errorAlert.setHeaderText("An error occurred");
+                errorAlert.setContentText("Could not open the requested file or launch application.");
+                errorAlert.showAndWait();
+            } else {
+                new DocumentViewerUI(document, title).display();
             }
+        }));
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
+    /**
+     * Opens the Rescue window on the shared dictionary backup. Opening the shared services loads
+     * the data key, so that happens off the FX thread.
+     */
+    private void openRescue() {
+        CompletableFuture.supplyAsync(EmrServices::get).whenComplete((services, error) -> Platform.runLater(() -> {
+            if (error != null || services.dictionaryBackup == null) {
+                Alert errorAlert = new Alert(AlertType.ERROR);
+                errorAlert.setTitle("Error");
+                errorAlert.setHeaderText("Rescue is unavailable");
+                errorAlert.setContentText("Dictionary backups could not be opened; see the console for details.");
+                errorAlert.showAndWait();
+            } else {
+                new RescueUI(services.dictionaryBackup).display();
             }
+        }));
+    }
 
-            Alert alert = new Alert(AlertType.INFORMATION);
-            alert.setTitle(title);
-            alert.setHeaderText(null);
-            alert.setContentText(content.toString());
-            alert.getDialogPane().setPrefSize(900, 800);
-            alert.showAndWait();
-
-        } catch (NullPointerException e) {
-            System.err.println("Error: Resource file not found or path is incorrect: " + resourcePath);
-            throw new IOException("Resource file could not be loaded: " + resourcePath, e);
+    private void handleInstanceCommand(String command, Stage launcher) {
+        if (SingleInstance.SHOW_LAUNCHER.equals(command)) {
+            launcher.setIconified(false);
+            launcher.show();
+            launcher.toFront();
+        } else {
+            launchGDSEMRFrame();
         }
     }
 
+    /**
+     * Warms the shared abbreviation dictionary, the data key and the EMR classes on a background
+     * thread, so the first EMR window, and every hand-off after it, is built from warm state.
+     * The classes are loaded, linked and initialized here; their static initializers only build
+     * constants, so running them off the FX thread is safe.
+     */
+    private static void prewarm() {
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            AbbreviationsMain.preloadDictionary();
+            try {
+                StreamingAead.forInstallation();
+            } catch (IOException e) {
+                System.err.println("Failed to load the data key: " + e.getMessage());
+            }
+            ClassLoader loader = GDSittiaEntry.class.getClassLoader();
+            for (String name : PREWARM_CLASSES) {
+                try {
+                    Class.forName(name, true, loader);
+                } catch (ClassNotFoundException e) {
+                    System.err.println("Pre-warm skipped missing class " + name);
+                }
+            }
+            System.out.printf("Pre-warmed in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        }, "prewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
     /**
      * Launches the GDSEMR_frame application in a new stage.
      */
@@ -127,14 +244,18 @@ public class GDSittiaEntry extends Application {
 
     private void launchGDSEMRFrame() {
        try {
+          long started = System.nanoTime();
           // 1) Create a fresh instance of your JavaFX app class
           GDSEMR_frame emrApp = new GDSEMR_frame();
+          // Closing one EMR window must not end the instance that serves the others.
+          emrApp.setExitOnClose(false);
           
           // 2) Create a new Stage
           Stage emrStage = new Stage();
           
           // 3) Manually invoke its start(...) method
           emrApp.start(emrStage);
+          System.out.printf("EMR window opened in %d ms%n", (System.nanoTime() - started) / 1_000_000);
           
           // (Optional) hide the launcher window:
           // Stage launcher = (Stage) someButton.getScene().getWindow();
@@ -152,6 +273,10 @@ public class GDSittiaEntry extends Application {
 
 
     public static void main(String[] args) {
+        if (singleInstanceEnabled() && SingleInstance.sendToRunning(SingleInstance.defaultSocket(), commandFor(args))) {
+            return; // Served by the running instance
+        }
         launch(args);
+        System.exit(0); // Runs the shutdown hooks that flush the audit log and remove the instance socket
     }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.ittia.gds.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only, binary audit trail.
+ * {@link #record} only allocates the record, offers it to a lock-free queue and unparks the
+ * writer, so it is cheap enough to call from the FX thread on every edit. A dedicated writer
+ * thread sleeps until records arrive, then drains whatever has accumulated, appends it as one
+ * write and forces it to disk once per batch (group commit): records queued while one batch is
+ * being forced go out together in the next.
+ * Segments are rotated at {@link #SEGMENT_BYTES}. Segment layout:
+ * <pre>
+ *   int magic, int version
+ *   records: int bodyLength, int crc32c(body), body
+ *   body:    long timestamp, byte type, byte section, short userLength, user (UTF-8),
+ *            int detailLength, detail (UTF-8)
+ * </pre>
+ * A record whose length or checksum does not add up marks a torn tail and ends the segment.
+ */
+public class AuditLog {
+
+    static final int MAGIC = 0x47444131; // "GDA1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final String PREFIX = "audit-";
+    static final String SUFFIX = ".seg";
+
+    private static final long SEGMENT_BYTES = 16L << 20;
+    private static final int MAX_BATCH = 4096;
+    private static final long CLOSE_WAIT_MILLIS = 2000;
+
+    private final Path directory;
+    private final String user;
+    private final long segmentBytes;
+    private final ConcurrentLinkedQueue<AuditRecord> queue = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private final Thread shutdownHook = new Thread(this::close, "audit-flush");
+    private final CRC32C crc = new CRC32C();
+    private volatile boolean running = true;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+    private long segmentSequence;
+    private long segmentSize;
+    private volatile long batches;
+
+    /**
+     * Opens a fresh segment in the directory and starts the writer thread.
+     * @param directory Where segments are kept.
+     * @param user The user recorded with every event.
+     */
+    public AuditLog(Path directory, String user) throws IOException {
+        this(directory, user, SEGMENT_BYTES);
+    }
+
+    /** Rotates at {@code segmentBytes} instead; small segments let tests rotate quickly. */
+    AuditLog(Path directory, String user, long segmentBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.user = user;
+        this.segmentBytes = segmentBytes;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path p : stream) {
+                segmentSequence = Math.max(segmentSequence, sequenceOf(p));
+            }
+        }
+        openNextSegment();
+        this.writer = new Thread(this::drain, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues an event; never blocks.
+     * @param type What happened.
+     * @param section The section index, or -1 for the whole note.
+     * @param detail Free text such as the abbreviation key; may be empty.
+     */
+    public void record(AuditRecord.Type type, int section, String detail) {
+        queue.offer(new AuditRecord(System.currentTimeMillis(), type, section, user, detail == null ? "" : detail));
+        LockSupport.unpark(writer);
+    }
+
+    // Owns the channel: only this thread writes to it, and it closes it once the queue is drained.
+    private void drain() {
+        try {
+            while (running || !queue.isEmpty()) {
+                AuditRecord next = queue.poll();
+                if (next == null) {
+                    // A record offered after the poll leaves a permit, so this returns at once.
+                    if (running) LockSupport.park(this);
+                    continue;
+                }
+                writeBatch(next);
+            }
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close audit log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeBatch(AuditRecord next) {
+        buffer.clear();
+        int count = 0;
+        do {
+            encode(next);
+            count++;
+        } while (count < MAX_BATCH && (next = queue.poll()) != null);
+        buffer.flip();
+        try {
+            int written = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            segmentSize += written;
+            batches++;
+            if (segmentSize >= segmentBytes) {
+                channel.close();
+                openNextSegment();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write audit records (" + count + " lost): " + e.getMessage());
+        }
+    }
+
+    private void encode(AuditRecord r) {
+        byte[] userBytes = r.user().getBytes(StandardCharsets.UTF_8);
+        byte[] detailBytes = r.detail().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = Long.BYTES + 2 + Short.BYTES + userBytes.length + Integer.BYTES + detailBytes.length;
+        if (buffer.remaining() < bodyLength + 8) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bodyLength + 8));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        int start = buffer.position();
+        buffer.putInt(bodyLength).putInt(0);
+        buffer.putLong(r.timestamp())
+              .put(r.type().code)
+              .put((byte) r.section())
+              .putShort((short) userBytes.length).put(userBytes)
+              .putInt(detailBytes.length).put(detailBytes);
+        crc.reset();
+        crc.update(buffer.array(), start + 8, bodyLength);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void openNextSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%010d%s", PREFIX, ++segmentSequence, SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        channel.write(header);
+        channel.force(true);
+        segmentSize = HEADER_BYTES;
+    }
+
+    /** @return How many batches have been written and forced so far. */
+    long batchesWritten() {
+        return batches;
+    }
+
+    static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Flushes everything queued so far and stops the writer, waiting up to two seconds for it.
+     * The writer closes the segment itself once it is done, so a slow disk never sees the
+     * channel closed under a write.
+     */
+    public void close() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
+        }
+        try {
+            writer.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            System.err.println("Audit writer is still flushing; it closes the log when done.");
+        }
+    }
+}
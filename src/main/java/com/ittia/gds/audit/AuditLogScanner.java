@@ -0,0 +1,111 @@
+package com.ittia.gds.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import com.ittia.gds.EntryDir;
+
+/**
+ * Reads audit segments written by {@link AuditLog}.
+ * Each segment is memory-mapped and walked in place; records are checksummed and decoded
+ * straight out of the mapping without copying the file onto the heap.
+ * <p>
+ * Usage: {@code AuditLogScanner [directory] [--user name] [--type EXPANSION] [--section n]}
+ */
+public final class AuditLogScanner {
+
+    /**
+     * Visits every intact record in the directory, oldest segment first.
+     * @return The number of records visited.
+     */
+    public static long scan(Path directory, Consumer<AuditRecord> consumer) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, AuditLog.PREFIX + "*" + AuditLog.SUFFIX)) {
+            for (Path p : stream) segments.add(p);
+        }
+        segments.sort((a, b) -> Long.compare(AuditLog.sequenceOf(a), AuditLog.sequenceOf(b)));
+
+        long count = 0;
+        CRC32C crc = new CRC32C();
+        for (Path segment : segments) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                if (channel.size() < AuditLog.HEADER_BYTES) continue;
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (map.getInt() != AuditLog.MAGIC || map.getInt() != AuditLog.VERSION) {
+                    System.err.println("Skipping unrecognised audit segment: " + segment);
+                    continue;
+                }
+                while (map.remaining() >= 8) {
+                    int bodyLength = map.getInt();
+                    int checksum = map.getInt();
+                    if (bodyLength <= 0 || bodyLength > map.remaining()) break; // Torn tail
+                    ByteBuffer body = map.slice(map.position(), bodyLength);
+                    crc.reset();
+                    crc.update(body.duplicate());
+                    if ((int) crc.getValue() != checksum) break;
+                    map.position(map.position() + bodyLength);
+                    consumer.accept(decode(body));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static AuditRecord decode(ByteBuffer body) {
+        long timestamp = body.getLong();
+        AuditRecord.Type type = AuditRecord.Type.of(body.get());
+        int section = body.get();
+        byte[] user = new byte[body.getShort() & 0xffff];
+        body.get(user);
+        byte[] detail = new byte[body.getInt()];
+        body.get(detail);
+        return new AuditRecord(timestamp, type, section,
+                new String(user, StandardCharsets.UTF_8), new String(detail, StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = EntryDir.HOME_DIR.resolve("audit");
+        String user = null;
+        AuditRecord.Type type = null;
+        Integer section = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--user": user = args[++i]; break;
+                case "--type": type = AuditRecord.Type.valueOf(args[++i]); break;
+                case "--section": section = Integer.parseInt(args[++i]); break;
+                default: directory = Paths.get(args[i]);
+            }
+        }
+
+        final String userFilter = user;
+        final AuditRecord.Type typeFilter = type;
+        final Integer sectionFilter = section;
+        long[] matched = { 0 };
+        long start = System.nanoTime();
+        long total = scan(directory, r -> {
+            if (userFilter != null && !userFilter.equals(r.user())) return;
+            if (typeFilter != null && typeFilter != r.type()) return;
+            if (sectionFilter != null && sectionFilter != r.section()) return;
+            matched[0]++;
+            System.out.println(Instant.ofEpochMilli(r.timestamp()) + "\t" + r.user() + "\t" + r.type()
+                    + "\t" + r.section() + "\t" + r.detail());
+        });
+        System.err.printf("%d of %d records matched in %.1f ms%n", matched[0], total, (System.nanoTime() - start) / 1e6);
+    }
+
+    private AuditLogScanner() {}
+}
@@ -0,0 +1,31 @@
+package com.ittia.gds.audit;
+
+/**
+ * One audit event: who did what to which section, and when.
+ * @param timestamp Milliseconds since the epoch.
+ * @param type What happened.
+ * @param section The section index in {@code TEXT_AREA_TITLES} order, or -1 for the whole note.
+ * @param user The operating-system user that was logged in.
+ * @param detail Free text, e.g. the abbreviation key or the note id.
+ */
+public record AuditRecord(long timestamp, Type type, int section, String user, String detail) {
+
+    public enum Type {
+        EDIT(1), EXPANSION(2), NOTE_SAVED(3), NOTE_SUBMITTED(4),
+        /** Read back with a code this version does not know, e.g. written by a newer one. */
+        UNKNOWN(0);
+
+        final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type of(byte code) {
+            for (Type t : values()) {
+                if (t.code == code) return t;
+            }
+            return UNKNOWN;
+        }
+    }
+}
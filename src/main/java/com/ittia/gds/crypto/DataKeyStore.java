@@ -0,0 +1,142 @@
+package com.ittia.gds.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import com.ittia.gds.EntryDir;
+
+/**
+ * The local PKCS12 keystore holding the key that encrypts notes, the outbox and backups.
+ * The keystore is {@code -Dgds.keystore}, by default {@code ~/.gds/keys/data.p12}, outside the
+ * data directory and so outside its copies and backups; it is created with a fresh AES-256 key
+ * on first use. Its password must come from {@code -Dgds.keystore.password} or the
+ * {@code GDS_KEYSTORE_PASSWORD} environment variable and is never written to disk.
+ * A keystore left in {@code HOME_DIR/keys} by earlier versions is moved on first use.
+ */
+public final class DataKeyStore {
+
+    public static final String DATA_KEY_ALIAS = "gds-data";
+
+    private static final String TYPE = "PKCS12";
+    private static final Path DEFAULT_FILE = Path.of(System.getProperty("gds.keystore",
+            Path.of(System.getProperty("user.home"), ".gds", "keys", "data.p12").toString()));
+
+    private static SecretKey installationKey;
+
+    /**
+     * @return The installation's data key, loading or creating the default keystore once.
+     * @throws IOException If no password is configured or the keystore cannot be opened with it.
+     */
+    public static synchronized SecretKey installationKey() throws IOException {
+        if (installationKey == null) {
+            String password = System.getProperty("gds.keystore.password", System.getenv("GDS_KEYSTORE_PASSWORD"));
+            // Earlier versions kept the keystore, and a generated password beside it, in the data directory.
+            Path legacyFile = EntryDir.HOME_DIR.resolve("keys").resolve("data.p12");
+            installationKey = installationKey(DEFAULT_FILE, legacyFile,
+                    password == null || password.isEmpty() ? null : password.toCharArray());
+        }
+        return installationKey;
+    }
+
+    static SecretKey installationKey(Path file, Path legacyFile, char[] password) throws IOException {
+        if (password == null) {
+            throw new IOException("No keystore password; set -Dgds.keystore.password or GDS_KEYSTORE_PASSWORD");
+        }
+        if (Files.notExists(file) && Files.exists(legacyFile)) {
+            moveLegacy(legacyFile, file, password);
+        }
+        return loadOrCreate(file, password, DATA_KEY_ALIAS);
+    }
+
+    /**
+     * Reads the AES key stored under {@code alias}, creating the keystore or the key when missing.
+     * @throws IOException If the keystore cannot be read, e.g. because the password is wrong.
+     */
+    public static SecretKey loadOrCreate(Path file, char[] password, String alias) throws IOException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(TYPE);
+            if (Files.exists(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    keyStore.load(in, password);
+                }
+            } else {
+                keyStore.load(null, password);
+            }
+            KeyStore.ProtectionParameter protection = new KeyStore.PasswordProtection(password);
+            if (keyStore.getEntry(alias, protection) instanceof KeyStore.SecretKeyEntry entry) {
+                return entry.getSecretKey();
+            }
+
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            SecretKey key = generator.generateKey();
+            keyStore.setEntry(alias, new KeyStore.SecretKeyEntry(key), protection);
+            store(keyStore, file, password);
+            return key;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to open keystore " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves an old keystore to {@code file} under the configured password, then deletes it and
+     * the password file generated beside it. Without that file it was already under the configured one.
+     */
+    private static void moveLegacy(Path legacyFile, Path file, char[] password) throws IOException {
+        Path passwordFile = legacyFile.resolveSibling(legacyFile.getFileName() + ".pass");
+        char[] legacyPassword = Files.exists(passwordFile)
+                ? Files.readString(passwordFile, StandardCharsets.UTF_8).trim().toCharArray() : password;
+        try {
+            KeyStore legacy = KeyStore.getInstance(TYPE);
+            try (InputStream in = Files.newInputStream(legacyFile)) {
+                legacy.load(in, legacyPassword);
+            }
+            KeyStore moved = KeyStore.getInstance(TYPE);
+            moved.load(null, password);
+            if (legacy.getEntry(DATA_KEY_ALIAS, new KeyStore.PasswordProtection(legacyPassword))
+                    instanceof KeyStore.SecretKeyEntry entry) {
+                moved.setEntry(DATA_KEY_ALIAS, entry, new KeyStore.PasswordProtection(password));
+            }
+            store(moved, file, password);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to move keystore " + legacyFile + ": " + e.getMessage(), e);
+        }
+        Files.delete(legacyFile);
+        Files.deleteIfExists(passwordFile);
+        System.out.println("Moved the data keystore to " + file);
+    }
+
+    private static void store(KeyStore keyStore, Path file, char[] password) throws IOException, GeneralSecurityException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (Files.notExists(directory)) {
+            Files.createDirectories(directory);
+            restrictToOwner(directory, "rwx------");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            keyStore.store(out, password);
+        }
+        restrictToOwner(temp, "rw-------");
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void restrictToOwner(Path file, String permissions) throws IOException {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString(permissions));
+        }
+    }
+
+    private DataKeyStore() {}
+}
@@ -0,0 +1,452 @@
+package com.ittia.gds.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Chunked AES-GCM encryption for files at rest.
+ * A file is a clear header ({@code "GDE1"}, version, chunk size and a random 8-byte nonce
+ * prefix) followed by chunks of {@link #CHUNK_SIZE} plaintext bytes, each sealed separately
+ * with a 16-byte tag. A chunk's nonce is the file's prefix plus the chunk index, and its
+ * associated data is the header plus a last-chunk flag, so chunks cannot be reordered, moved
+ * between files, dropped from the end or appended to without failing authentication.
+ * <p>
+ * Only one chunk is ever held in memory, whatever the file size, and because every chunk has
+ * the same sealed size any chunk can be read on its own ({@link RandomAccessReader}). The
+ * JDK's AES-GCM uses the CPU's AES and carry-less multiply instructions where available.
+ * Instances are thread-safe; each stream or reader has its own Cipher.
+ */
+public final class StreamingAead {
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x47444531; // "GDE1"
+    private static final byte VERSION = 1;
+    private static final int PREFIX_BYTES = 8;
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + Integer.BYTES + PREFIX_BYTES;
+    private static final int TAG_BYTES = 16;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static StreamingAead installation;
+
+    private final SecretKey key;
+    private final SecretKey nameKey;
+    private final int chunkSize;
+    private final SecureRandom random = new SecureRandom();
+
+    public StreamingAead(SecretKey key) {
+        this(key, CHUNK_SIZE);
+    }
+
+    StreamingAead(SecretKey key, int chunkSize) {
+        this.key = key;
+        this.chunkSize = chunkSize;
+        this.nameKey = deriveNameKey(key);
+    }
+
+    /** @return The cipher for this installation's data key from {@link DataKeyStore}. */
+    public static synchronized StreamingAead forInstallation() throws IOException {
+        if (installation == null) {
+            installation = new StreamingAead(DataKeyStore.installationKey());
+        }
+        return installation;
+    }
+
+    /** Encrypts everything written to the returned stream into {@code out}; close it to seal the last chunk. */
+    public OutputStream newEncryptingStream(OutputStream out) throws IOException {
+        return new EncryptingStream(out);
+    }
+
+    /** Decrypts a stream written by {@link #newEncryptingStream}, verifying every chunk as it is read. */
+    public InputStream newDecryptingStream(InputStream in) throws IOException {
+        return new DecryptingStream(in);
+    }
+
+    /** Creates or replaces a file whose content is encrypted as it is written. */
+    public OutputStream newOutputStream(Path file) throws IOException {
+        return newEncryptingStream(Files.newOutputStream(file));
+    }
+
+    /**
+     * Opens an encrypted file for reading, verifying every chunk as it is read.
+     * @throws IOException If the file does not start with this format's header; unencrypted
+     *         files are refused, never passed through.
+     */
+    public InputStream newInputStream(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            return new DecryptingStream(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /** Opens an encrypted file for reading individual chunks in any order. */
+    public RandomAccessReader openRandomAccess(Path file) throws IOException {
+        return new RandomAccessReader(file);
+    }
+
+    public byte[] encrypt(byte[] plaintext) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(plaintext.length + HEADER_BYTES
+                + TAG_BYTES * (plaintext.length / chunkSize + 1));
+        try (OutputStream out = newEncryptingStream(buffer)) {
+            out.write(plaintext);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Decrypts data from {@link #encrypt}.
+     * @throws IOException If the data does not start with this format's header.
+     */
+    public byte[] decrypt(byte[] data) throws IOException {
+        try (InputStream in = newDecryptingStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * @return True when the data starts with this format's magic number. Only one-time migrations
+     *         of files written before encryption use it; readers refuse anything else.
+     */
+    public static boolean isEncrypted(byte[] data) {
+        return data.length >= Integer.BYTES && ByteBuffer.wrap(data, 0, Integer.BYTES).getInt() == MAGIC;
+    }
+
+    /** @return True when the file starts with this format's magic number. */
+    public static boolean isEncrypted(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return isEncrypted(in.readNBytes(Integer.BYTES));
+        }
+    }
+
+    /**
+     * A keyed hash for naming stored objects, so that file names reveal nothing about content.
+     * The key is derived from the data key and is never used for encryption.
+     */
+    public byte[] keyedHash(byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(nameKey);
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static SecretKey deriveNameKey(SecretKey key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getEncoded(), "HmacSHA256"));
+            return new SecretKeySpec(mac.doFinal("gds object names".getBytes(StandardCharsets.US_ASCII)), "HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private byte[] newHeader() {
+        byte[] prefix = new byte[PREFIX_BYTES];
+        random.nextBytes(prefix);
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(VERSION).putInt(chunkSize).put(prefix).array();
+    }
+
+    /** Seals and opens the chunks of one file. Not thread-safe. */
+    private final class ChunkCipher {
+        final byte[] header;
+        final int chunkSize;
+        private final byte[] iv = new byte[12];
+        private final Cipher cipher;
+
+        ChunkCipher(byte[] header) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            if (header.length < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an encrypted file");
+            }
+            if (buffer.get() != VERSION) {
+                throw new IOException("Unsupported encrypted file version");
+            }
+            this.chunkSize = buffer.getInt();
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("Encrypted file has an invalid chunk size: " + chunkSize);
+            }
+            this.header = header;
+            buffer.get(iv, 0, PREFIX_BYTES);
+            try {
+                this.cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(TRANSFORMATION + " is not available", e);
+            }
+        }
+
+        int seal(long index, boolean last, byte[] in, int length, byte[] out) throws IOException {
+            try {
+                init(Cipher.ENCRYPT_MODE, index, last);
+                return cipher.doFinal(in, 0, length, out, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Encryption failed: " + e.getMessage(), e);
+            }
+        }
+
+        int open(long index, boolean last, byte[] in, int length, byte[] out) throws IOException {
+            try {
+                init(Cipher.DECRYPT_MODE, index, last);
+                return cipher.doFinal(in, 0, length, out, 0);
+            } catch (AEADBadTagException e) {
+                throw new IOException("Encrypted data is corrupt or has been tampered with (chunk " + index + ")", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Decryption failed: " + e.getMessage(), e);
+            }
+        }
+
+        private void init(int mode, long index, boolean last) throws GeneralSecurityException, IOException {
+            if (index > 0xFFFF_FFFFL) {
+                throw new IOException("Encrypted file is too large");
+            }
+            iv[8] = (byte) (index >>> 24);
+            iv[9] = (byte) (index >>> 16);
+            iv[10] = (byte) (index >>> 8);
+            iv[11] = (byte) index;
+            cipher.init(mode, key, new GCMParameterSpec(TAG_BYTES * 8, iv));
+            cipher.updateAAD(header);
+            cipher.updateAAD(new byte[] { (byte) (last ? 1 : 0) });
+        }
+    }
+
+    /**
+     * Buffers one chunk of plaintext. A full chunk is only sealed once more data arrives, since
+     * until then it may turn out to be the last one; {@link #flush()} therefore cannot push out
+     * a partial chunk.
+     */
+    private final class EncryptingStream extends OutputStream {
+        private final OutputStream out;
+        private final ChunkCipher chunks;
+        private final byte[] plain;
+        private final byte[] sealed;
+        private int filled;
+        private long index;
+        private boolean closed;
+
+        EncryptingStream(OutputStream out) throws IOException {
+            this.out = out;
+            this.chunks = new ChunkCipher(newHeader());
+            this.plain = new byte[chunks.chunkSize];
+            this.sealed = new byte[chunks.chunkSize + TAG_BYTES];
+            out.write(chunks.header);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            while (len > 0) {
+                if (filled == plain.length) {
+                    sealChunk(false);
+                }
+                int n = Math.min(len, plain.length - filled);
+                System.arraycopy(b, off, plain, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void sealChunk(boolean last) throws IOException {
+            int n = chunks.seal(index++, last, plain, filled, sealed);
+            out.write(sealed, 0, n);
+            filled = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                sealChunk(true);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /** Reads one sealed chunk plus one byte ahead, which tells whether the chunk is the last. */
+    private final class DecryptingStream extends InputStream {
+        private final InputStream in;
+        private final ChunkCipher chunks;
+        private final byte[] sealed;
+        private final byte[] plain;
+        private int carried;
+        private int pos;
+        private int limit;
+        private long index;
+        private boolean finished;
+
+        DecryptingStream(InputStream in) throws IOException {
+            this.in = in;
+            this.chunks = new ChunkCipher(in.readNBytes(HEADER_BYTES));
+            this.sealed = new byte[chunks.chunkSize + TAG_BYTES + 1];
+            this.plain = new byte[chunks.chunkSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (pos == limit) {
+                if (finished) return -1;
+                openChunk();
+            }
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(plain, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - pos;
+        }
+
+        private void openChunk() throws IOException {
+            int full = chunks.chunkSize + TAG_BYTES;
+            int n = carried + in.readNBytes(sealed, carried, sealed.length - carried);
+            boolean last = n < sealed.length;
+            int length = last ? n : full;
+            if (length < TAG_BYTES) {
+                throw new IOException("Encrypted file is truncated");
+            }
+            limit = chunks.open(index++, last, sealed, length, plain);
+            pos = 0;
+            if (last) {
+                finished = true;
+            } else {
+                sealed[0] = sealed[full];
+                carried = 1;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** Random access to the chunks of an encrypted file; each read verifies the chunk it touches. */
+    public final class RandomAccessReader implements Closeable {
+        private final FileChannel channel;
+        private final ChunkCipher chunks;
+        private final long chunkCount;
+        private final long size;
+        private final byte[] sealed;
+
+        private RandomAccessReader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) { }
+                this.chunks = new ChunkCipher(header.array());
+                long body = channel.size() - HEADER_BYTES;
+                long full = chunks.chunkSize + TAG_BYTES;
+                this.chunkCount = (body + full - 1) / full;
+                if (chunkCount == 0 || body - (chunkCount - 1) * full < TAG_BYTES) {
+                    throw new IOException("Encrypted file is truncated");
+                }
+                this.size = body - chunkCount * TAG_BYTES;
+                this.sealed = new byte[(int) full];
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /** @return The plaintext size. */
+        public long size() {
+            return size;
+        }
+
+        public long getChunkCount() {
+            return chunkCount;
+        }
+
+        public int getChunkSize() {
+            return chunks.chunkSize;
+        }
+
+        /** Decrypts one chunk. */
+        public synchronized byte[] readChunk(long index) throws IOException {
+            if (index < 0 || index >= chunkCount) {
+                throw new IndexOutOfBoundsException("Chunk " + index + " of " + chunkCount);
+            }
+            long full = chunks.chunkSize + TAG_BYTES;
+            long offset = HEADER_BYTES + index * full;
+            int length = (int) Math.min(full, channel.size() - offset);
+            ByteBuffer buffer = ByteBuffer.wrap(sealed, 0, length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Encrypted file is truncated");
+                }
+            }
+            byte[] plain = new byte[length - TAG_BYTES];
+            chunks.open(index, index == chunkCount - 1, sealed, length, plain);
+            return plain;
+        }
+
+        /**
+         * Reads plaintext starting at {@code position}, decrypting only the chunks it spans.
+         * @return The number of bytes read, or -1 at the end of the file.
+         */
+        public int read(long position, byte[] dst, int off, int len) throws IOException {
+            if (position >= size) return -1;
+            int total = 0;
+            while (total < len && position < size) {
+                long index = position / chunks.chunkSize;
+                int within = (int) (position % chunks.chunkSize);
+                byte[] chunk = readChunk(index);
+                int n = Math.min(len - total, chunk.length - within);
+                System.arraycopy(chunk, within, dst, off + total, n);
+                total += n;
+                position += n;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
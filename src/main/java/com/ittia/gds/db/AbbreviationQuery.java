@@ -0,0 +1,56 @@
+package com.ittia.gds.db;
+
+import com.ittia.gds.ui.model.Abbreviation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The manager's filtered, sorted query, kept apart from {@link DatabaseManager} so it can run
+ * against any connection without touching the live dictionary.
+ */
+final class AbbreviationQuery {
+
+    static List<Abbreviation> find(Connection conn, String category, String owner, String text,
+            DatabaseManager.SortOrder sort, int limit) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT key, value, category, owner, updated_at, usage_count FROM abbreviations WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (category != null) {
+            sql.append(" AND category = ?");
+            params.add(category);
+        }
+        if (owner != null) {
+            sql.append(" AND owner = ?");
+            params.add(owner);
+        }
+        if (text != null && !text.isEmpty()) {
+            String pattern = "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            sql.append(" AND (key LIKE ? ESCAPE '\\' OR value LIKE ? ESCAPE '\\')");
+            params.add(pattern);
+            params.add(pattern);
+        }
+        sql.append(" ORDER BY ").append(sort.orderBy).append(" LIMIT ?");
+        params.add(limit);
+
+        List<Abbreviation> result = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new Abbreviation(rs.getString(1), rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getLong(5), rs.getInt(6)));
+                }
+            }
+        }
+        return result;
+    }
+
+    private AbbreviationQuery() {}
+}
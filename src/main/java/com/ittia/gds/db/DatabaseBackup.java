@@ -0,0 +1,328 @@
+package com.ittia.gds.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.core.DB;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/**
+ * Online backups of the abbreviation database.
+ * Copies are taken with SQLite's backup API {@link #PAGES_PER_STEP} pages at a time, releasing
+ * the source between steps so the editor's short writes are never locked out for long; a write
+ * from another connection simply makes SQLite restart the copy. Each generation is named
+ * {@code abbreviations-<yyyyMMdd-HHmmss-SSS>.db} and has a {@code .sha256} sidecar in
+ * {@code sha256sum} format. Only the newest {@code generations} copies are kept.
+ * With a cipher, the SQLite copy is made next to the live database and streamed, encrypted,
+ * into {@code abbreviations-<stamp>.db.gde}, so no plaintext copy lands in the backup folder;
+ * the checksum then covers the encrypted file. Generations taken unencrypted before are encrypted
+ * when a backup is first opened with a cipher; after that an unencrypted generation is refused.
+ * All work runs on the "db-backup" thread.
+ */
+public class DatabaseBackup {
+
+    private static final int PAGES_PER_STEP = 256;
+    private static final int STEP_PAUSE_MILLIS = 2; // Yields the source to writers between steps
+    private static final int BUSY_SLEEP_MILLIS = 50;
+    private static final int BUSY_ATTEMPTS = 100;
+    private static final String PREFIX = "abbreviations-";
+    private static final String SUFFIX = ".db";
+    private static final String ENCRYPTED_SUFFIX = ".db.gde";
+    private static final String CHECKSUM_SUFFIX = ".sha256";
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path database;
+    private final Path directory;
+    private final int generations;
+    private final StreamingAead cipher; // Null keeps generations unencrypted
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "db-backup");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * @param database The live SQLite file.
+     * @param directory Where generations are kept (normally {@code EntryDir.BACKUP_DIR}).
+     * @param generations How many backups to retain.
+     */
+    public DatabaseBackup(Path database, Path directory, int generations) throws IOException {
+        this(database, directory, generations, null);
+    }
+
+    /**
+     * @param cipher Encrypts new generations, or null to write them as plain SQLite files.
+     */
+    public DatabaseBackup(Path database, Path directory, int generations, StreamingAead cipher) throws IOException {
+        this.database = database;
+        this.directory = Files.createDirectories(directory);
+        this.generations = Math.max(1, generations);
+        this.cipher = cipher;
+        if (cipher != null) {
+            encryptPlainGenerations();
+        }
+    }
+
+    /**
+     * Backs the database up periodically. A run is skipped when the database has not changed
+     * since the newest generation was taken.
+     */
+    public void schedule(long initialDelay, long period, TimeUnit unit) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                if (isChangedSinceLastBackup()) {
+                    Path backup = backup(fraction -> { });
+                    prune();
+                    System.out.println("Backed up abbreviation database to " + backup);
+                }
+            } catch (IOException | SQLException e) {
+                System.err.println("Scheduled database backup failed: " + e.getMessage());
+            }
+        }, initialDelay, period, unit);
+    }
+
+    /**
+     * Takes a backup now.
+     * @param progress Receives the fraction copied so far, on the backup thread.
+     * @return A future completed with the new generation.
+     */
+    public CompletableFuture<Path> backupAsync(DoubleConsumer progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Path generation = backup(progress);
+                prune();
+                return generation;
+            } catch (IOException | SQLException e) {
+                throw new IllegalStateException("Database backup failed: " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Verifies a generation against its checksum, keeps a copy of the current database as a new
+     * generation, and then copies the chosen generation over the live database.
+     * @param progress Receives the fraction restored so far, on the backup thread.
+     */
+    public CompletableFuture<Void> restoreAsync(Path generation, DoubleConsumer progress) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!verify(generation)) {
+                    throw new IOException("Checksum mismatch; refusing to restore " + generation.getFileName());
+                }
+                if (Files.exists(database)) {
+                    backup(fraction -> progress.accept(fraction / 2));
+                }
+                Path source = generation;
+                // With a cipher every generation is decrypted, so an unencrypted one fails here.
+                if (cipher != null || generation.getFileName().toString().endsWith(ENCRYPTED_SUFFIX)) {
+                    source = tempFileBeside(database, ".restore");
+                    try (InputStream in = cipher().newInputStream(generation)) {
+                        Files.copy(in, source, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+                    DB db = conn.unwrap(SQLiteConnection.class).getDatabase();
+                    check(db.restore("main", source.toString(), observer(f -> progress.accept(0.5 + f / 2)),
+                            BUSY_SLEEP_MILLIS, BUSY_ATTEMPTS, PAGES_PER_STEP), "Restore");
+                } finally {
+                    if (source != generation) Files.deleteIfExists(source);
+                }
+                prune(); // Only now, so the pre-restore copy cannot push out the generation being restored
+                progress.accept(1.0);
+            } catch (IOException | SQLException e) {
+                throw new IllegalStateException("Database restore failed: " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    /** @return The retained generations, newest first. */
+    public List<Path> listGenerations() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                PREFIX + "*{" + SUFFIX + "," + ENCRYPTED_SUFFIX + "}")) {
+            for (Path p : stream) result.add(p);
+        }
+        result.sort((a, b) -> b.getFileName().toString().compareTo(a.getFileName().toString()));
+        return result;
+    }
+
+    /** @return True when the generation's content matches its recorded checksum. */
+    public boolean verify(Path generation) throws IOException {
+        Path sidecar = checksumFile(generation);
+        if (Files.notExists(sidecar)) {
+            return false;
+        }
+        String recorded = Files.readString(sidecar, StandardCharsets.UTF_8).trim().split("\\s+")[0];
+        return recorded.equalsIgnoreCase(sha256(generation));
+    }
+
+    private Path backup(DoubleConsumer progress) throws IOException, SQLException {
+        String name = PREFIX + LocalDateTime.now().format(STAMP);
+        String suffix = cipher == null ? SUFFIX : ENCRYPTED_SUFFIX;
+        Path target = directory.resolve(name + suffix);
+        for (int n = 1; Files.exists(target); n++) {
+            target = directory.resolve(name + "-" + n + suffix);
+        }
+        Path partial = tempFileBeside(target, ".partial");
+        // The SQLite copy is plaintext, so when encrypting it stays beside the live database.
+        Path snapshot = cipher == null ? partial : tempFileBeside(database, ".backup");
+        try {
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+                DB db = conn.unwrap(SQLiteConnection.class).getDatabase();
+                check(db.backup("main", snapshot.toString(), observer(progress),
+                        BUSY_SLEEP_MILLIS, BUSY_ATTEMPTS, PAGES_PER_STEP), "Backup");
+            }
+            String checksum = cipher == null ? sha256(partial) : encrypt(snapshot, partial);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            writeChecksum(target, checksum);
+        } finally {
+            Files.deleteIfExists(partial);
+            Files.deleteIfExists(snapshot);
+        }
+        progress.accept(1.0);
+        return target;
+    }
+
+    /**
+     * Streams the snapshot through the cipher into {@code target}, one chunk at a time.
+     * @return The SHA-256 of the encrypted file, computed as it is written.
+     */
+    private String encrypt(Path snapshot, Path target) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = Files.newInputStream(snapshot);
+             OutputStream out = cipher.newEncryptingStream(new DigestOutputStream(Files.newOutputStream(target), digest))) {
+            in.transferTo(out);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Encrypts the generations taken before encryption was enabled, keeping their stamps and
+     * modification times. One that fails its checksum is left alone; it cannot be restored anyway.
+     */
+    private void encryptPlainGenerations() throws IOException {
+        for (Path generation : listGenerations()) {
+            String name = generation.getFileName().toString();
+            if (name.endsWith(ENCRYPTED_SUFFIX)) continue;
+            if (!verify(generation)) {
+                System.err.println("Not encrypting backup " + name + ": checksum mismatch");
+                continue;
+            }
+            Path target = generation.resolveSibling(name.substring(0, name.length() - SUFFIX.length()) + ENCRYPTED_SUFFIX);
+            Path partial = tempFileBeside(target, ".partial");
+            try {
+                String checksum = encrypt(generation, partial);
+                Files.setLastModifiedTime(partial, Files.getLastModifiedTime(generation));
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+                writeChecksum(target, checksum);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+            Files.delete(generation);
+            Files.deleteIfExists(checksumFile(generation));
+        }
+    }
+
+    private StreamingAead cipher() throws IOException {
+        return cipher != null ? cipher : StreamingAead.forInstallation();
+    }
+
+    private boolean isChangedSinceLastBackup() throws IOException {
+        List<Path> existing = listGenerations();
+        return existing.isEmpty()
+                || Files.getLastModifiedTime(database).compareTo(Files.getLastModifiedTime(existing.get(0))) > 0;
+    }
+
+    private void prune() throws IOException {
+        List<Path> existing = listGenerations();
+        for (int i = generations; i < existing.size(); i++) {
+            Files.deleteIfExists(existing.get(i));
+            Files.deleteIfExists(checksumFile(existing.get(i)));
+        }
+    }
+
+    private static DB.ProgressObserver observer(DoubleConsumer progress) {
+        return (remaining, pageCount) -> {
+            if (pageCount > 0) {
+                progress.accept((pageCount - remaining) / (double) pageCount);
+            }
+            try {
+                Thread.sleep(STEP_PAUSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static void check(int rc, String operation) throws SQLException {
+        if (rc != SQLiteErrorCode.SQLITE_OK.code) {
+            throw new SQLException(operation + " failed: " + SQLiteErrorCode.getErrorCode(rc));
+        }
+    }
+
+    /**
+     * Creates an empty, owner-only file named after {@code file} with a unique infix, so an
+     * interrupted run never collides with a later one. None of these names match a generation.
+     */
+    private static Path tempFileBeside(Path file, String suffix) throws IOException {
+        return Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", suffix);
+    }
+
+    private static void writeChecksum(Path generation, String checksum) throws IOException {
+        Files.writeString(checksumFile(generation), checksum + "  " + generation.getFileName() + "\n", StandardCharsets.UTF_8);
+    }
+
+    private static Path checksumFile(Path generation) {
+        return generation.resolveSibling(generation.getFileName() + CHECKSUM_SUFFIX);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = newSha256();
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
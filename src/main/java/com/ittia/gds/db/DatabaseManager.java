@@ -1,55 +1,111 @@
 package com.ittia.gds.db;
 
+import com.ittia.gds.EntryDir;
 import com.ittia.gds.ui.model.Abbreviation;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DatabaseManager {
 
-    private static final String DB_PATH = "jdbc:sqlite:" + System.getProperty("user.dir") + "/src/main/resources/db/abbreviations.db";
+    /**
+     * The live dictionary, no longer the tracked seed copy in src/main/resources. In the dev
+     * environment EntryDir.dbDir is still inside the working tree (under src/com/ittia/gds),
+     * which .gitignore excludes.
+     */
+    public static final Path DB_FILE = EntryDir.dbDir.resolve("abbreviations.db");
+    public static final String DB_URL = "jdbc:sqlite:" + DB_FILE;
+
+    private static final String DB_PATH = DB_URL;
+    private static final String CURRENT_USER = System.getProperty("user.name", "");
+
+    /** Upsert rather than INSERT OR REPLACE, which would delete the row and lose its usage count. */
+    public static final String UPSERT_SQL =
+            "INSERT INTO abbreviations (key, value, category, owner, updated_at) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT(key) DO UPDATE SET value = excluded.value, category = excluded.category, "
+            + "owner = CASE WHEN excluded.owner = '' THEN abbreviations.owner ELSE excluded.owner END, "
+            + "updated_at = excluded.updated_at";
+
+    private static boolean migrated;
+
+    /** Sort orders offered by the manager; each is served by an index. */
+    public enum SortOrder {
+        KEY("key"),
+        RECENTLY_UPDATED("updated_at DESC"),
+        MOST_USED("usage_count DESC");
+
+        final String orderBy;
+
+        SortOrder(String orderBy) {
+            this.orderBy = orderBy;
+        }
+    }
+
+    static {
+        // One-time move: seed the new location from the copy shipped in the source tree.
+        Path legacy = Paths.get(System.getProperty("user.dir"), "src/main/resources/db/abbreviations.db");
+        if (Files.notExists(DB_FILE) && Files.exists(legacy)) {
+            try {
+                Files.copy(legacy, DB_FILE);
+                System.out.println("Copied abbreviation database to " + DB_FILE);
+            } catch (IOException e) {
+                System.err.println("Failed to copy abbreviation database: " + e.getMessage());
+            }
+        }
+    }
 
     public DatabaseManager() {
         initializeDatabase();
     }
 
     private void initializeDatabase() {
-        File dbDir = new File(System.getProperty("user.dir") + "/src/main/resources/db");
-        if (!dbDir.exists()) {
-            boolean created = dbDir.mkdirs();
-            if (!created) {
-                System.err.println("Failed to create directory: " + dbDir.getAbsolutePath());
-                return;
-            }
-        }
+        migrate();
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS abbreviations ("
-                       + "key TEXT PRIMARY KEY, "
-                       + "value TEXT NOT NULL)";
-            stmt.execute(sql);
+    /** Applies pending schema migrations once per process. */
+    public static synchronized void migrate() {
+        if (migrated) return;
+        try (Connection conn = DriverManager.getConnection(DB_PATH)) {
+            SchemaMigrator.migrate(conn);
+            migrated = true;
         } catch (SQLException e) {
             System.err.println("Failed to initialize database: " + e.getMessage());
         }
     }
 
     public void addOrUpdateAbbreviation(String key, String value) {
+        addOrUpdateAbbreviation(new Abbreviation(key, value, Abbreviation.DEFAULT_CATEGORY, CURRENT_USER, 0, 0));
+    }
+
+    /**
+     * Inserts or updates an abbreviation, stamping it with the current time.
+     * An existing entry keeps its usage count and, if the new owner is blank, its owner.
+     */
+    public void addOrUpdateAbbreviation(Abbreviation abbreviation) {
         // Ensure consistent key formatting for DB storage
+        String key = abbreviation.getKey();
         String formattedKey = key.startsWith(":") ? key : ":" + key;
         formattedKey = formattedKey.endsWith(" ") ? formattedKey : formattedKey + " ";
 
         try (Connection conn = DriverManager.getConnection(DB_PATH);
-             PreparedStatement pstmt = conn.prepareStatement("INSERT OR REPLACE INTO abbreviations (key, value) VALUES (?, ?)")) {
+             PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
             pstmt.setString(1, formattedKey);
-            pstmt.setString(2, value);
+            pstmt.setString(2, abbreviation.getValue());
+            pstmt.setString(3, abbreviation.getCategory().isBlank() ? Abbreviation.DEFAULT_CATEGORY : abbreviation.getCategory().trim());
+            pstmt.setString(4, abbreviation.getOwner());
+            pstmt.setLong(5, System.currentTimeMillis());
             pstmt.executeUpdate();
         } catch (SQLException e) {
             System.err.println("Failed to add/update abbreviation in database: " + e.getMessage());
@@ -82,4 +138,70 @@ public class DatabaseManager {
         }
         return abbreviations;
     }
-}
\ No newline at end of file
+
+    public boolean exists(String key) {
+        try (Connection conn = DriverManager.getConnection(DB_PATH);
+             PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM abbreviations WHERE key = ?")) {
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to look up abbreviation: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Finds abbreviations in the database rather than filtering the whole table in memory.
+     * Category and owner filters and every {@link SortOrder} are answered from indexes. The text
+     * match keeps the manager's original meaning, a case-insensitive substring of the key or the
+     * value, so it has to scan; it stops at {@code limit}. LIKE folds case for ASCII only.
+     * @param category Exact category, or null for all.
+     * @param owner Exact owner, or null for all.
+     * @param text Matches any part of the key or the value; null or empty for everything.
+     */
+    public List<Abbreviation> findAbbreviations(String category, String owner, String text, SortOrder sort, int limit) {
+        try (Connection conn = DriverManager.getConnection(DB_PATH)) {
+            return AbbreviationQuery.find(conn, category, owner, text, sort, limit);
+        } catch (SQLException e) {
+            System.err.println("Failed to query abbreviations: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /** @return The distinct categories, read from the category index. */
+    public List<String> getCategories() {
+        return distinct("category");
+    }
+
+    /** @return The distinct owners, read from the owner index. */
+    public List<String> getOwners() {
+        return distinct("owner");
+    }
+
+    private List<String> distinct(String column) {
+        List<String> values = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(DB_PATH);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT " + column + " FROM abbreviations ORDER BY " + column)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to list " + column + " values: " + e.getMessage());
+        }
+        return values;
+    }
+
+    /** Counts one use of an abbreviation; call it off the FX thread. */
+    public static void recordUsage(String key) {
+        try (Connection conn = DriverManager.getConnection(DB_PATH);
+             PreparedStatement pstmt = conn.prepareStatement("UPDATE abbreviations SET usage_count = usage_count + 1 WHERE key = ?")) {
+            pstmt.setString(1, key);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to record abbreviation usage: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ittia.gds.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Brings the abbreviation database up to the current schema.
+ * The applied version is kept in SQLite's {@code PRAGMA user_version}. Pending migrations run
+ * in order, each in its own transaction together with the version bump, so a failure leaves
+ * the database at the last fully applied version. Migrations are append-only: never edit one
+ * that has shipped; add a new one instead.
+ */
+public final class SchemaMigrator {
+
+    record Migration(int version, String description, String... statements) {}
+
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "Base table",
+            "CREATE TABLE IF NOT EXISTS abbreviations (key TEXT PRIMARY KEY, value TEXT NOT NULL)"),
+        new Migration(2, "Category, owner, modification time and usage count",
+            "ALTER TABLE abbreviations ADD COLUMN category TEXT NOT NULL DEFAULT 'General'",
+            "ALTER TABLE abbreviations ADD COLUMN owner TEXT NOT NULL DEFAULT ''",
+            "ALTER TABLE abbreviations ADD COLUMN updated_at INTEGER NOT NULL DEFAULT 0",
+            "ALTER TABLE abbreviations ADD COLUMN usage_count INTEGER NOT NULL DEFAULT 0",
+            "UPDATE abbreviations SET updated_at = CAST(strftime('%s', 'now') AS INTEGER) * 1000"),
+        new Migration(3, "Indexes for the manager's filters and sort orders",
+            // key is appended so filtered lists come back in key order straight from the index
+            "CREATE INDEX IF NOT EXISTS idx_abbreviations_category ON abbreviations (category, key)",
+            "CREATE INDEX IF NOT EXISTS idx_abbreviations_owner ON abbreviations (owner, key)",
+            "CREATE INDEX IF NOT EXISTS idx_abbreviations_updated ON abbreviations (updated_at DESC)",
+            "CREATE INDEX IF NOT EXISTS idx_abbreviations_usage ON abbreviations (usage_count DESC)")
+    );
+
+    public static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+
+    /**
+     * Applies every migration newer than the database's version.
+     * @return The number of migrations applied.
+     * @throws SQLException If a migration fails; that migration is rolled back.
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        int current = userVersion(conn);
+        if (current > LATEST_VERSION) {
+            throw new SQLException("Database schema version " + current + " is newer than this program ("
+                    + LATEST_VERSION + ")");
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        int applied = 0;
+        try (Statement stmt = conn.createStatement()) {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) continue;
+                conn.setAutoCommit(false);
+                try {
+                    for (String sql : migration.statements()) {
+                        stmt.execute(sql);
+                    }
+                    stmt.execute("PRAGMA user_version = " + migration.version());
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + migration.version() + " (" + migration.description()
+                            + ") failed: " + e.getMessage(), e);
+                }
+                System.out.println("Applied database migration " + migration.version() + ": " + migration.description());
+                applied++;
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    static int userVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private SchemaMigrator() {}
+}
@@ -0,0 +1,209 @@
+package com.ittia.gds.instance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.function.Consumer;
+
+import com.ittia.gds.EntryDir;
+
+/**
+ * Keeps one running GDS instance per installation and lets later launches hand requests to it.
+ * The running instance listens on a Unix domain socket; a new launch connects, sends a one-line
+ * command and exits as soon as it is acknowledged, without ever starting JavaFX, so the work
+ * is done by a JVM whose dictionary, classes and JIT-compiled code are already warm.
+ * The socket is bound inside a directory only its owner can enter, so no other user can reach it
+ * even for the moment between bind and any later permission change. A socket file left behind by
+ * a crashed instance is detected (nothing answers) and replaced.
+ */
+public final class SingleInstance implements Closeable {
+
+    public static final String OPEN_EMR = "open-emr";
+    public static final String SHOW_LAUNCHER = "show-launcher";
+
+    private static final String PING = "ping";
+    private static final String OK = "ok";
+    private static final String UNKNOWN = "unknown";
+    private static final int MAX_LINE = 256;
+    private static final int READ_TIMEOUT_MILLIS = 2000;
+    // Longer than the read timeout, so a reply still arrives after the listener has waited out a stuck peer.
+    private static final int REPLY_TIMEOUT_MILLIS = 3 * READ_TIMEOUT_MILLIS;
+    private static final int MAX_SOCKET_PATH = 100; // sun_path is 104-108 bytes depending on the OS
+    private static final String SOCKET_NAME = "instance.sock";
+
+    private final Path socket;
+    private final ServerSocketChannel server;
+    private final Consumer<String> handler;
+    private volatile boolean open = true;
+
+    private SingleInstance(Path socket, ServerSocketChannel server, Consumer<String> handler) {
+        this.socket = socket;
+        this.server = server;
+        this.handler = handler;
+    }
+
+    /**
+     * @return {@code HOME_DIR/run/instance.sock}, or the same name in a per-user directory under
+     *         the temp directory when that path is too long for a Unix domain socket.
+     */
+    public static Path defaultSocket() {
+        Path socket = EntryDir.HOME_DIR.resolve("run").resolve(SOCKET_NAME).toAbsolutePath();
+        if (socket.toString().getBytes(StandardCharsets.UTF_8).length <= MAX_SOCKET_PATH) {
+            return socket;
+        }
+        String id = Integer.toHexString(EntryDir.HOME_DIR.toAbsolutePath().hashCode());
+        return Paths.get(System.getProperty("java.io.tmpdir"), "gds-" + System.getProperty("user.name", "user") + "-" + id, SOCKET_NAME);
+    }
+
+    /**
+     * Sends a command to the running instance.
+     * @return True if an instance accepted it; false if none is running or it did not answer.
+     */
+    public static boolean sendToRunning(Path socket, String command) {
+        if (Files.notExists(socket)) {
+            return false;
+        }
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            channel.write(StandardCharsets.UTF_8.encode(command + "\n"));
+            return OK.equals(readLine(channel, REPLY_TIMEOUT_MILLIS));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Becomes the running instance. The socket's directory is made private to this user first.
+     * @param handler Receives each command on the listener thread; hop to the FX thread there.
+     * @return The listener, or null when another live instance already owns the socket.
+     */
+    public static SingleInstance listen(Path socket, Consumer<String> handler) throws IOException {
+        privateDirectory(socket.toAbsolutePath().getParent());
+        for (int attempt = 0; ; attempt++) {
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                server.bind(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                server.close();
+                if (sendToRunning(socket, PING)) {
+                    return null;
+                }
+                if (attempt > 0) {
+                    throw e;
+                }
+                Files.deleteIfExists(socket); // Left behind by an instance that did not shut down cleanly
+                continue;
+            }
+            SingleInstance instance = new SingleInstance(socket, server, handler);
+            Thread listener = new Thread(instance::serve, "instance-listener");
+            listener.setDaemon(true);
+            listener.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::close, "instance-cleanup"));
+            return instance;
+        }
+    }
+
+    /**
+     * Creates {@code directory} as rwx------, or tightens it to that when it already exists.
+     * @throws IOException If it belongs to another user, who could otherwise reach the socket.
+     */
+    static void privateDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory.getParent());
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory);
+            return;
+        }
+        try {
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (FileAlreadyExistsException e) {
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IOException("Not a directory: " + directory);
+            }
+            UserPrincipal me = directory.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!me.equals(Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS))) {
+                throw new IOException("Instance directory is owned by another user: " + directory);
+            }
+        }
+        // Also covers a directory created by an older version or an umask that stripped bits
+        Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+    }
+
+    private void serve() {
+        while (open) {
+            try (SocketChannel client = server.accept()) {
+                String command = readLine(client, READ_TIMEOUT_MILLIS);
+                String reply = OK;
+                if (command == null) {
+                    continue;
+                } else if (command.equals(OPEN_EMR) || command.equals(SHOW_LAUNCHER)) {
+                    handler.accept(command);
+                } else if (!command.equals(PING)) {
+                    reply = UNKNOWN;
+                }
+                client.configureBlocking(true);
+                client.write(StandardCharsets.UTF_8.encode(reply + "\n"));
+            } catch (IOException e) {
+                if (open) System.err.println("Instance request failed: " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Instance request handler failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Reads one short line, giving up after {@code timeoutMillis} so a stuck peer cannot block us. */
+    private static String readLine(SocketChannel channel, int timeoutMillis) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE);
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        channel.configureBlocking(false);
+        try (Selector selector = Selector.open()) {
+            channel.register(selector, SelectionKey.OP_READ);
+            while (buffer.hasRemaining()) {
+                long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remaining <= 0 || selector.select(remaining) == 0 && System.nanoTime() >= deadline) {
+                    return null;
+                }
+                selector.selectedKeys().clear();
+                int n = channel.read(buffer);
+                if (n < 0) break;
+                for (int i = buffer.position() - n; i < buffer.position(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        return new String(buffer.array(), 0, i, StandardCharsets.UTF_8).trim();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public Path getSocket() {
+        return socket;
+    }
+
+    @Override
+    public void close() {
+        if (!open) return;
+        open = false;
+        try {
+            server.close();
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            System.err.println("Failed to remove instance socket: " + e.getMessage());
+        }
+    }
+}
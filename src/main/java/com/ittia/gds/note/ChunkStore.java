@@ -0,0 +1,174 @@
+package com.ittia.gds.note;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/**
+ * Content-addressed storage for note sections.
+ * Each chunk is stored once under the SHA-256 of its content as
+ * {@code chunks/<first two hex digits>/<remaining hex digits>}, deflate-compressed and
+ * prefixed with its uncompressed length. Putting content that is already present only
+ * costs the hash and a file-existence check, which is what makes copied-forward
+ * sections free to save again.
+ * <p>
+ * With a cipher, chunks are compressed and then encrypted, and stored under a keyed hash of
+ * their address instead, so neither the content nor its plain SHA-256 is visible on disk.
+ * Chunks written before encryption was enabled are converted once by {@link #encryptPlainChunks()};
+ * after that an unencrypted chunk is refused.
+ */
+public class ChunkStore {
+
+    public static final int HASH_BYTES = 32;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path directory;
+    private final StreamingAead cipher; // Null stores chunks unencrypted
+
+    public ChunkStore(Path directory) throws IOException {
+        this(directory, null);
+    }
+
+    public ChunkStore(Path directory, StreamingAead cipher) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.cipher = cipher;
+    }
+
+    /**
+     * Stores content under its SHA-256 hash ({@link #hash}) unless an identical chunk already exists.
+     * @return True if a new chunk was written, false if it was already present.
+     */
+    boolean putIfAbsent(byte[] hash, byte[] content) throws IOException {
+        Path target = pathFor(hash);
+        if (Files.exists(target)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "chunk", ".tmp");
+        try {
+            byte[] stored = compress(content);
+            Files.write(temp, cipher == null ? stored : cipher.encrypt(stored));
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            return false; // Written concurrently by someone else; identical by construction.
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * Reads a chunk back and verifies it against its address.
+     * @throws IOException If the chunk is missing or does not match its hash.
+     */
+    public byte[] get(byte[] hash) throws IOException {
+        byte[] stored = Files.readAllBytes(pathFor(hash));
+        byte[] content = decompress(cipher == null ? stored : cipher.decrypt(stored));
+        if (!Arrays.equals(hash, hash(content))) {
+            throw new IOException("Chunk is corrupt: " + HEX.formatHex(hash));
+        }
+        return content;
+    }
+
+    /**
+     * Encrypts the chunks written before encryption was enabled and moves them to their keyed
+     * names. Each one is verified against its old name before the plain file is deleted.
+     * @return The number of chunks converted.
+     * @throws IOException If a chunk cannot be converted; the chunks not yet converted stay as they were.
+     */
+    int encryptPlainChunks() throws IOException {
+        if (cipher == null) {
+            throw new IllegalStateException("No cipher to encrypt chunks with");
+        }
+        List<Path> plain;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            plain = files.filter(p -> p.getNameCount() - directory.getNameCount() == 2)
+                    .filter(p -> p.getParent().getFileName().toString().length() == 2
+                            && p.getFileName().toString().length() == 2 * HASH_BYTES - 2) // Not a temp file
+                    .toList();
+        }
+        int converted = 0;
+        for (Path path : plain) {
+            if (StreamingAead.isEncrypted(path)) continue;
+            byte[] hash = HEX.parseHex(path.getParent().getFileName().toString() + path.getFileName());
+            byte[] content = decompress(Files.readAllBytes(path));
+            if (!Arrays.equals(hash, hash(content))) {
+                throw new IOException("Chunk is corrupt: " + HEX.formatHex(hash));
+            }
+            putIfAbsent(hash, content);
+            Files.delete(path);
+            converted++;
+        }
+        return converted;
+    }
+
+    private Path pathFor(byte[] hash) {
+        String hex = HEX.formatHex(cipher == null ? hash : cipher.keyedHash(hash));
+        return directory.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+    }
+
+    static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] compress(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 16);
+            out.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(content.length).array());
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] stored) throws IOException {
+        int length = ByteBuffer.wrap(stored, 0, Integer.BYTES).getInt();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored, Integer.BYTES, stored.length - Integer.BYTES);
+            byte[] content = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(content, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                read += n;
+            }
+            if (read != length) {
+                throw new IOException("Chunk is truncated");
+            }
+            return content;
+        } catch (DataFormatException e) {
+            throw new IOException("Chunk is not valid deflate data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.ittia.gds.note;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/**
+ * Persists finished notes under {@code <HOME_DIR>/notes}.
+ * Each note is a small manifest holding one {@link ChunkStore} hash per section; the section
+ * texts themselves are content-addressed chunks, so a section carried over unchanged from a
+ * previous visit is stored only once. Notes are numbered sequentially. Saving happens on a
+ * background thread so the FX thread never waits on disk; registered listeners are told about
+ * every saved note on that same thread, which is where incremental consumers do their work.
+ * Given a cipher, manifests and chunks are encrypted at rest. Notes saved unencrypted before
+ * that are encrypted once, when the store is first opened with the cipher; from then on an
+ * unencrypted file is refused rather than read.
+ */
+public class NoteStore {
+
+    private static final int MAGIC = 0x47444E32; // "GDN2": section chunk hashes
+    private static final String PREFIX = "note-";
+    private static final String SUFFIX = ".gdn";
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+    private static final String ENCRYPTED_MARKER = ".encrypted"; // Written once every file is encrypted
+
+    private final Path directory;
+    private final ChunkStore chunks;
+    private final StreamingAead cipher; // Null writes notes unencrypted
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "note-store");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<Consumer<SavedNote>> saveListeners = new CopyOnWriteArrayList<>();
+    private int lastId;
+
+    /**
+     * A note as it was written: its id, the save time and one text per section.
+     * {@code newChunks} is how many sections had to be stored because no identical chunk existed.
+     */
+    public record SavedNote(int id, long savedAt, String[] sections, int newChunks) {
+    }
+
+    public NoteStore(Path directory) throws IOException {
+        this(directory, null);
+    }
+
+    public NoteStore(Path directory, StreamingAead cipher) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.cipher = cipher;
+        this.chunks = new ChunkStore(directory.resolve("chunks"), cipher);
+        if (cipher != null && Files.notExists(directory.resolve(ENCRYPTED_MARKER))) {
+            encryptPlainNotes();
+        }
+        this.lastId = scanLastId();
+    }
+
+    public void addSaveListener(Consumer<SavedNote> listener) {
+        saveListeners.add(listener);
+    }
+
+    /**
+     * Writes the note on the store's thread.
+     * @param sections The section texts in {@code TEXT_AREA_TITLES} order; the array is copied.
+     * @return A future completed with the saved note once it is on disk.
+     */
+    public CompletableFuture<SavedNote> saveAsync(String[] sections) {
+        String[] copy = sections.clone();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                SavedNote note = save(copy);
+                for (Consumer<SavedNote> listener : saveListeners) {
+                    try {
+                        listener.accept(note);
+                    } catch (RuntimeException e) {
+                        System.err.println("Note save listener failed: " + e.getMessage());
+                    }
+                }
+                return note;
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to save note: " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    private SavedNote save(String[] sections) throws IOException {
+        int newChunks = 0;
+        byte[][] hashes = new byte[sections.length][];
+        for (int i = 0; i < sections.length; i++) {
+            if (sections[i] == null || sections[i].isEmpty()) continue;
+            byte[] content = sections[i].getBytes(StandardCharsets.UTF_8);
+            byte[] hash = ChunkStore.hash(content);
+            if (chunks.putIfAbsent(hash, content)) {
+                newChunks++;
+            }
+            hashes[i] = hash;
+        }
+
+        int id = nextId();
+        long now = System.currentTimeMillis();
+        Path target = pathFor(id);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        OutputStream file = cipher == null ? Files.newOutputStream(temp) : cipher.newOutputStream(temp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeLong(now);
+            out.writeInt(sections.length);
+            for (byte[] hash : hashes) {
+                out.writeBoolean(hash != null); // Empty sections have no chunk
+                if (hash != null) out.write(hash);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new SavedNote(id, now, sections, newChunks);
+    }
+
+    /**
+     * Feeds every note saved after {@code afterId} to the consumer, on the store's thread and
+     * therefore in order with later saves. Used to bring derived data (e.g. the index) up to date.
+     */
+    public CompletableFuture<Void> replayAsync(int afterId, Consumer<SavedNote> consumer) {
+        return CompletableFuture.runAsync(() -> {
+            for (int id = afterId + 1; id <= getLastId(); id++) {
+                try {
+                    consumer.accept(load(id));
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable note " + id + ": " + e.getMessage());
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Reads a note back.
+     * @throws IOException If the note does not exist, is not a note file or, given a cipher, is not encrypted.
+     */
+    public SavedNote load(int id) throws IOException {
+        InputStream file = cipher == null ? Files.newInputStream(pathFor(id)) : cipher.newInputStream(pathFor(id));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a note file: " + pathFor(id));
+            }
+            long savedAt = in.readLong();
+            String[] sections = new String[in.readInt()];
+            for (int i = 0; i < sections.length; i++) {
+                if (in.readBoolean()) {
+                    byte[] hash = new byte[ChunkStore.HASH_BYTES];
+                    in.readFully(hash);
+                    sections[i] = new String(chunks.get(hash), StandardCharsets.UTF_8);
+                } else {
+                    sections[i] = "";
+                }
+            }
+            return new SavedNote(id, savedAt, sections, 0);
+        }
+    }
+
+    /** Reads a note back on the store's thread, so the FX thread never waits on disk or decryption. */
+    public CompletableFuture<SavedNote> loadAsync(int id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(id);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load note " + id + ": " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Loads the most recent note, for copying it forward into a follow-up visit.
+     * @return The note, or null when nothing has been saved yet.
+     */
+    public CompletableFuture<SavedNote> loadLatestAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            int id = getLastId();
+            if (id == 0) return null;
+            try {
+                return load(id);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load note " + id + ": " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    private synchronized int nextId() {
+        return ++lastId;
+    }
+
+    /** @return The id of the most recently saved note, or 0 if there is none. */
+    public synchronized int getLastId() {
+        return lastId;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Path pathFor(int id) {
+        return directory.resolve(String.format("%s%08d%s", PREFIX, id, SUFFIX));
+    }
+
+    /**
+     * Encrypts the manifests and chunks saved before encryption was enabled, then records that
+     * it is done. Runs before the store is used, so nothing reads a note half-way through.
+     */
+    private void encryptPlainNotes() throws IOException {
+        int manifests = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path p : stream) {
+                if (StreamingAead.isEncrypted(p)) continue;
+                Path temp = p.resolveSibling(p.getFileName() + ".tmp");
+                try (OutputStream out = cipher.newOutputStream(temp)) {
+                    Files.copy(p, out);
+                }
+                Files.move(temp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                manifests++;
+            }
+        }
+        int converted = chunks.encryptPlainChunks();
+        Files.createFile(directory.resolve(ENCRYPTED_MARKER));
+        if (manifests > 0 || converted > 0) {
+            System.out.println("Encrypted " + manifests + " notes and " + converted + " sections saved before encryption");
+        }
+    }
+
+    private int scanLastId() throws IOException {
+        int max = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                try {
+                    max = Math.max(max, Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Stops accepting work and waits up to {@value #SHUTDOWN_WAIT_SECONDS} seconds for saves already
+     * queued; the store's thread is a daemon and dies with the instance.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Note store is still writing; the note being saved may be lost.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
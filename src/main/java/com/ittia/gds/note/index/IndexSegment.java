@@ -0,0 +1,314 @@
+package com.ittia.gds.note.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/**
+ * An immutable, on-disk slice of the note index covering a contiguous range of note ids.
+ * File layout:
+ * <pre>
+ *   int magic, int minDoc, int maxDoc, int docCount
+ *   postings bytes (one {@link PostingsWriter} list per term, in term order)
+ *   int termCount, then per term: UTF term key, int postings offset
+ *   long dictionary offset, int magic
+ * </pre>
+ * Only the sorted term dictionary lives on the heap. The postings region of a plain segment is
+ * memory-mapped; a segment written with a cipher is a {@link StreamingAead} file whose postings
+ * are decrypted a chunk at a time as queries touch them.
+ */
+final class IndexSegment {
+
+    private static final int MAGIC = 0x47445831; // "GDX1"
+    private static final int HEADER_BYTES = 16;
+    private static final int FOOTER_BYTES = 12;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path path;
+    private final int minDoc;
+    private final int maxDoc;
+    private final int docCount;
+    private final String[] terms;
+    private final int[] offsets;
+    private final PostingsReader.Source postings;
+
+    private IndexSegment(Path path, int minDoc, int maxDoc, int docCount, String[] terms, int[] offsets,
+            PostingsReader.Source postings) {
+        this.path = path;
+        this.minDoc = minDoc;
+        this.maxDoc = maxDoc;
+        this.docCount = docCount;
+        this.terms = terms;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+    /**
+     * Opens a segment written by {@link Writer}, plain or encrypted.
+     * @param cipher The cipher for encrypted segments; may be null when none are expected.
+     */
+    static IndexSegment open(Path path, StreamingAead cipher) throws IOException {
+        if (!StreamingAead.isEncrypted(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return open(path, channel.size(), (position, length) -> {
+                    ByteBuffer buffer = ByteBuffer.allocate(length);
+                    while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) { }
+                    return buffer.array();
+                }, (position, length) -> {
+                    ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    PostingsReader.Window whole = new PostingsReader.Window(0, mapped);
+                    return p -> whole;
+                });
+            }
+        }
+        if (cipher == null) {
+            throw new IOException("Index segment is encrypted but no key was given: " + path);
+        }
+        StreamingAead.RandomAccessReader reader = cipher.openRandomAccess(path);
+        try {
+            return open(path, reader.size(), (position, length) -> {
+                byte[] bytes = new byte[length];
+                int n = reader.read(position, bytes, 0, length);
+                if (n != length) throw new IOException("Not an index segment: " + path);
+                return bytes;
+            }, (position, length) -> new EncryptedPostings(reader));
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /** Reads {@code length} bytes of the segment's plaintext from {@code position}. */
+    private interface Bytes {
+        byte[] read(long position, int length) throws IOException;
+    }
+
+    /** Provides the postings region, which starts at {@code position} and is {@code length} bytes long. */
+    private interface PostingsRegion {
+        PostingsReader.Source open(long position, long length) throws IOException;
+    }
+
+    private static IndexSegment open(Path path, long size, Bytes bytes, PostingsRegion region) throws IOException {
+        if (size < HEADER_BYTES + FOOTER_BYTES) {
+            throw new IOException("Not an index segment: " + path);
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes.read(0, HEADER_BYTES));
+        ByteBuffer footer = ByteBuffer.wrap(bytes.read(size - FOOTER_BYTES, FOOTER_BYTES));
+        if (header.getInt() != MAGIC || footer.getInt(8) != MAGIC) {
+            throw new IOException("Not an index segment: " + path);
+        }
+        int minDoc = header.getInt();
+        int maxDoc = header.getInt();
+        int docCount = header.getInt();
+        long dictionaryOffset = footer.getLong(0);
+        long dictionaryEnd = size - FOOTER_BYTES;
+        if (dictionaryOffset < HEADER_BYTES || dictionaryOffset > dictionaryEnd
+                || dictionaryEnd - dictionaryOffset > Integer.MAX_VALUE) {
+            throw new IOException("Index segment is corrupt: " + path);
+        }
+
+        PostingsReader.Source postings = region.open(HEADER_BYTES, dictionaryOffset - HEADER_BYTES);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                bytes.read(dictionaryOffset, (int) (dictionaryEnd - dictionaryOffset))));
+        int termCount = in.readInt();
+        String[] terms = new String[termCount];
+        int[] offsets = new int[termCount];
+        for (int i = 0; i < termCount; i++) {
+            terms[i] = in.readUTF();
+            offsets[i] = in.readInt();
+        }
+        return new IndexSegment(path, minDoc, maxDoc, docCount, terms, offsets, postings);
+    }
+
+    /**
+     * The postings of an encrypted segment, one verified chunk at a time. The last chunk decrypted is
+     * kept for the next reader, since consecutive terms' postings usually share a chunk. The file is
+     * closed once nothing refers to the postings any more, just as a mapping is released by the GC,
+     * so a search still running over a merged-away segment keeps working.
+     */
+    private static final class EncryptedPostings implements PostingsReader.Source {
+        private final StreamingAead.RandomAccessReader reader;
+        private volatile PostingsReader.Window last;
+
+        EncryptedPostings(StreamingAead.RandomAccessReader reader) {
+            this.reader = reader;
+            CLEANER.register(this, () -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Nothing left to release
+                }
+            });
+        }
+
+        @Override
+        public PostingsReader.Window window(int position) {
+            PostingsReader.Window window = last;
+            if (window != null && window.contains(position)) {
+                return window;
+            }
+            long chunk = (HEADER_BYTES + (long) position) / reader.getChunkSize();
+            try {
+                window = new PostingsReader.Window((int) (chunk * reader.getChunkSize() - HEADER_BYTES),
+                        ByteBuffer.wrap(reader.readChunk(chunk)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            last = window;
+            return window;
+        }
+    }
+
+    /** @return The postings for an exact term key, or null if the term does not occur. */
+    PostingsReader postings(String key) {
+        int i = Arrays.binarySearch(terms, key);
+        return i >= 0 ? new PostingsReader(postings, offsets[i]) : null;
+    }
+
+    /** @return The index of the first term key that is {@code >= key}. */
+    int lowerBound(String key) {
+        int i = Arrays.binarySearch(terms, key);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    int termCount() {
+        return terms.length;
+    }
+
+    String term(int i) {
+        return terms[i];
+    }
+
+    PostingsReader postingsAt(int i) {
+        return new PostingsReader(postings, offsets[i]);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int minDoc() {
+        return minDoc;
+    }
+
+    int maxDoc() {
+        return maxDoc;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    /**
+     * Writes a segment from postings that are already in term order.
+     * Call {@link #add(String, byte[])} for each term, then {@link #close()}.
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final DataOutputStream out;
+        private final List<String> terms = new ArrayList<>();
+        private final List<Integer> offsets = new ArrayList<>();
+        private long written;
+
+        /** @param cipher Encrypts the segment when not null. */
+        Writer(Path path, int minDoc, int maxDoc, int docCount, StreamingAead cipher) throws IOException {
+            OutputStream file = cipher != null ? cipher.newOutputStream(path) : Files.newOutputStream(path);
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(minDoc);
+            out.writeInt(maxDoc);
+            out.writeInt(docCount);
+        }
+
+        void add(String key, byte[] postingsBytes) throws IOException {
+            if (written + postingsBytes.length > Integer.MAX_VALUE) {
+                throw new IOException("Segment postings exceed 2 GB; merge smaller segments");
+            }
+            terms.add(key);
+            offsets.add((int) written);
+            out.write(postingsBytes);
+            written += postingsBytes.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            long dictionaryOffset = HEADER_BYTES + written;
+            out.writeInt(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                out.writeUTF(terms.get(i));
+                out.writeInt(offsets.get(i));
+            }
+            out.writeLong(dictionaryOffset);
+            out.writeInt(MAGIC);
+            out.close();
+        }
+    }
+
+    /**
+     * Merges segments into one new segment file.
+     * Segments cover disjoint note ranges, so concatenating each term's postings in
+     * {@code minDoc} order keeps the documents sorted.
+     */
+    static IndexSegment merge(List<IndexSegment> segments, Path target, StreamingAead cipher) throws IOException {
+        List<IndexSegment> ordered = new ArrayList<>(segments);
+        ordered.sort(Comparator.comparingInt(IndexSegment::minDoc));
+        int minDoc = ordered.get(0).minDoc();
+        int maxDoc = 0;
+        int docCount = 0;
+        for (IndexSegment s : ordered) {
+            maxDoc = Math.max(maxDoc, s.maxDoc());
+            docCount += s.docCount();
+        }
+
+        // Cursor = {segment index in 'ordered', term index}; ties on term broken by segment order.
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = ordered.get(a[0]).term(a[1]).compareTo(ordered.get(b[0]).term(b[1]));
+            return cmp != 0 ? cmp : Integer.compare(a[0], b[0]);
+        });
+        for (int s = 0; s < ordered.size(); s++) {
+            if (ordered.get(s).termCount() > 0) queue.add(new int[] { s, 0 });
+        }
+
+        int[] positions = new int[64];
+        try (Writer writer = new Writer(target, minDoc, maxDoc, docCount, cipher)) {
+            while (!queue.isEmpty()) {
+                String term = ordered.get(queue.peek()[0]).term(queue.peek()[1]);
+                PostingsWriter merged = new PostingsWriter();
+                while (!queue.isEmpty() && ordered.get(queue.peek()[0]).term(queue.peek()[1]).equals(term)) {
+                    int[] cursor = queue.poll();
+                    PostingsReader reader = ordered.get(cursor[0]).postingsAt(cursor[1]);
+                    while (reader.next()) {
+                        if (positions.length < reader.positionCount()) {
+                            positions = new int[Math.max(reader.positionCount(), positions.length * 2)];
+                        }
+                        int count = reader.positionCount();
+                        merged.addDoc(reader.doc(), reader.positions(positions), count);
+                    }
+                    if (++cursor[1] < ordered.get(cursor[0]).termCount()) queue.add(cursor);
+                }
+                writer.add(term, merged.toByteArray());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // A chunk of an encrypted source segment failed to decrypt
+        }
+        return open(target, cipher);
+    }
+}
@@ -0,0 +1,366 @@
+package com.ittia.gds.note.index;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/**
+ * A section-aware inverted index over saved notes.
+ * Each saved note is written as its own small {@link IndexSegment}; a background merge
+ * folds segments of similar size together ({@link #MERGE_FACTOR} at a time) so the number
+ * of segments a query visits stays logarithmic in the number of notes; a scheduled compaction
+ * folds them all into one. Term keys are the section index followed by the term, so a section
+ * filter is just a narrower key.
+ * The live segment list is an immutable snapshot; searches never block indexing.
+ * Given a cipher, segments are encrypted at rest; an index found with unencrypted segments is
+ * discarded so that the notes, which are encrypted, are replayed into a new one.
+ */
+public class NoteIndex {
+
+    private static final int MERGE_FACTOR = 8;
+    private static final int MAX_PREFIX_EXPANSIONS = 4096;
+    private static final String MANIFEST = "segments.lst";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+
+    private final Path directory;
+    private final String[] sectionTitles;
+    private final StreamingAead cipher; // Null writes segments unencrypted
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "note-index");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile List<IndexSegment> segments;
+    private long nextGeneration;
+
+    /**
+     * Opens (or creates) the index and removes segment files left behind by an interrupted merge.
+     * @param directory The index directory.
+     * @param sectionTitles The section prompts, used to parse section filters in queries.
+     */
+    public NoteIndex(Path directory, String[] sectionTitles) throws IOException {
+        this(directory, sectionTitles, null);
+    }
+
+    /**
+     * @param cipher Encrypts the segments when not null.
+     */
+    public NoteIndex(Path directory, String[] sectionTitles, StreamingAead cipher) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.sectionTitles = sectionTitles.clone();
+        this.cipher = cipher;
+
+        Path manifest = directory.resolve(MANIFEST);
+        Set<String> live = new HashSet<>();
+        List<IndexSegment> loaded = new ArrayList<>();
+        if (Files.exists(manifest)) {
+            for (String name : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (name.isBlank()) continue;
+                Path segment = directory.resolve(name);
+                if (cipher != null && !StreamingAead.isEncrypted(segment)) {
+                    System.err.println("Note index is not encrypted; rebuilding it from the notes");
+                    live.clear();
+                    loaded.clear();
+                    Files.delete(manifest);
+                    break;
+                }
+                live.add(name);
+                loaded.add(IndexSegment.open(segment, cipher));
+            }
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                nextGeneration = Math.max(nextGeneration, generationOf(name) + 1);
+                if (!live.contains(name)) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+        this.segments = List.copyOf(loaded);
+    }
+
+    /** @return The highest note id in the index, or 0 when it is empty. */
+    public int getMaxIndexedId() {
+        int max = 0;
+        for (IndexSegment s : segments) max = Math.max(max, s.maxDoc());
+        return max;
+    }
+
+    /**
+     * Queues a note for indexing. Notes must be added in ascending id order.
+     * @param id The note id.
+     * @param sections The section texts, in section title order.
+     */
+    public void addNoteAsync(int id, String[] sections) {
+        String[] copy = sections.clone();
+        executor.execute(() -> {
+            try {
+                addNote(id, copy);
+                mergeIfNeeded();
+            } catch (IOException e) {
+                System.err.println("Failed to index note " + id + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void addNote(int id, String[] sections) throws IOException {
+        if (id <= getMaxIndexedId()) {
+            return; // Already indexed
+        }
+        TreeMap<String, int[]> postings = new TreeMap<>(); // key -> [count, positions...]
+        for (int s = 0; s < sections.length; s++) {
+            if (sections[s] == null) continue;
+            final int section = s;
+            NoteTokenizer.tokenize(sections[s], (term, position) -> {
+                String key = key(section, term);
+                int[] list = postings.get(key);
+                if (list == null) {
+                    list = new int[4];
+                } else if (list[0] + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                }
+                list[++list[0]] = position;
+                postings.put(key, list);
+            });
+        }
+
+        Path file = directory.resolve(segmentName(nextGeneration++));
+        try (IndexSegment.Writer writer = new IndexSegment.Writer(file, id, id, 1, cipher)) {
+            int[] positions = new int[16];
+            for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+                int[] list = entry.getValue();
+                int count = list[0];
+                if (positions.length < count) positions = new int[count];
+                System.arraycopy(list, 1, positions, 0, count);
+                PostingsWriter writerForTerm = new PostingsWriter();
+                writerForTerm.addDoc(id, positions, count);
+                writer.add(entry.getKey(), writerForTerm.toByteArray());
+            }
+        }
+        List<IndexSegment> updated = new ArrayList<>(segments);
+        updated.add(IndexSegment.open(file, cipher));
+        publish(updated);
+    }
+
+    // Tiered merging: whenever MERGE_FACTOR segments share a size tier they become one segment of the next tier.
+    private void mergeIfNeeded() throws IOException {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            Map<Integer, List<IndexSegment>> tiers = new TreeMap<>();
+            for (IndexSegment s : segments) {
+                tiers.computeIfAbsent(tierOf(s.docCount()), k -> new ArrayList<>()).add(s);
+            }
+            for (List<IndexSegment> tier : tiers.values()) {
+                if (tier.size() >= MERGE_FACTOR) {
+                    IndexSegment result = IndexSegment.merge(tier, directory.resolve(segmentName(nextGeneration++)), cipher);
+                    List<IndexSegment> updated = new ArrayList<>(segments);
+                    updated.removeAll(tier);
+                    updated.add(result);
+                    publish(updated);
+                    for (IndexSegment old : tier) {
+                        try {
+                            Files.deleteIfExists(old.path());
+                        } catch (IOException e) {
+                            // Still mapped on some platforms; removed as an orphan on next start.
+                        }
+                    }
+                    merged = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Merges every segment into one; runs in the background. */
+    public void compactAsync() {
+        executor.execute(this::compact);
+    }
+
+    /**
+     * Merges every segment into one periodically, so searches visit a single segment between
+     * bursts of saving. A run is skipped when the index is already one segment.
+     */
+    public void scheduleCompaction(long initialDelay, long period, TimeUnit unit) {
+        executor.scheduleWithFixedDelay(this::compact, initialDelay, period, unit);
+    }
+
+    private void compact() {
+        List<IndexSegment> all = segments;
+        if (all.size() < 2) return;
+        try {
+            IndexSegment result = IndexSegment.merge(all, directory.resolve(segmentName(nextGeneration++)), cipher);
+            publish(List.of(result));
+            for (IndexSegment old : all) {
+                try {
+                    Files.deleteIfExists(old.path());
+                } catch (IOException e) {
+                    // Removed as an orphan on next start.
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to compact note index: " + e.getMessage());
+        }
+    }
+
+    private void publish(List<IndexSegment> updated) throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        for (IndexSegment s : updated) {
+            manifest.append(s.path().getFileName()).append('\n');
+        }
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.writeString(temp, manifest, StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segments = List.copyOf(updated);
+    }
+
+    /**
+     * Finds notes matching the query (see {@link NoteQuery} for the syntax).
+     * @param query For example {@code P> levothyroxine} or {@code "free t4" thyro*}.
+     * @param limit The maximum number of ids to return.
+     * @return Matching note ids, most recent first.
+     */
+    public List<Integer> search(String query, int limit) {
+        NoteQuery parsed = NoteQuery.parse(query, sectionTitles);
+        if (parsed.clauses.isEmpty()) {
+            return List.of();
+        }
+        List<IndexSegment> snapshot = segments;
+        BitSet result = null;
+        for (NoteQuery.Clause clause : parsed.clauses) {
+            BitSet docs = new BitSet();
+            for (IndexSegment segment : snapshot) {
+                for (int s = 0; s < sectionTitles.length; s++) {
+                    if (parsed.section < 0 || parsed.section == s) {
+                        collect(segment, s, clause, docs);
+                    }
+                }
+            }
+            if (result == null) {
+                result = docs;
+            } else {
+                result.and(docs);
+            }
+            if (result.isEmpty()) break;
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        for (int d = result.length() - 1; d >= 0 && ids.size() < limit; d = result.previousSetBit(d - 1)) {
+            ids.add(d);
+        }
+        return ids;
+    }
+
+    private static void collect(IndexSegment segment, int section, NoteQuery.Clause clause, BitSet docs) {
+        switch (clause.kind()) {
+            case TERM: {
+                PostingsReader reader = segment.postings(key(section, clause.terms().get(0)));
+                if (reader != null) {
+                    while (reader.next()) docs.set(reader.doc());
+                }
+                break;
+            }
+            case PREFIX: {
+                String prefix = key(section, clause.terms().get(0));
+                int expansions = 0;
+                for (int i = segment.lowerBound(prefix);
+                     i < segment.termCount() && segment.term(i).startsWith(prefix) && expansions < MAX_PREFIX_EXPANSIONS;
+                     i++, expansions++) {
+                    PostingsReader reader = segment.postingsAt(i);
+                    while (reader.next()) docs.set(reader.doc());
+                }
+                break;
+            }
+            case PHRASE:
+                collectPhrase(segment, section, clause.terms(), docs);
+                break;
+        }
+    }
+
+    // Keeps, per document, the start positions at which every term so far follows in sequence.
+    private static void collectPhrase(IndexSegment segment, int section, List<String> terms, BitSet docs) {
+        Map<Integer, int[]> candidates = new HashMap<>();
+        PostingsReader first = segment.postings(key(section, terms.get(0)));
+        if (first == null) return;
+        while (first.next()) {
+            candidates.put(first.doc(), first.positions(null));
+        }
+        int[] positions = new int[16];
+        for (int k = 1; k < terms.size() && !candidates.isEmpty(); k++) {
+            PostingsReader reader = segment.postings(key(section, terms.get(k)));
+            if (reader == null) return;
+            Map<Integer, int[]> next = new HashMap<>();
+            while (reader.next()) {
+                int[] starts = candidates.get(reader.doc());
+                if (starts == null) continue;
+                int count = reader.positionCount();
+                positions = reader.positions(positions);
+                int kept = 0;
+                int[] survivors = new int[starts.length];
+                for (int start : starts) {
+                    if (Arrays.binarySearch(positions, 0, count, start + k) >= 0) survivors[kept++] = start;
+                }
+                if (kept > 0) next.put(reader.doc(), Arrays.copyOf(survivors, kept));
+            }
+            candidates = next;
+        }
+        for (Integer doc : candidates.keySet()) docs.set(doc);
+    }
+
+    private static String key(int section, String term) {
+        return (char) ('a' + section) + term;
+    }
+
+    private static int tierOf(int docCount) {
+        int tier = 0;
+        for (long size = MERGE_FACTOR; size <= docCount; size *= MERGE_FACTOR) tier++;
+        return tier;
+    }
+
+    private static String segmentName(long generation) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, generation, SEGMENT_SUFFIX);
+    }
+
+    private static long generationOf(String name) {
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stops accepting notes and waits up to {@value #SHUTDOWN_WAIT_SECONDS} seconds for those already
+     * queued; the index thread is a daemon and dies with the instance.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Note index is still writing; notes not yet indexed are replayed on next start.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.ittia.gds.note.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed search over saved notes. Syntax:
+ * <pre>
+ *   [section title] clause clause ...
+ * </pre>
+ * where the optional leading section title is one of the section prompts (e.g. {@code P>})
+ * and each clause is a word, a {@code prefix*} or a {@code "quoted phrase"}.
+ * All clauses must match in the same note (and in the given section, if any).
+ */
+final class NoteQuery {
+
+    enum Kind { TERM, PREFIX, PHRASE }
+
+    record Clause(Kind kind, List<String> terms) {
+    }
+
+    /** The section to search, or -1 for all sections. */
+    final int section;
+    final List<Clause> clauses;
+
+    private NoteQuery(int section, List<Clause> clauses) {
+        this.section = section;
+        this.clauses = clauses;
+    }
+
+    static NoteQuery parse(String query, String[] sectionTitles) {
+        String rest = query.trim();
+        int section = -1;
+        int matched = 0;
+        for (int i = 0; i < sectionTitles.length; i++) {
+            String title = sectionTitles[i];
+            if (title.length() > matched && rest.regionMatches(true, 0, title, 0, title.length())) {
+                section = i;
+                matched = title.length();
+            }
+        }
+        rest = rest.substring(matched);
+        if (rest.startsWith(":")) rest = rest.substring(1);
+
+        List<Clause> clauses = new ArrayList<>();
+        int i = 0;
+        while (i < rest.length()) {
+            char c = rest.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int close = rest.indexOf('"', i + 1);
+                if (close < 0) close = rest.length();
+                List<String> words = NoteTokenizer.terms(rest.substring(i + 1, close));
+                if (words.size() == 1) {
+                    clauses.add(new Clause(Kind.TERM, words));
+                } else if (!words.isEmpty()) {
+                    clauses.add(new Clause(Kind.PHRASE, words));
+                }
+                i = close + 1;
+            } else {
+                int end = i;
+                while (end < rest.length() && !Character.isWhitespace(rest.charAt(end))) end++;
+                String word = rest.substring(i, end);
+                if (word.endsWith("*")) {
+                    String prefix = word.substring(0, word.length() - 1).toLowerCase(Locale.ROOT);
+                    List<String> words = NoteTokenizer.terms(prefix);
+                    if (words.size() == 1 && prefix.equals(words.get(0))) {
+                        clauses.add(new Clause(Kind.PREFIX, words));
+                    }
+                } else {
+                    List<String> words = NoteTokenizer.terms(word);
+                    if (words.size() == 1) {
+                        clauses.add(new Clause(Kind.TERM, words));
+                    } else if (words.size() > 1) {
+                        clauses.add(new Clause(Kind.PHRASE, words)); // e.g. "t4/tsh"
+                    }
+                }
+                i = end;
+            }
+        }
+        return new NoteQuery(section, clauses);
+    }
+}
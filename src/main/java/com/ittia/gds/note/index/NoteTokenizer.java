@@ -0,0 +1,39 @@
+package com.ittia.gds.note.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits note text into lower-case index terms: maximal runs of letters and digits.
+ * The position of a term is its ordinal within the section, which is what phrase queries compare.
+ */
+final class NoteTokenizer {
+
+    @FunctionalInterface
+    interface TermConsumer {
+        void accept(String term, int position);
+    }
+
+    static void tokenize(String text, TermConsumer consumer) {
+        int position = 0;
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i > start) {
+                consumer.accept(text.substring(start, i).toLowerCase(Locale.ROOT), position++);
+            }
+        }
+    }
+
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        tokenize(text, (term, position) -> terms.add(term));
+        return terms;
+    }
+
+    private NoteTokenizer() {}
+}
@@ -0,0 +1,116 @@
+package com.ittia.gds.note.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Iterates over a postings list written by {@link PostingsWriter}.
+ * Positions are decoded lazily, only for documents whose positions are requested.
+ * The postings are read a {@link Window} at a time, so a list can span the chunks of an
+ * encrypted segment.
+ */
+final class PostingsReader {
+
+    /** Supplies the postings region of a segment; must be safe to call from several threads. */
+    interface Source {
+        /** @return A window holding the byte at {@code position}. */
+        Window window(int position);
+    }
+
+    /** A run of postings bytes starting at {@code start}; the buffer is read with absolute gets only. */
+    record Window(int start, ByteBuffer bytes) {
+
+        boolean contains(int position) {
+            return position >= start && position - start < bytes.limit();
+        }
+    }
+
+    private final Source source;
+    private Window window;
+    private int pos;
+    private int remaining;
+    private int doc;
+    private int positionCount;
+    private boolean positionsRead;
+
+    /**
+     * @param source The segment's postings region.
+     * @param offset Where the postings list starts in the region.
+     */
+    PostingsReader(Source source, int offset) {
+        this.source = source;
+        this.pos = offset;
+        this.remaining = readVarInt();
+        this.positionsRead = true;
+    }
+
+    /** @return The number of documents in the list. */
+    int docCount() {
+        return remaining;
+    }
+
+    /** Advances to the next document; returns false at the end of the list. */
+    boolean next() {
+        if (!positionsRead) {
+            skipPositions();
+        }
+        if (remaining == 0) {
+            return false;
+        }
+        remaining--;
+        doc += readVarInt();
+        positionCount = readVarInt();
+        positionsRead = false;
+        return true;
+    }
+
+    int doc() {
+        return doc;
+    }
+
+    int positionCount() {
+        return positionCount;
+    }
+
+    /**
+     * Decodes the positions of the current document.
+     * @param into A buffer of at least {@link #positionCount()} entries, or null to allocate one.
+     */
+    int[] positions(int[] into) {
+        int[] out = into != null && into.length >= positionCount ? into : new int[positionCount];
+        int last = 0;
+        for (int i = 0; i < positionCount; i++) {
+            last += readVarInt();
+            out[i] = last;
+        }
+        positionsRead = true;
+        return out;
+    }
+
+    private void skipPositions() {
+        for (int i = 0; i < positionCount; i++) {
+            while ((get(pos++) & 0x80) != 0) {
+                // continuation byte
+            }
+        }
+        positionsRead = true;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = get(pos++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private byte get(int position) {
+        if (window == null || !window.contains(position)) {
+            window = source.window(position);
+        }
+        return window.bytes().get(position - window.start());
+    }
+}
@@ -0,0 +1,61 @@
+package com.ittia.gds.note.index;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the postings of one term: for every document, in ascending id order,
+ * the document id delta, the number of positions and the position deltas, all as varints.
+ * {@link #toByteArray()} prefixes the encoded list with its document count.
+ */
+final class PostingsWriter {
+
+    private byte[] buffer = new byte[32];
+    private int length;
+    private int docCount;
+    private int lastDoc;
+
+    void addDoc(int doc, int[] positions, int positionCount) {
+        if (docCount > 0 && doc <= lastDoc) {
+            throw new IllegalArgumentException("Documents must be added in ascending order: " + doc + " after " + lastDoc);
+        }
+        writeVarInt(doc - lastDoc);
+        writeVarInt(positionCount);
+        int lastPosition = 0;
+        for (int i = 0; i < positionCount; i++) {
+            writeVarInt(positions[i] - lastPosition);
+            lastPosition = positions[i];
+        }
+        lastDoc = doc;
+        docCount++;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    byte[] toByteArray() {
+        byte[] header = new byte[5];
+        int headerLength = 0;
+        int value = docCount;
+        while ((value & ~0x7f) != 0) {
+            header[headerLength++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        header[headerLength++] = (byte) value;
+        byte[] out = new byte[headerLength + length];
+        System.arraycopy(header, 0, out, 0, headerLength);
+        System.arraycopy(buffer, 0, out, headerLength, length);
+        return out;
+    }
+
+    private void writeVarInt(int value) {
+        if (length + 5 > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        while ((value & ~0x7f) != 0) {
+            buffer[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+}
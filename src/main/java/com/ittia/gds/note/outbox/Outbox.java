@@ -0,0 +1,163 @@
+package com.ittia.gds.note.outbox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/**
+ * A durable queue of notes waiting to be delivered to the EMR gateway.
+ * Every submission is one file named by a monotonically increasing sequence number, written
+ * to a temporary name and atomically renamed, so a crash never leaves a half-written entry
+ * and pending notes survive restarts. A file is deleted only once the gateway has accepted it.
+ * The outbox is bounded: when {@link #MAX_PENDING} entries are waiting, new submissions are
+ * refused instead of piling up while the gateway is down.
+ * Given a cipher, queued notes are encrypted on disk and decrypted only when they are sent.
+ * Entries queued unencrypted before that are encrypted when the outbox opens; after that an
+ * unencrypted entry is refused and ends up in the dead letters.
+ */
+public class Outbox {
+
+    public static final int MAX_PENDING = 500;
+
+    static final String SUFFIX = ".msg";
+
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+
+    private final Path directory;
+    private final AtomicLong sequence;
+    private final StreamingAead cipher; // Null queues notes unencrypted
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "outbox");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile Runnable onEnqueued = () -> { };
+
+    public Outbox(Path directory) throws IOException {
+        this(directory, null);
+    }
+
+    public Outbox(Path directory, StreamingAead cipher) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.cipher = cipher;
+        // Sequence numbers double as idempotency keys, so they must not repeat after the outbox drains.
+        long max = System.currentTimeMillis() * 1000;
+        for (Path p : pending()) {
+            max = Math.max(max, sequenceOf(p));
+            if (cipher != null && !StreamingAead.isEncrypted(p)) {
+                Path temp = directory.resolve(p.getFileName() + ".tmp");
+                Files.write(temp, cipher.encrypt(Files.readAllBytes(p)));
+                Files.move(temp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        this.sequence = new AtomicLong(max);
+    }
+
+    /** Registers a callback run after each successful enqueue (the sender uses it to wake up). */
+    void setOnEnqueued(Runnable onEnqueued) {
+        this.onEnqueued = onEnqueued;
+    }
+
+    /**
+     * Queues a note for delivery on the outbox thread.
+     * @param body The note text to send.
+     * @return A future completed with true once the note is durably queued,
+     *         or false when the outbox is full.
+     */
+    public CompletableFuture<Boolean> submitAsync(String body) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (pendingCount() >= MAX_PENDING) {
+                    return false;
+                }
+                long seq = sequence.incrementAndGet();
+                Path target = directory.resolve(String.format("%016d%s", seq, SUFFIX));
+                Path temp = directory.resolve(target.getFileName() + ".tmp");
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                Files.write(temp, cipher == null ? bytes : cipher.encrypt(bytes));
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                onEnqueued.run();
+                return true;
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to queue note: " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    /** @return The queued entries, oldest first. */
+    List<Path> pending() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path p : stream) entries.add(p);
+        }
+        entries.sort(null);
+        return entries;
+    }
+
+    public int pendingCount() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path ignored : stream) count++;
+        }
+        return count;
+    }
+
+    /** @return The entry's note text as UTF-8, decrypted when the outbox has a cipher. */
+    byte[] read(Path entry) throws IOException {
+        byte[] stored = Files.readAllBytes(entry);
+        return cipher == null ? stored : cipher.decrypt(stored);
+    }
+
+    /** Removes an entry the gateway has accepted. */
+    void acknowledge(Path entry) throws IOException {
+        Files.deleteIfExists(entry);
+    }
+
+    /** Sets aside an entry the gateway refused, so it is not retried forever. */
+    void reject(Path entry) throws IOException {
+        Path rejected = Files.createDirectories(directory.resolve("rejected"));
+        Files.move(entry, rejected.resolve(entry.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Sets aside an entry that can never be delivered, e.g. because it can no longer be decrypted. */
+    void deadLetter(Path entry) throws IOException {
+        Path dead = Files.createDirectories(directory.resolve("dead"));
+        Files.move(entry, dead.resolve(entry.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long sequenceOf(Path entry) {
+        String name = entry.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Stops accepting notes and waits up to {@value #SHUTDOWN_WAIT_SECONDS} seconds for those already
+     * submitted to be queued; the outbox thread is a daemon and dies with the instance.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Outbox is still queueing; a note being submitted may be lost.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
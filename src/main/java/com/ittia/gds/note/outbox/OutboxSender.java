@@ -0,0 +1,487 @@
+package com.ittia.gds.note.outbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Delivers {@link Outbox} entries to the EMR gateway over HTTP/1.1.
+ * A single background thread drives up to {@link #MAX_CONNECTIONS} persistent, non-blocking
+ * connections through one {@link Selector}. Each idle connection is given a batch of up to
+ * {@link #BATCH_SIZE} entries whose requests are pipelined back to back; responses are matched
+ * to requests in order. Accepted entries are deleted from the outbox, rejected ones (4xx) are
+ * set aside, and everything else is retried with exponential backoff and jitter. An entry that
+ * cannot be read back, or that has failed {@link #MAX_ATTEMPTS} times, is moved to the
+ * outbox's dead-letter directory instead of being retried forever. Only plain HTTP is spoken;
+ * TLS is expected to be terminated by a local gateway proxy.
+ */
+public class OutboxSender {
+
+    static final int MAX_ATTEMPTS = 100; // About six hours of retries once the backoff has reached its ceiling
+
+    private static final int MAX_CONNECTIONS = 2;
+    private static final int BATCH_SIZE = 16;
+    private static final long BASE_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 300_000;
+    private static final long IDLE_POLL_MILLIS = 5_000;
+    private static final long RESPONSE_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_RESPONSE_BYTES = 1 << 20;
+
+    private final Outbox outbox;
+    private final InetSocketAddress address;
+    private final String hostHeader;
+    private final String path;
+    private final Selector selector;
+    private final long responseTimeoutMillis;
+    private final long baseBackoffMillis;
+    private final List<Connection> connections = new ArrayList<>();
+    private final Set<Path> inFlight = new HashSet<>();
+    private final Map<Path, long[]> retries = new HashMap<>(); // entry -> {attempts, notBefore}
+    private long connectFailures;
+    private long connectNotBefore;
+    private long delivered;
+    private volatile boolean running;
+    private volatile Consumer<String> statusListener = message -> { };
+    private Thread thread;
+
+    /** One persistent connection and the requests pipelined on it, oldest first. */
+    private static final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ArrayDeque<Path> requests = new ArrayDeque<>();
+        ByteBuffer out;
+        ByteBuffer in = ByteBuffer.allocate(8192);
+        long deadline;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        boolean idle() {
+            return channel.isConnected() && requests.isEmpty();
+        }
+    }
+
+    /**
+     * @param outbox The outbox to drain.
+     * @param gateway The gateway endpoint, e.g. {@code http://127.0.0.1:8080/notes}.
+     */
+    public OutboxSender(Outbox outbox, URI gateway) throws IOException {
+        this(outbox, gateway, RESPONSE_TIMEOUT_MILLIS, BASE_BACKOFF_MILLIS);
+    }
+
+    OutboxSender(Outbox outbox, URI gateway, long responseTimeoutMillis, long baseBackoffMillis) throws IOException {
+        if (!"http".equalsIgnoreCase(gateway.getScheme())) {
+            throw new IllegalArgumentException("Only http:// gateway URIs are supported: " + gateway);
+        }
+        int port = gateway.getPort() > 0 ? gateway.getPort() : 80;
+        this.outbox = outbox;
+        this.address = new InetSocketAddress(gateway.getHost(), port);
+        this.hostHeader = gateway.getHost() + ":" + port;
+        this.path = gateway.getRawPath() == null || gateway.getRawPath().isEmpty() ? "/" : gateway.getRawPath();
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.selector = Selector.open();
+        outbox.setOnEnqueued(selector::wakeup);
+    }
+
+    /** Receives short human-readable progress messages on the sender thread. */
+    public void setStatusListener(Consumer<String> statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "outbox-sender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                long now = System.currentTimeMillis();
+                dispatch(now);
+                selector.select(Math.max(1, nextWakeup(now) - now));
+                now = System.currentTimeMillis();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) onConnectable(c, now);
+                        if (key.isValid() && key.isWritable()) onWritable(c);
+                        if (key.isValid() && key.isReadable()) onReadable(c, now);
+                    } catch (IOException e) {
+                        fail(c, now, e.getMessage());
+                    }
+                }
+                for (Connection c : new ArrayList<>(connections)) {
+                    if (!c.requests.isEmpty() && now > c.deadline) {
+                        fail(c, now, "gateway did not respond in time");
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("Outbox sender stopped: " + e.getMessage());
+        } finally {
+            for (Connection c : new ArrayList<>(connections)) close(c);
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down
+            }
+        }
+    }
+
+    // Hands batches of due entries to idle connections, opening new ones up to the limit.
+    private void dispatch(long now) {
+        if (now < connectNotBefore) return;
+        boolean slotFree = connections.size() < MAX_CONNECTIONS;
+        for (Connection c : connections) slotFree |= c.idle();
+        if (!slotFree) return;
+
+        List<Path> due = new ArrayList<>();
+        try {
+            for (Path entry : outbox.pending()) {
+                long[] retry = retries.get(entry);
+                if (!inFlight.contains(entry) && (retry == null || retry[1] <= now)) due.add(entry);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read outbox: " + e.getMessage());
+            return;
+        }
+
+        int next = 0;
+        while (next < due.size()) {
+            Connection c = idleConnection();
+            if (c == null) {
+                if (connections.size() >= MAX_CONNECTIONS) break;
+                try {
+                    c = connect();
+                } catch (IOException e) {
+                    connectFailed(now, e.getMessage());
+                    break;
+                }
+            }
+            List<Path> batch = due.subList(next, Math.min(due.size(), next + BATCH_SIZE));
+            next += batch.size();
+            try {
+                send(c, batch, now);
+            } catch (IOException e) {
+                fail(c, now, e.getMessage());
+            }
+        }
+    }
+
+    private Connection idleConnection() {
+        for (Connection c : connections) {
+            if (c.idle()) return c;
+        }
+        return null;
+    }
+
+    private Connection connect() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+            boolean connected = channel.connect(address);
+            SelectionKey key = channel.register(selector, connected ? 0 : SelectionKey.OP_CONNECT);
+            Connection c = new Connection(channel, key);
+            key.attach(c);
+            connections.add(c);
+            return c;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void send(Connection c, List<Path> batch, long now) throws IOException {
+        ByteArrayOutputStream requests = new ByteArrayOutputStream();
+        for (Path entry : batch) {
+            byte[] body;
+            try {
+                body = outbox.read(entry);
+            } catch (NoSuchFileException e) {
+                continue; // Removed since it was listed
+            } catch (IOException e) {
+                // Corrupt or sealed with another key: no retry can fix it.
+                deadLetter(entry, "unreadable: " + e.getMessage());
+                continue;
+            }
+            String head = "POST " + path + " HTTP/1.1\r\n"
+                    + "Host: " + hostHeader + "\r\n"
+                    + "Content-Type: text/plain; charset=utf-8\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Idempotency-Key: " + entry.getFileName() + "\r\n"
+                    + "Connection: keep-alive\r\n\r\n";
+            requests.writeBytes(head.getBytes(StandardCharsets.US_ASCII));
+            requests.writeBytes(body);
+            c.requests.add(entry);
+            inFlight.add(entry);
+        }
+        if (requests.size() == 0) return;
+        c.out = ByteBuffer.wrap(requests.toByteArray());
+        c.deadline = now + responseTimeoutMillis;
+        if (c.channel.isConnected()) {
+            c.key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void onConnectable(Connection c, long now) {
+        try {
+            c.channel.finishConnect();
+        } catch (IOException e) {
+            // Nothing reached the gateway: hand the batch back without charging it a retry attempt.
+            for (Path entry : c.requests) inFlight.remove(entry);
+            c.requests.clear();
+            close(c);
+            connectFailed(now, e.getMessage());
+            return;
+        }
+        connectFailures = 0;
+        c.key.interestOps(c.out != null && c.out.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void onWritable(Connection c) throws IOException {
+        c.channel.write(c.out);
+        if (!c.out.hasRemaining()) {
+            c.out = null;
+            c.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void onReadable(Connection c, long now) throws IOException {
+        if (!c.in.hasRemaining()) {
+            if (c.in.capacity() >= MAX_RESPONSE_BYTES) throw new IOException("gateway response too large");
+            ByteBuffer grown = ByteBuffer.allocate(c.in.capacity() * 2);
+            c.in.flip();
+            grown.put(c.in);
+            c.in = grown;
+        }
+        int n = c.channel.read(c.in);
+        if (n < 0) {
+            if (c.requests.isEmpty()) {
+                close(c); // Idle keep-alive connection closed by the gateway
+                return;
+            }
+            throw new IOException("gateway closed the connection");
+        }
+        parseResponses(c, now);
+    }
+
+    // Consumes every complete response in the buffer and settles the matching request.
+    private void parseResponses(Connection c, long now) throws IOException {
+        c.in.flip();
+        boolean closeAfter = false;
+        while (!c.requests.isEmpty()) {
+            int start = c.in.position();
+            int headerEnd = indexOf(c.in, start, "\r\n\r\n");
+            if (headerEnd < 0) break;
+            String head = StandardCharsets.ISO_8859_1.decode(c.in.slice(start, headerEnd - start)).toString();
+            String[] lines = head.split("\r\n");
+            String[] statusLine = lines[0].split(" ", 3);
+            if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+                throw new IOException("malformed gateway response");
+            }
+            int status = parseNumber(statusLine[1]);
+            int contentLength = 0;
+            boolean chunked = false;
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i].toLowerCase(Locale.ROOT);
+                if (line.startsWith("content-length:")) contentLength = parseNumber(line.substring(15).trim());
+                if (line.startsWith("transfer-encoding:") && line.contains("chunked")) chunked = true;
+                if (line.startsWith("connection:") && line.contains("close")) closeAfter = true;
+            }
+            int bodyStart = headerEnd + 4;
+            int end = chunked ? chunkedEnd(c.in, bodyStart) : bodyStart + contentLength;
+            if (end < 0 || end > c.in.limit()) break;
+            c.in.position(end);
+            settle(c.requests.poll(), status, now);
+            if (closeAfter) break;
+        }
+        c.in.compact();
+        if (c.requests.isEmpty()) {
+            c.deadline = Long.MAX_VALUE;
+        } else {
+            c.deadline = now + responseTimeoutMillis;
+        }
+        if (closeAfter) {
+            if (c.requests.isEmpty()) {
+                close(c);
+            } else {
+                fail(c, now, "gateway closed the connection");
+            }
+        }
+    }
+
+    private void settle(Path entry, int status, long now) {
+        inFlight.remove(entry);
+        try {
+            if (status >= 200 && status < 300) {
+                outbox.acknowledge(entry);
+                retries.remove(entry);
+                delivered++;
+                statusListener.accept("Delivered " + delivered + " note(s) to EMR");
+            } else if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                outbox.reject(entry);
+                retries.remove(entry);
+                statusListener.accept("EMR rejected a note (HTTP " + status + "); moved to outbox/rejected");
+            } else {
+                long delay = scheduleRetry(entry, now, "HTTP " + status);
+                if (delay >= 0) {
+                    statusListener.accept("EMR submit failed (HTTP " + status + "); retrying in " + delay / 1000 + " s");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to update outbox entry " + entry + ": " + e.getMessage());
+        }
+    }
+
+    // Returns the delay before the entry's next attempt, or -1 if it has used up its attempts.
+    private long scheduleRetry(Path entry, long now, String reason) {
+        long[] retry = retries.computeIfAbsent(entry, k -> new long[2]);
+        retry[0]++;
+        if (retry[0] >= MAX_ATTEMPTS) {
+            deadLetter(entry, "gave up after " + retry[0] + " attempts (" + reason + ")");
+            return -1;
+        }
+        retry[1] = now + backoff(retry[0]);
+        return retry[1] - now;
+    }
+
+    private void deadLetter(Path entry, String reason) {
+        retries.remove(entry);
+        try {
+            outbox.deadLetter(entry);
+            System.err.println("Outbox entry " + entry.getFileName() + " moved to outbox/dead: " + reason);
+            statusListener.accept("A note could not be delivered to EMR; moved to outbox/dead");
+        } catch (IOException e) {
+            System.err.println("Failed to set aside outbox entry " + entry + ": " + e.getMessage());
+        }
+    }
+
+    // Fails every request pipelined on the connection; they will be retried on a new one.
+    private void fail(Connection c, long now, String reason) {
+        long delay = 0;
+        for (Path entry : c.requests) {
+            inFlight.remove(entry);
+            delay = Math.max(delay, scheduleRetry(entry, now, reason));
+        }
+        if (delay > 0) {
+            statusListener.accept("EMR submit failed (" + reason + "); retrying in " + delay / 1000 + " s");
+        }
+        c.requests.clear();
+        close(c);
+    }
+
+    private void connectFailed(long now, String reason) {
+        connectFailures++;
+        connectNotBefore = now + backoff(connectFailures);
+        statusListener.accept("EMR gateway unavailable (" + reason + "); retrying in "
+                + (connectNotBefore - now) / 1000 + " s");
+    }
+
+    private void close(Connection c) {
+        connections.remove(c);
+        c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException ignored) {
+            // Already broken
+        }
+    }
+
+    private long nextWakeup(long now) {
+        long next = now + IDLE_POLL_MILLIS;
+        if (connectNotBefore > now) next = Math.min(next, connectNotBefore);
+        for (long[] retry : retries.values()) {
+            if (retry[1] > now) next = Math.min(next, retry[1]);
+        }
+        for (Connection c : connections) {
+            if (!c.requests.isEmpty()) next = Math.min(next, c.deadline);
+        }
+        return next;
+    }
+
+    private long backoff(long attempts) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << Math.min(20, attempts - 1));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    // A status code or length the gateway mangled fails the connection like any other I/O error.
+    private static int parseNumber(String field) throws IOException {
+        try {
+            int value = Integer.parseInt(field.trim());
+            if (value >= 0) return value;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("malformed gateway response");
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, String pattern) {
+        outer:
+        for (int i = from; i + pattern.length() <= buffer.limit(); i++) {
+            for (int j = 0; j < pattern.length(); j++) {
+                if (buffer.get(i + j) != pattern.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Returns the index just past a complete chunked body, or -1 if more bytes are needed.
+    private static int chunkedEnd(ByteBuffer buffer, int from) throws IOException {
+        int pos = from;
+        while (true) {
+            int lineEnd = indexOf(buffer, pos, "\r\n");
+            if (lineEnd < 0) return -1;
+            String sizeField = StandardCharsets.ISO_8859_1.decode(buffer.slice(pos, lineEnd - pos)).toString();
+            int semicolon = sizeField.indexOf(';');
+            int size;
+            try {
+                size = Integer.parseInt((semicolon >= 0 ? sizeField.substring(0, semicolon) : sizeField).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed chunked response");
+            }
+            pos = lineEnd + 2;
+            if (size == 0) {
+                int trailerEnd = indexOf(buffer, pos - 2, "\r\n\r\n");
+                return trailerEnd < 0 ? -1 : trailerEnd + 4;
+            }
+            pos += size + 2;
+            if (pos > buffer.limit()) return -1;
+        }
+    }
+}
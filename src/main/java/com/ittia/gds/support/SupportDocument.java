@@ -0,0 +1,109 @@
+package com.ittia.gds.support;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A read-only text document split into pages.
+ * Files are memory-mapped, so their bytes stay in the OS page cache instead of on the heap;
+ * the only per-document heap cost is the table of page start offsets. A page is decoded to a
+ * String only when it is shown. Pages end on a line break after {@link #PAGE_LINES} lines, or
+ * earlier at a character boundary once a page would exceed {@link #PAGE_BYTES}.
+ */
+public final class SupportDocument {
+
+    public static final int PAGE_LINES = 300;
+    public static final int PAGE_BYTES = 64 * 1024;
+
+    private final String name;
+    private final ByteBuffer content; // Mapped for files, heap for small classpath resources
+    private final int[] pageStarts;   // pageStarts[pageCount] == content.limit()
+
+    private SupportDocument(String name, ByteBuffer content) {
+        this.name = name;
+        this.content = content;
+        this.pageStarts = paginate(content);
+    }
+
+    /** Maps a file; the mapping stays valid after the channel is closed. */
+    static SupportDocument map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Document is too large to open: " + file.getFileName());
+            }
+            return new SupportDocument(file.getFileName().toString(), channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    static SupportDocument wrap(String name, byte[] bytes) {
+        return new SupportDocument(name, ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+    }
+
+    private static int[] paginate(ByteBuffer content) {
+        int limit = content.limit();
+        int[] starts = new int[16];
+        int count = 0;
+        int pos = 0;
+        starts[count++] = 0;
+        while (pos < limit) {
+            int pageStart = pos;
+            int lines = 0;
+            while (pos < limit && lines < PAGE_LINES && pos - pageStart < PAGE_BYTES) {
+                if (content.get(pos++) == '\n') lines++;
+            }
+            if (pos < limit && pos - pageStart >= PAGE_BYTES) {
+                // Never split a UTF-8 sequence: back up to the byte that starts a character.
+                while (pos > pageStart + 1 && (content.get(pos) & 0xC0) == 0x80) pos--;
+            }
+            if (pos >= limit) break;
+            if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+            starts[count++] = pos;
+        }
+        if (count == starts.length) starts = Arrays.copyOf(starts, count + 1);
+        starts[count++] = limit;
+        return Arrays.copyOf(starts, count);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPageCount() {
+        return Math.max(1, pageStarts.length - 1);
+    }
+
+    public long getSize() {
+        return content.limit();
+    }
+
+    /** Decodes one page; malformed bytes are replaced rather than failing the whole page. */
+    public String page(int index) {
+        if (pageStarts.length < 2) return "";
+        int start = pageStarts[index];
+        int end = pageStarts[index + 1];
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer chars = decoder.decode(content.slice(start, end - start));
+            return chars.toString();
+        } catch (CharacterCodingException e) {
+            return ""; // Not reachable with REPLACE
+        }
+    }
+
+    /** @return The bytes this document pins, mapped or on the heap; the cache budgets by this. */
+    long footprint() {
+        return 64 + (long) pageStarts.length * Integer.BYTES + content.capacity();
+    }
+}
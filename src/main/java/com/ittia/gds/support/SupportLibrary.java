@@ -0,0 +1,173 @@
+package com.ittia.gds.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The reference material under {@code EntryDir.SUPPORT_DIR} (Thyroid guidelines and the like).
+ * Indexing and opening run on the "support-library" thread. Opened documents are kept in an
+ * LRU cache bounded by {@link SupportDocument#footprint()} so flipping between a few guidelines
+ * does not re-read them, while a handful of large files cannot pin unbounded memory.
+ * A cached document is reopened when its file's size or modification time changes.
+ */
+public class SupportLibrary {
+
+    /** One indexed document. */
+    public record Entry(Path path, String relativeName, long size, long modified) {
+        @Override
+        public String toString() {
+            return relativeName;
+        }
+    }
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of("txt", "md", "csv", "tsv", "log", "json", "xml", "html", "htm");
+
+    private final Path root;
+    private final long cacheBytes;
+    private final LinkedHashMap<String, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "support-library");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Cached(SupportDocument document, long size, long modified) {}
+
+    /**
+     * @param root The folder to index.
+     * @param cacheBytes The most document bytes to keep open at once.
+     */
+    public SupportLibrary(Path root, long cacheBytes) {
+        this.root = root;
+        this.cacheBytes = cacheBytes;
+    }
+
+    /** Lists the text documents under the root, sorted by relative path. */
+    public CompletableFuture<List<Entry>> indexAsync() {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Entry> entries = new ArrayList<>();
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile() && isText(file)) {
+                            entries.add(new Entry(file, root.relativize(file).toString().replace('\\', '/'),
+                                    attrs.size(), attrs.lastModifiedTime().toMillis()));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        System.err.println("Skipping unreadable support file: " + file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to index support documents: " + e.getMessage(), e);
+            }
+            entries.sort((a, b) -> a.relativeName().compareToIgnoreCase(b.relativeName()));
+            return entries;
+        }, executor);
+    }
+
+    /** Opens a document from the cache, or maps it in the background. */
+    public CompletableFuture<SupportDocument> openAsync(Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                String key = file.toAbsolutePath().normalize().toString();
+                long modified = attrs.lastModifiedTime().toMillis();
+                SupportDocument document = lookup(key, attrs.size(), modified);
+                if (document == null) {
+                    document = SupportDocument.map(file);
+                    store(key, new Cached(document, attrs.size(), modified));
+                }
+                return document;
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open " + file.getFileName() + ": " + e.getMessage(), e);
+            }
+        }, executor);
+    }
+
+    /** Opens a classpath resource such as the launcher's prologue; these are small and read whole. */
+    public CompletableFuture<SupportDocument> openResourceAsync(String resourcePath) {
+        return CompletableFuture.supplyAsync(() -> {
+            String key = "resource:" + resourcePath;
+            SupportDocument document = lookup(key, -1, -1);
+            if (document != null) {
+                return document;
+            }
+            try (InputStream in = SupportLibrary.class.getResourceAsStream(resourcePath)) {
+                if (in == null) {
+                    throw new IOException("File not found at: " + resourcePath);
+                }
+                String name = resourcePath.substring(resourcePath.lastIndexOf('/') + 1);
+                document = SupportDocument.wrap(name, in.readAllBytes());
+                store(key, new Cached(document, -1, -1));
+                return document;
+            } catch (IOException e) {
+                throw new IllegalStateException("Resource file could not be loaded: " + resourcePath, e);
+            }
+        }, executor);
+    }
+
+    private synchronized SupportDocument lookup(String key, long size, long modified) {
+        Cached cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.size() != size || cached.modified() != modified) {
+            cache.remove(key);
+            cachedBytes -= cached.document().footprint();
+            return null;
+        }
+        return cached.document();
+    }
+
+    private synchronized void store(String key, Cached entry) {
+        Cached previous = cache.put(key, entry);
+        if (previous != null) {
+            cachedBytes -= previous.document().footprint();
+        }
+        cachedBytes += entry.document().footprint();
+        // Evict least recently used documents, but always keep the one just opened.
+        Iterator<Map.Entry<String, Cached>> it = cache.entrySet().iterator();
+        while (cachedBytes > cacheBytes && cache.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Cached> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+            cachedBytes -= eldest.getValue().document().footprint();
+            it.remove();
+        }
+    }
+
+    private static boolean isText(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && TEXT_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,14 +1,21 @@
 package com.ittia.gds.ui.mainframe.changestring;
 
-import java.util.Map;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.ittia.gds.db.DatabaseManager; // Import the new DatabaseManager
 import com.ittia.gds.ui.model.Abbreviation;
+import com.ittia.gds.ui.theme.ThemeManager;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
+import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -16,10 +23,13 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.BorderPane;
@@ -32,14 +42,30 @@ import javafx.stage.Stage;
 public class AbbreviationManagerUI {
 
     private final DatabaseManager dbManager;
-    private final AbbreviationsMain abbreviationHandler; // Used to tell the main handler to refresh its map
+    private final AbbreviationsMain abbreviationHandler; // Kept in step with each save and delete
     private final TableView<Abbreviation> tableView = new TableView<>();
     private final ObservableList<Abbreviation> abbreviationList = FXCollections.observableArrayList();
-    private FilteredList<Abbreviation> filteredData; 
+    private final ComboBox<String> categoryFilter = new ComboBox<>();
+    private final ComboBox<String> ownerFilter = new ComboBox<>();
+    private final ComboBox<DatabaseManager.SortOrder> sortOrder = new ComboBox<>();
+    private final TextField findField = new TextField();
+    private final Label countLabel = new Label();
+    // Queries run here so a large dictionary never stalls the dialog; only the newest result is shown.
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "abbreviation-query");
+        t.setDaemon(true);
+        return t;
+    });
+    private long queryGeneration;
+
+    private static final String ALL = "(All)";
+    private static final int MAX_ROWS = 1000;
 
     public AbbreviationManagerUI(AbbreviationsMain handler, DatabaseManager dbManager) {
         this.abbreviationHandler = handler;
         this.dbManager = dbManager;
+        // Registered once here; display() may run many times on the same instance.
+        findField.textProperty().addListener((obs, oldVal, newVal) -> runQuery());
     }
 
     public void display() {
@@ -58,23 +84,50 @@ public class AbbreviationManagerUI {
         valueCol.setCellValueFactory(new PropertyValueFactory<>("value"));
         valueCol.setPrefWidth(350); // Give more space for value
 
-        tableView.getColumns().addAll(keyCol, valueCol);
-        
-        filteredData = new FilteredList<>(abbreviationList, p -> true); // Initialize here
-        tableView.setItems(filteredData);
-        loadAbbreviations(); // Load data from DB into the list
+        TableColumn<Abbreviation, String> categoryCol = new TableColumn<>("Category");
+        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        categoryCol.setPrefWidth(100);
+
+        TableColumn<Abbreviation, String> ownerCol = new TableColumn<>("Owner");
+        ownerCol.setCellValueFactory(new PropertyValueFactory<>("owner"));
+        ownerCol.setPrefWidth(80);
+
+        TableColumn<Abbreviation, Number> updatedCol = new TableColumn<>("Updated");
+        updatedCol.setCellValueFactory(cell -> cell.getValue().updatedAtProperty());
+        updatedCol.setCellFactory(col -> new TableCell<>() {
+            private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+            @Override
+            protected void updateItem(Number item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null || item.longValue() == 0 ? null : format.format(new Date(item.longValue())));
+            }
+        });
+        updatedCol.setPrefWidth(120);
+
+        TableColumn<Abbreviation, Number> usageCol = new TableColumn<>("Uses");
+        usageCol.setCellValueFactory(cell -> cell.getValue().usageCountProperty());
+        usageCol.setPrefWidth(50);
+
+        tableView.getColumns().setAll(keyCol, valueCol, categoryCol, ownerCol, updatedCol, usageCol);
+        // Sorting is done by the database through the sort box, so header clicks would only sort the visible page.
+        tableView.getColumns().forEach(col -> col.setSortable(false));
+        tableView.setItems(abbreviationList);
 
         // --- Controls Setup ---
-        TextField findField = new TextField();
         findField.setPromptText("Find by key or value...");
-        findField.textProperty().addListener((obs, oldVal, newVal) -> {
-            filteredData.setPredicate(abbreviation -> {
-                if (newVal == null || newVal.isEmpty()) return true;
-                String lowerCaseFilter = newVal.toLowerCase();
-                return abbreviation.getKey().toLowerCase().contains(lowerCaseFilter)
-                    || abbreviation.getValue().toLowerCase().contains(lowerCaseFilter);
-            });
-        });
+
+        categoryFilter.setOnAction(e -> runQuery());
+        ownerFilter.setOnAction(e -> runQuery());
+        sortOrder.getItems().setAll(DatabaseManager.SortOrder.values());
+        sortOrder.setValue(DatabaseManager.SortOrder.KEY);
+        sortOrder.setOnAction(e -> runQuery());
+        loadAbbreviations(); // Load filter choices and the first page from the DB
+
+        HBox filters = new HBox(10, new Label("Category:"), categoryFilter, new Label("Owner:"), ownerFilter,
+                new Label("Sort:"), sortOrder, countLabel);
+        filters.setPadding(new Insets(10, 10, 0, 10));
+        filters.setAlignment(Pos.CENTER_LEFT);
 
         // Clear filter button
         Button clearFilterButton = new Button("X");
@@ -111,19 +164,43 @@ public class AbbreviationManagerUI {
 
         // --- Layout ---
         BorderPane layout = new BorderPane();
+        layout.setTop(filters);
         layout.setCenter(tableView);
         layout.setBottom(controls);
+        BorderPane.setMargin(tableView, new Insets(10, 10, 0, 10));
 
-        Scene scene = new Scene(layout, 650, 450); // Adjust size for better fit
+        Scene scene = new Scene(layout, 900, 500); // Adjust size for better fit
+        ThemeManager.apply(scene);
         stage.setScene(scene);
         stage.showAndWait();
     }
 
     private void loadAbbreviations() {
-        abbreviationList.clear();
-        Map<String, String> allAbbrs = dbManager.getAllAbbreviations(); // Use DatabaseManager
-        allAbbrs.forEach((key, value) -> abbreviationList.add(new Abbreviation(key, value)));
-        abbreviationHandler.refreshAbbreviationsMap(); // Notify the main handler to refresh its map
+        refreshChoices(categoryFilter, dbManager.getCategories());
+        refreshChoices(ownerFilter, dbManager.getOwners());
+        runQuery();
+    }
+
+    private static void refreshChoices(ComboBox<String> box, List<String> values) {
+        String selected = box.getValue();
+        box.getItems().setAll(ALL);
+        box.getItems().addAll(values);
+        box.setValue(selected != null && box.getItems().contains(selected) ? selected : ALL);
+    }
+
+    /** Runs the current filters as an indexed query off the FX thread. */
+    private void runQuery() {
+        String category = ALL.equals(categoryFilter.getValue()) ? null : categoryFilter.getValue();
+        String owner = ALL.equals(ownerFilter.getValue()) ? null : ownerFilter.getValue();
+        String text = findField.getText();
+        DatabaseManager.SortOrder sort = sortOrder.getValue() == null ? DatabaseManager.SortOrder.KEY : sortOrder.getValue();
+        long generation = ++queryGeneration;
+        CompletableFuture.supplyAsync(() -> dbManager.findAbbreviations(category, owner, text, sort, MAX_ROWS), queryExecutor)
+            .thenAccept(rows -> Platform.runLater(() -> {
+                if (generation != queryGeneration) return; // A newer query is on its way
+                abbreviationList.setAll(rows);
+                countLabel.setText(rows.size() == MAX_ROWS ? "First " + MAX_ROWS + " matches" : rows.size() + " matches");
+            }));
     }
     
     private void showAddEditDialog(Abbreviation abbrToEdit) {
@@ -140,18 +217,30 @@ public class AbbreviationManagerUI {
 
         TextField keyField = new TextField();
         keyField.setPromptText("Key (e.g., :htn )");
-        TextField valueField = new TextField();
-        valueField.setPromptText("Value (e.g., Hypertension)");
+        TextArea valueField = new TextArea(); // Multi-line so exam templates can be entered
+        valueField.setPromptText("Value (e.g., Hypertension, or Blood pressure {1}/{2} mmHg)");
+        valueField.setPrefRowCount(4);
+        valueField.setWrapText(true);
+        ComboBox<String> categoryField = new ComboBox<>();
+        categoryField.setEditable(true);
+        categoryField.getItems().setAll(dbManager.getCategories());
+        categoryField.setValue(Abbreviation.DEFAULT_CATEGORY);
+        Label templateHelp = new Label("Placeholders: {1}..{9} arguments, {date}, {time}; {{ and }} for literal braces.");
+        templateHelp.setWrapText(true);
 
         if (abbrToEdit != null) {
             keyField.setText(abbrToEdit.getKey());
             valueField.setText(abbrToEdit.getValue());
+            categoryField.setValue(abbrToEdit.getCategory());
         }
 
         grid.add(new Label("Key:"), 0, 0);
         grid.add(keyField, 1, 0);
         grid.add(new Label("Value:"), 0, 1);
         grid.add(valueField, 1, 1);
+        grid.add(templateHelp, 1, 2);
+        grid.add(new Label("Category:"), 0, 3);
+        grid.add(categoryField, 1, 3);
         dialog.getDialogPane().setContent(grid);
 
         // Enable/Disable Save button based on input
@@ -163,6 +252,15 @@ public class AbbreviationManagerUI {
         valueField.textProperty().addListener((obs, oldVal, newVal) -> 
             saveButton.setDisable(keyField.getText().isBlank() || newVal.isBlank()));
 
+        // Validate the template before the dialog closes so a typo can be fixed in place
+        saveButton.addEventFilter(ActionEvent.ACTION, event -> {
+            try {
+                AbbreviationTemplate.compile(valueField.getText().trim());
+            } catch (IllegalArgumentException ex) {
+                new Alert(Alert.AlertType.WARNING, "Invalid template: " + ex.getMessage()).showAndWait();
+                event.consume();
+            }
+        });
 
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == saveButtonType) {
@@ -174,7 +272,11 @@ public class AbbreviationManagerUI {
                     if (!formattedKey.endsWith(" ")) {
                         formattedKey = formattedKey + " ";
                     }
-                    return new Abbreviation(formattedKey, valueField.getText().trim());
+                    String category = categoryField.getEditor().getText();
+                    // Editing keeps the original owner; new entries belong to whoever created them.
+                    String owner = abbrToEdit != null ? abbrToEdit.getOwner() : System.getProperty("user.name", "");
+                    return new Abbreviation(formattedKey, valueField.getText().trim(),
+                            category == null || category.isBlank() ? Abbreviation.DEFAULT_CATEGORY : category.trim(), owner, 0, 0);
                 } else {
                     new Alert(Alert.AlertType.WARNING, "Key and Value cannot be empty.").showAndWait();
                     return null;
@@ -187,18 +289,20 @@ public class AbbreviationManagerUI {
         result.ifPresent(abbr -> {
             // Check if the key already exists and warn/confirm if it's an "add" operation
             // and the key is different from the original (if editing)
-            if (abbrToEdit == null && dbManager.getAllAbbreviations().containsKey(abbr.getKey())) {
+            if (abbrToEdit == null && dbManager.exists(abbr.getKey())) {
                 Alert confirmOverwrite = new Alert(Alert.AlertType.CONFIRMATION);
                 confirmOverwrite.setTitle("Confirm Overwrite");
                 confirmOverwrite.setHeaderText("Abbreviation '" + abbr.getKey() + "' already exists.");
                 confirmOverwrite.setContentText("Do you want to update its value?");
                 Optional<ButtonType> confirmResult = confirmOverwrite.showAndWait();
                 if (confirmResult.isPresent() && confirmResult.get() == ButtonType.OK) {
-                    dbManager.addOrUpdateAbbreviation(abbr.getKey(), abbr.getValue()); // Use DatabaseManager
+                    dbManager.addOrUpdateAbbreviation(abbr); // Use DatabaseManager
+                    abbreviationHandler.abbreviationSaved(abbr.getKey(), abbr.getValue());
                     loadAbbreviations();
                 }
             } else {
-                dbManager.addOrUpdateAbbreviation(abbr.getKey(), abbr.getValue()); // Use DatabaseManager
+                dbManager.addOrUpdateAbbreviation(abbr); // Use DatabaseManager
+                abbreviationHandler.abbreviationSaved(abbr.getKey(), abbr.getValue());
                 loadAbbreviations();
             }
         });
@@ -224,6 +328,7 @@ public class AbbreviationManagerUI {
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
                 dbManager.deleteAbbreviation(selected.getKey()); // Use DatabaseManager
+                abbreviationHandler.abbreviationDeleted(selected.getKey());
                 loadAbbreviations();
             }
         } else {
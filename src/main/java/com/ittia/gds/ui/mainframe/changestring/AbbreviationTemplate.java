@@ -0,0 +1,184 @@
+package com.ittia.gds.ui.mainframe.changestring;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled abbreviation value.
+ * The raw value stored in the {@code abbreviations} table may contain placeholders:
+ * <ul>
+ *   <li>{@code {1}} .. {@code {9}} - positional arguments typed after the key (":bp 120 80 ")</li>
+ *   <li>{@code {date}} - today's date (yyyy-MM-dd)</li>
+ *   <li>{@code {time}} - the current time (HH:mm)</li>
+ *   <li>{@code {{} and {@code }}} - literal braces</li>
+ * </ul>
+ * Values may span several lines, which is how multi-line exam templates are written.
+ * A template is parsed once by {@link #compile(String)}; {@link #expand(String[])} only
+ * concatenates the precomputed segments, so nothing is re-parsed on the keystroke path.
+ */
+public final class AbbreviationTemplate {
+
+    public static final int MAX_ARGS = 9;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    // Segment codes: >= 0 is an argument index, the negatives below are special slots.
+    private static final int LITERAL = -1;
+    private static final int DATE = -2;
+    private static final int TIME = -3;
+
+    private final String source;
+    private final String[] literals;
+    private final int[] codes;
+    private final int arity;
+    private final int literalLength;
+
+    private AbbreviationTemplate(String source, String[] literals, int[] codes, int arity) {
+        this.source = source;
+        this.literals = literals;
+        this.codes = codes;
+        this.arity = arity;
+        int length = 0;
+        for (String literal : literals) {
+            if (literal != null) length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parses a raw abbreviation value into its compiled form.
+     * @param source The value as stored in the database.
+     * @return The compiled template.
+     * @throws IllegalArgumentException If the value contains a malformed or unknown placeholder,
+     *         or if its argument placeholders are not numbered contiguously from {1}.
+     */
+    public static AbbreviationTemplate compile(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Template value cannot be null.");
+        }
+        List<String> literals = new ArrayList<>();
+        List<Integer> codes = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean[] usedArgs = new boolean[MAX_ARGS];
+        int arity = 0;
+
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '{' && i + 1 < source.length() && source.charAt(i + 1) == '{') {
+                literal.append('{');
+                i += 2;
+            } else if (c == '}' && i + 1 < source.length() && source.charAt(i + 1) == '}') {
+                literal.append('}');
+                i += 2;
+            } else if (c == '}') {
+                throw new IllegalArgumentException("Unmatched '}' at position " + i + ". Use '}}' for a literal brace.");
+            } else if (c == '{') {
+                int close = source.indexOf('}', i + 1);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed placeholder starting at position " + i + ".");
+                }
+                String name = source.substring(i + 1, close).trim().toLowerCase();
+                int code;
+                if (name.equals("date")) {
+                    code = DATE;
+                } else if (name.equals("time")) {
+                    code = TIME;
+                } else if (name.length() == 1 && name.charAt(0) >= '1' && name.charAt(0) <= '9') {
+                    code = name.charAt(0) - '1';
+                    usedArgs[code] = true;
+                    arity = Math.max(arity, code + 1);
+                } else {
+                    throw new IllegalArgumentException("Unknown placeholder '{" + name + "}'. "
+                            + "Use {1}..{" + MAX_ARGS + "}, {date} or {time}.");
+                }
+                if (literal.length() > 0) {
+                    literals.add(literal.toString());
+                    codes.add(LITERAL);
+                    literal.setLength(0);
+                }
+                literals.add(null);
+                codes.add(code);
+                i = close + 1;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            literals.add(literal.toString());
+            codes.add(LITERAL);
+        }
+        for (int a = 0; a < arity; a++) {
+            if (!usedArgs[a]) {
+                throw new IllegalArgumentException("Placeholder {" + (a + 1) + "} is missing; arguments must be numbered from {1} without gaps.");
+            }
+        }
+
+        int[] codeArray = new int[codes.size()];
+        for (int c = 0; c < codeArray.length; c++) {
+            codeArray[c] = codes.get(c);
+        }
+        return new AbbreviationTemplate(source, literals.toArray(new String[0]), codeArray, arity);
+    }
+
+    /**
+     * Wraps a value as a plain literal without interpreting placeholders.
+     * Used for legacy rows saved before templates existed that do not compile.
+     */
+    public static AbbreviationTemplate literal(String value) {
+        return new AbbreviationTemplate(value, new String[] { value }, new int[] { LITERAL }, 0);
+    }
+
+    /**
+     * Compiles a value loaded from the database, falling back to a literal when it
+     * is not a valid template so that old entries keep expanding as before.
+     */
+    public static AbbreviationTemplate compileOrLiteral(String value) {
+        try {
+            return compile(value);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Abbreviation value is not a valid template, using it verbatim: " + e.getMessage());
+            return literal(value);
+        }
+    }
+
+    /**
+     * Fills the template in.
+     * @param args The positional arguments; must hold at least {@link #getArity()} entries.
+     * @return The expanded text.
+     */
+    public String expand(String[] args) {
+        if (codes.length == 1 && codes[0] == LITERAL) {
+            return literals[0];
+        }
+        StringBuilder sb = new StringBuilder(literalLength + 16 * codes.length);
+        for (int i = 0; i < codes.length; i++) {
+            int code = codes[i];
+            if (code == LITERAL) {
+                sb.append(literals[i]);
+            } else if (code == DATE) {
+                sb.append(DATE_FORMAT.format(LocalDate.now()));
+            } else if (code == TIME) {
+                sb.append(TIME_FORMAT.format(LocalTime.now()));
+            } else {
+                sb.append(args[code]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** @return The number of positional arguments the key must be followed by. */
+    public int getArity() {
+        return arity;
+    }
+
+    /** @return The raw value this template was compiled from. */
+    public String getSource() {
+        return source;
+    }
+}
@@ -1,6 +1,5 @@
 package com.ittia.gds.ui.mainframe.changestring;
 
-import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -9,88 +8,74 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.Arrays; // Import Arrays
-
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
-import javafx.scene.control.TextArea;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.ittia.gds.audit.AuditLog;
+import com.ittia.gds.audit.AuditRecord;
+import com.ittia.gds.db.DatabaseManager;
+import com.ittia.gds.ui.mainframe.document.PieceTable;
+import com.ittia.gds.ui.mainframe.document.SectionDocument;
+import com.ittia.gds.ui.mainframe.document.TextDelta;
 import com.ittia.gds.ui.model.Abbreviation;
 
-public class AbbreviationsMain implements ChangeListener<String> {
+public class AbbreviationsMain {
+
+    // One dictionary per JVM, shared by every EMR window: it is read from the database and compiled
+    // once (see preloadDictionary), so windows opened later in a running instance start instantly.
+    private static final Map<String, AbbreviationTemplate> DICTIONARY = new ConcurrentHashMap<>();
+    private static boolean dictionaryLoaded;
 
-    private final Map<String, String> abbreviations;
-    private TextArea[] inputAreas; // REMOVED 'final'
-    private TextArea outputArea;   // REMOVED 'final'
-    private String[] textAreaTitles; // REMOVED 'final'
+    private final Map<String, AbbreviationTemplate> abbreviations; // Values are compiled once on load
+    private SectionDocument[] sections;
+    private AuditLog auditLog;
+    // Usage counts feed the manager's "most used" ranking; the update never runs on the FX thread.
+    // One writer per JVM like the dictionary, started on first use (see recordUsage).
+    private static ExecutorService usageRecorder;
 
-    private static final Pattern ABBREVIATION_PATTERN = Pattern.compile(":\\s*(\\w+)\\s+");
-    private static final String DB_PATH = "jdbc:sqlite:" + System.getProperty("user.dir") + "/src/main/resources/db/abbreviations.db";
+    private static final String DB_PATH = DatabaseManager.DB_URL;
 
     /**
      * Default constructor for AbbreviationsMain.
      * Initializes core components for text expansion.
      */
     public AbbreviationsMain() {
-        this.abbreviations = new HashMap<>(); // This can remain final as it's assigned only here
-        initializeDatabase();
-        initializeAbbreviations();
-        // Do NOT initialize inputAreas, outputArea, textAreaTitles here
-        // if they are to be assigned in a chained constructor.
-        // They will be null until the specific constructor assigns them.
+        this.abbreviations = DICTIONARY;
+        preloadDictionary();
     }
 
     /**
-     * Constructor for AbbreviationsMain used when text input areas are to be monitored
+     * Constructor for AbbreviationsMain used when section documents are to be monitored
      * for abbreviation expansion.
-     * @param inputAreas An array of TextArea elements to monitor for abbreviations.
-     * @param outputArea The TextArea where combined output from inputAreas is displayed.
-     * @param textAreaTitles The titles corresponding to the inputAreas for display in output.
+     * @param sections The section documents to monitor, in title order.
      */
-    public AbbreviationsMain(TextArea[] inputAreas, TextArea outputArea, String[] textAreaTitles) {
+    public AbbreviationsMain(SectionDocument[] sections) {
         this(); // Call the default constructor to ensure 'abbreviations' map is initialized.
-
-        // Assign the provided input/output areas and titles HERE.
-        // These fields are no longer 'final' so they can be assigned after 'this()'.
-        this.inputAreas = inputAreas;
-        this.outputArea = outputArea;
-        this.textAreaTitles = textAreaTitles;
-        
-        if (this.inputAreas != null && this.inputAreas.length > 0) {
+        this.sections = sections;
+        if (this.sections != null && this.sections.length > 0) {
             attachListeners();
         }
     }
 
-    private void initializeDatabase() {
-        File dbDir = new File(System.getProperty("user.dir") + "/src/main/resources/db");
-        if (!dbDir.exists()) {
-            boolean created = dbDir.mkdirs();
-            if (!created) {
-                System.err.println("Failed to create directory: " + dbDir.getAbsolutePath());
-                return;
-            }
-        }
-
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             Statement stmt = conn.createStatement()) {
-            String sql = "CREATE TABLE IF NOT EXISTS abbreviations ("
-                       + "key TEXT PRIMARY KEY, "
-                       + "value TEXT NOT NULL)";
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            System.err.println("Failed to initialize database: " + e.getMessage());
-        }
+    /**
+     * Loads and compiles the shared dictionary unless that has already happened in this JVM.
+     * The launcher calls it on a background thread at startup so the first EMR window does not wait.
+     */
+    public static synchronized void preloadDictionary() {
+        if (dictionaryLoaded) return;
+        DatabaseManager.migrate();
+        initializeAbbreviations(DICTIONARY);
+        dictionaryLoaded = true;
     }
 
-    private void initializeAbbreviations() {
+    private static void initializeAbbreviations(Map<String, AbbreviationTemplate> abbreviations) {
         abbreviations.clear();
         try (Connection conn = DriverManager.getConnection(DB_PATH);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT key, value FROM abbreviations")) {
             while (rs.next()) {
-                abbreviations.put(rs.getString("key"), rs.getString("value"));
+                abbreviations.put(rs.getString("key"), AbbreviationTemplate.compileOrLiteral(rs.getString("value")));
             }
         } catch (SQLException e) {
             System.err.println("Failed to load abbreviations from database: " + e.getMessage());
@@ -124,12 +109,15 @@ public class AbbreviationsMain implements ChangeListener<String> {
             defaultAbbreviations.put(":cad ", "Coronary Artery Disease");
 
             try (Connection conn = DriverManager.getConnection(DB_PATH);
-                 PreparedStatement pstmt = conn.prepareStatement("INSERT OR REPLACE INTO abbreviations (key, value) VALUES (?, ?)")) {
+                 PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.UPSERT_SQL)) {
                 for (Map.Entry<String, String> entry : defaultAbbreviations.entrySet()) {
                     pstmt.setString(1, entry.getKey());
                     pstmt.setString(2, entry.getValue());
+                    pstmt.setString(3, Abbreviation.DEFAULT_CATEGORY);
+                    pstmt.setString(4, "");
+                    pstmt.setLong(5, System.currentTimeMillis());
                     pstmt.executeUpdate();
-                    abbreviations.put(entry.getKey(), entry.getValue());
+                    abbreviations.put(entry.getKey(), AbbreviationTemplate.literal(entry.getValue()));
                 }
             } catch (SQLException e) {
                 System.err.println("Failed to insert default abbreviations: " + e.getMessage());
@@ -138,50 +126,112 @@ public class AbbreviationsMain implements ChangeListener<String> {
     }
 
     private void attachListeners() {
-        if (inputAreas != null) {
-            for (TextArea ta : inputAreas) {
-                if (ta != null) {
-                    ta.textProperty().addListener(this);
-                }
+        for (int i = 0; i < sections.length; i++) {
+            if (sections[i] != null) {
+                final int section = i;
+                sections[i].addListener(delta -> applyAbbreviation(section, delta));
             }
         }
     }
 
-    private void applyAbbreviation(TextArea textArea, String newText) {
-        Matcher matcher = ABBREVIATION_PATTERN.matcher(newText);
+    /**
+     * Expands an abbreviation that the user has just completed by typing or pasting whitespace.
+     * The scan starts at the end of the inserted text and walks backwards over at most
+     * {@link AbbreviationTemplate#MAX_ARGS} argument tokens looking for a ":key" token,
+     * so its cost depends on the trigger length rather than on the size of the section.
+     * Undo, redo and the expansion's own edit are not user edits, so they never expand.
+     */
+    private void applyAbbreviation(int section, TextDelta delta) {
+        if (!delta.userEdit() || delta.insertedLength() == 0) {
+            return;
+        }
+        SectionDocument document = sections[section];
+        PieceTable newText = document.getContent();
+        int end = delta.insertedEnd();
+        if (!Character.isWhitespace(newText.charAt(end - 1))) {
+            return;
+        }
+
+        String[] args = new String[AbbreviationTemplate.MAX_ARGS];
+        int argCount = 0;
+        int pos = end - 1;
+        while (true) {
+            while (pos >= 0 && Character.isWhitespace(newText.charAt(pos))) pos--;
+            int tokenEnd = pos + 1;
+            while (pos >= 0 && !Character.isWhitespace(newText.charAt(pos))) pos--;
+            int tokenStart = pos + 1;
+            if (tokenStart == tokenEnd) {
+                return;
+            }
 
-        if (matcher.find()) {
-            String abbreviationKey = ":" + matcher.group(1).toLowerCase() + " ";
-            String fullText = abbreviations.get(abbreviationKey);
+            if (newText.charAt(tokenStart) == ':') {
+                String abbreviationKey = toKey(newText, tokenStart + 1, tokenEnd);
+                AbbreviationTemplate template = abbreviationKey == null ? null : abbreviations.get(abbreviationKey);
+                if (template != null && template.getArity() == argCount) {
+                    // Arguments were collected last-to-first; put them in typing order.
+                    for (int i = 0, j = argCount - 1; i < j; i++, j--) {
+                        String tmp = args[i];
+                        args[i] = args[j];
+                        args[j] = tmp;
+                    }
+                    // One undoable edit, applied once every listener has seen the keystroke.
+                    document.replace(tokenStart, end, template.expand(args) + " ");
+                    recordUsage(abbreviationKey);
+                    if (auditLog != null) {
+                        auditLog.record(AuditRecord.Type.EXPANSION, section, abbreviationKey.trim());
+                    }
+                }
+                return;
+            }
 
-            if (fullText != null) {
-                String replacedText = newText.substring(0, matcher.start()) + fullText + " ";
-                
-                textArea.textProperty().removeListener(this);
-                textArea.setText(replacedText);
-                textArea.positionCaret(replacedText.length());
-                textArea.textProperty().addListener(this);
+            if (argCount == AbbreviationTemplate.MAX_ARGS) {
+                return;
             }
+            args[argCount++] = newText.subSequence(tokenStart, tokenEnd);
         }
     }
 
-    @Override
-    public void changed(ObservableValue<? extends String> observable, String oldValue, String newValue) {
-        TextArea sourceTextArea = (TextArea) ((javafx.beans.property.StringProperty) observable).getBean();
-        applyAbbreviation(sourceTextArea, newValue);
-        updateOutputArea();
+    /**
+     * Records every expansion in the audit log.
+     * @param auditLog The log to write to, or null to stop recording.
+     */
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Builds the dictionary key (":name ") for the word between {@code start} and {@code end},
+     * or returns null when it is not a plain word.
+     */
+    private static String toKey(CharSequence text, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(end - start + 2).append(':');
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return null;
+            }
+            key.append(Character.toLowerCase(c));
+        }
+        return key.append(' ').toString();
     }
 
     public void addAbbreviation(String key, String value) {
+        AbbreviationTemplate template = AbbreviationTemplate.compile(value);
         String formattedKey = key.startsWith(":") ? key : ":" + key;
         formattedKey = formattedKey.endsWith(" ") ? formattedKey : formattedKey + " ";
         
         try (Connection conn = DriverManager.getConnection(DB_PATH);
-             PreparedStatement pstmt = conn.prepareStatement("INSERT OR REPLACE INTO abbreviations (key, value) VALUES (?, ?)")) {
+             PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.UPSERT_SQL)) {
             pstmt.setString(1, formattedKey);
             pstmt.setString(2, value);
+            pstmt.setString(3, Abbreviation.DEFAULT_CATEGORY);
+            pstmt.setString(4, System.getProperty("user.name", ""));
+            pstmt.setLong(5, System.currentTimeMillis());
             pstmt.executeUpdate();
-            this.abbreviations.put(formattedKey, value);
+            this.abbreviations.put(formattedKey, template);
         } catch (SQLException e) {
             System.err.println("Failed to add abbreviation to database: " + e.getMessage());
         }
@@ -216,43 +266,59 @@ public class AbbreviationsMain implements ChangeListener<String> {
     }
 
     public void refreshAbbreviationsMap() {
-        abbreviations.clear();
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT key, value FROM abbreviations")) {
-            while (rs.next()) {
-                abbreviations.put(rs.getString("key"), rs.getString("value"));
-            }
-        } catch (SQLException e) {
-            System.err.println("Failed to refresh abbreviations from database: " + e.getMessage());
+        reloadDictionary();
+    }
+
+    /**
+     * Puts one entry that was just saved to the database into the shared dictionary, so the
+     * manager does not have to re-read the whole table on the FX thread after every edit.
+     */
+    public void abbreviationSaved(String key, String value) {
+        String formattedKey = key.startsWith(":") ? key : ":" + key;
+        formattedKey = formattedKey.endsWith(" ") ? formattedKey : formattedKey + " ";
+        this.abbreviations.put(formattedKey, AbbreviationTemplate.compileOrLiteral(value));
+    }
+
+    /** Drops one entry that was just deleted from the database from the shared dictionary. */
+    public void abbreviationDeleted(String key) {
+        String formattedKey = key.startsWith(":") ? key : ":" + key;
+        formattedKey = formattedKey.endsWith(" ") ? formattedKey : formattedKey + " ";
+        this.abbreviations.remove(formattedKey);
+    }
+
+    private static synchronized void recordUsage(String key) {
+        if (usageRecorder == null || usageRecorder.isShutdown()) {
+            usageRecorder = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "abbreviation-usage");
+                t.setDaemon(true);
+                return t;
+            });
         }
+        usageRecorder.execute(() -> DatabaseManager.recordUsage(key));
     }
 
-    private void clearAllInputAreas() {
-        if (inputAreas != null && inputAreas.length > 0) {
-            for (TextArea ta : inputAreas) {
-                if (ta != null) {
-                    ta.textProperty().removeListener(this);
-                    ta.clear();
-                    ta.textProperty().addListener(this);
-                }
-            }
+    /** Stops the usage writer once the updates already queued are written; called on instance exit. */
+    public static synchronized void shutdownUsageRecorder() {
+        if (usageRecorder != null) {
+            usageRecorder.shutdown();
         }
-        updateOutputArea();
     }
 
-    private void updateOutputArea() {
-        // Ensure all necessary components are initialized and arrays are of compatible length
-        if (outputArea != null && inputAreas != null && textAreaTitles != null && inputAreas.length == textAreaTitles.length) {
-            StringBuilder combinedText = new StringBuilder();
-            for (int i = 0; i < inputAreas.length; i++) {
-                TextArea ta = inputAreas[i];
-                if (ta != null && ta.getText() != null && !ta.getText().trim().isEmpty()) {
-                    combinedText.append(textAreaTitles[i]).append(" ") // Use the passed titles
-                                .append(ta.getText().trim()).append("\n\n");
-                }
+    /** Re-reads the shared dictionary from the database, for every window at once. */
+    public static void reloadDictionary() {
+        // Built aside and merged, so windows expanding meanwhile never see an empty dictionary.
+        Map<String, AbbreviationTemplate> fresh = new HashMap<>();
+        try (Connection conn = DriverManager.getConnection(DB_PATH);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT key, value FROM abbreviations")) {
+            while (rs.next()) {
+                fresh.put(rs.getString("key"), AbbreviationTemplate.compileOrLiteral(rs.getString("value")));
             }
-            outputArea.setText(combinedText.toString().trim());
+        } catch (SQLException e) {
+            System.err.println("Failed to refresh abbreviations from database: " + e.getMessage());
+            return;
         }
+        DICTIONARY.keySet().retainAll(fresh.keySet());
+        DICTIONARY.putAll(fresh);
     }
-}
\ No newline at end of file
+}
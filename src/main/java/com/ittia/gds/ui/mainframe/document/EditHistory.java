@@ -0,0 +1,196 @@
+package com.ittia.gds.ui.mainframe.document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded undo and redo for one {@link PieceTable}. An entry holds span lists into the
+ * table's buffers rather than copies of the text. A run of typing, or of Backspace or Delete,
+ * within {@link #COALESCE_MILLIS} of the previous key is one entry; a line break, a paste or
+ * a replacement (such as an abbreviation expansion) starts a new one. Entries are charged at
+ * two bytes per character they keep reachable plus a fixed overhead, and the oldest are
+ * dropped to stay under the limit; the newest entry is always kept.
+ */
+final class EditHistory {
+
+    static final long COALESCE_MILLIS = 1000;
+
+    private static final int ENTRY_BYTES = 64; // Object header, fields and array headers
+
+    /** One undoable change: {@code removed} was replaced by {@code inserted} at {@code start}. */
+    static final class Edit {
+        int start;
+        int[] removed;
+        int removedLength;
+        int[] inserted;
+        int insertedLength;
+        long time;
+
+        Edit(int start, int[] removed, int removedLength, int[] inserted, int insertedLength, long time) {
+            this.start = start;
+            this.removed = removed;
+            this.removedLength = removedLength;
+            this.inserted = inserted;
+            this.insertedLength = insertedLength;
+            this.time = time;
+        }
+
+        long bytes() {
+            return ENTRY_BYTES + 4L * (removed.length + inserted.length) + 2L * (removedLength + insertedLength);
+        }
+    }
+
+    private final long maxBytes;
+    private final ArrayDeque<Edit> undo = new ArrayDeque<>();
+    private final ArrayDeque<Edit> redo = new ArrayDeque<>();
+    private Edit open; // The newest entry while it can still absorb typing
+    private long bytes;
+    private long retainedChars;
+
+    EditHistory(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Records an edit made through the text area.
+     * @param removed The spans that were removed, taken before the edit.
+     * @param source Where the inserted text starts in the table's added buffer.
+     * @param lineBreak Whether the inserted text contains a line break.
+     */
+    void record(int start, int[] removed, int removedLength, int source, int insertedLength, boolean lineBreak, long now) {
+        clearRedo();
+        Edit last = open;
+        boolean recent = last != null && now - last.time < COALESCE_MILLIS;
+        if (recent && removedLength == 0 && insertedLength == 1 && !lineBreak
+                && last.removedLength == 0 && start == last.start + last.insertedLength) {
+            charge(last, -1);
+            last.inserted = appendSpan(last.inserted, source, 1);
+            last.insertedLength++;
+            last.time = now;
+            charge(last, 1);
+        } else if (recent && insertedLength == 0 && removedLength == 1 && last.insertedLength == 0
+                && (start + 1 == last.start || start == last.start)) {
+            charge(last, -1);
+            if (start == last.start) {
+                last.removed = concat(last.removed, removed); // Delete
+            } else {
+                last.removed = concat(removed, last.removed); // Backspace
+                last.start = start;
+            }
+            last.removedLength++;
+            last.time = now;
+            charge(last, 1);
+        } else {
+            Edit edit = new Edit(start, removed, removedLength,
+                    insertedLength == 0 ? PieceTable.NO_SPANS : new int[] { source, insertedLength }, insertedLength, now);
+            undo.addLast(edit);
+            charge(edit, 1);
+            open = lineBreak || insertedLength > 1 ? null : edit;
+        }
+        trim();
+    }
+
+    /** @return The entry to revert, now moved to the redo stack, or null when there is none. */
+    Edit undo() {
+        open = null;
+        Edit edit = undo.pollLast();
+        if (edit != null) redo.addLast(edit);
+        return edit;
+    }
+
+    /** @return The entry to re-apply, now back on the undo stack, or null when there is none. */
+    Edit redo() {
+        open = null;
+        Edit edit = redo.pollLast();
+        if (edit != null) undo.addLast(edit);
+        return edit;
+    }
+
+    boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    void clear() {
+        undo.clear();
+        redo.clear();
+        open = null;
+        bytes = 0;
+        retainedChars = 0;
+    }
+
+    /** @return Characters the entries keep reachable in the buffers, counting shared text once per entry. */
+    long retainedChars() {
+        return retainedChars;
+    }
+
+    /** @return Every span list the entries hold, for {@link PieceTable#compact}. */
+    List<int[]> spanLists() {
+        List<int[]> lists = new ArrayList<>(2 * (undo.size() + redo.size()));
+        for (Edit edit : undo) {
+            lists.add(edit.removed);
+            lists.add(edit.inserted);
+        }
+        for (Edit edit : redo) {
+            lists.add(edit.removed);
+            lists.add(edit.inserted);
+        }
+        return lists;
+    }
+
+    private void clearRedo() {
+        for (Edit edit : redo) charge(edit, -1);
+        redo.clear();
+    }
+
+    private void trim() {
+        while (bytes > maxBytes && undo.size() + redo.size() > 1) {
+            // Drop the oldest undo step first; the farthest redo step only once no undo is left to drop.
+            Iterator<Edit> oldest = undo.size() > 1 || redo.isEmpty() ? undo.iterator() : redo.iterator();
+            Edit edit = oldest.next();
+            oldest.remove();
+            if (edit == open) open = null;
+            charge(edit, -1);
+        }
+    }
+
+    private void charge(Edit edit, int sign) {
+        bytes += sign * edit.bytes();
+        retainedChars += sign * (long) (edit.removedLength + edit.insertedLength);
+    }
+
+    private static int[] appendSpan(int[] spans, int source, int length) {
+        int last = spans.length - 2;
+        if (last >= 0 && advance(spans[last], spans[last + 1]) == source) {
+            spans[last + 1] += length;
+            return spans;
+        }
+        int[] grown = Arrays.copyOf(spans, spans.length + 2);
+        grown[spans.length] = source;
+        grown[spans.length + 1] = length;
+        return grown;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int last = first.length - 2;
+        if (last >= 0 && second.length > 0 && advance(first[last], first[last + 1]) == second[0]) {
+            int[] joined = Arrays.copyOf(first, first.length + second.length - 2);
+            joined[last + 1] += second[1];
+            System.arraycopy(second, 2, joined, first.length, second.length - 2);
+            return joined;
+        }
+        int[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+
+    private static int advance(int source, int by) {
+        return source >= 0 ? source + by : source - by;
+    }
+}
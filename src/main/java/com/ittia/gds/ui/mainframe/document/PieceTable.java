@@ -0,0 +1,387 @@
+package com.ittia.gds.ui.mainframe.document;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A section's text as a piece table: the text the section was loaded with, an append-only
+ * buffer holding everything inserted since, and a list of pieces that each select a run of
+ * one of the two. An edit splits at most two pieces and appends only the inserted characters,
+ * so the text is never copied per keystroke, and removed text stays in the buffers where the
+ * edit history can refer to it instead of keeping copies. Consecutive typing extends one
+ * piece. Pieces live in parallel primitive arrays together with their line-break counts, so
+ * line lookups add up counts instead of scanning the text.
+ * <p>
+ * A span list is an {@code int[]} of (source, length) pairs, where a source is an offset
+ * into the loaded text, or {@code ~offset} into the added buffer.
+ * Reads are public; edits go through {@link SectionDocument} on the FX thread.
+ */
+public final class PieceTable implements CharSequence {
+
+    static final int[] NO_SPANS = new int[0];
+
+    private final String original;
+    private StringBuilder added = new StringBuilder();
+    private int[] sources = new int[16];
+    private int[] lengths = new int[16];
+    private int[] breaks = new int[16];
+    private int count;
+    private int length;
+    private int lineBreaks;
+    // Where the last lookup landed; edits and scans are local, so the next one starts close by.
+    private int cursorPiece;
+    private int cursorStart;
+
+    public PieceTable(String text) {
+        this.original = text;
+        if (!text.isEmpty()) {
+            insertSlot(0);
+            sources[0] = 0;
+            lengths[0] = text.length();
+            breaks[0] = countBreaks(0, 0, text.length());
+            length = text.length();
+            lineBreaks = breaks[0];
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + ", length " + length);
+        }
+        int p = find(index);
+        return charIn(sources[p], index - cursorStart);
+    }
+
+    @Override
+    public String subSequence(int start, int end) {
+        checkRange(start, end);
+        StringBuilder sb = new StringBuilder(end - start);
+        int pos = start;
+        int p = find(start);
+        int pieceStart = cursorStart;
+        while (pos < end) {
+            int from = pos - pieceStart;
+            int to = Math.min(lengths[p], end - pieceStart);
+            appendRun(sb, sources[p], from, to);
+            pos += to - from;
+            pieceStart += lengths[p++];
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length);
+    }
+
+    /** @return The number of line breaks in the text. */
+    public int lineBreaks() {
+        return lineBreaks;
+    }
+
+    /** @return The zero-based line that {@code offset} is on. */
+    public int lineOf(int offset) {
+        checkRange(offset, offset);
+        int p = find(offset);
+        int line = 0;
+        for (int i = 0; i < p; i++) line += breaks[i];
+        if (p < count) line += breaksBefore(p, offset - cursorStart);
+        return line;
+    }
+
+    /** @return The offset where the {@code line}th line (zero-based) begins. */
+    public int lineStart(int line) {
+        if (line <= 0) return 0;
+        if (line > lineBreaks) throw new IndexOutOfBoundsException("Line " + line + ", breaks " + lineBreaks);
+        int start = 0;
+        int seen = 0;
+        int p = 0;
+        while (seen + breaks[p] < line) {
+            seen += breaks[p];
+            start += lengths[p++];
+        }
+        // The break ending line - 1 is the k-th in this piece; scan from whichever end is nearer.
+        int k = line - seen;
+        int source = sources[p];
+        if (k <= breaks[p] / 2) {
+            for (int i = 0; ; i++) {
+                if (charIn(source, i) == '\n' && --k == 0) return start + i + 1;
+            }
+        }
+        for (int i = lengths[p] - 1, fromEnd = breaks[p] - k + 1; ; i--) {
+            if (charIn(source, i) == '\n' && --fromEnd == 0) return start + i + 1;
+        }
+    }
+
+    /** @return The offset of the line break ending the line that {@code offset} is on, or the length. */
+    public int lineEnd(int offset) {
+        for (int i = offset; i < length; i++) {
+            if (charAt(i) == '\n') return i;
+        }
+        return length;
+    }
+
+    /** @return The text of the given spans, e.g. of an edit recorded by the history. */
+    String text(int[] spans) {
+        int total = 0;
+        for (int k = 1; k < spans.length; k += 2) total += spans[k];
+        StringBuilder sb = new StringBuilder(total);
+        for (int k = 0; k < spans.length; k += 2) {
+            appendRun(sb, spans[k], 0, spans[k + 1]);
+        }
+        return sb.toString();
+    }
+
+    /** @return The spans currently making up {@code [start, end)}. */
+    int[] spans(int start, int end) {
+        checkRange(start, end);
+        if (start == end) return NO_SPANS;
+        int p = find(start);
+        int pieceStart = cursorStart;
+        int last = p;
+        for (int s = pieceStart + lengths[p]; s < end; s += lengths[++last]) { }
+        int[] result = new int[2 * (last - p + 1)];
+        for (int k = 0, pos = start; pos < end; pieceStart += lengths[p++]) {
+            int from = pos - pieceStart;
+            int run = Math.min(lengths[p] - from, end - pos);
+            result[k++] = advance(sources[p], from);
+            result[k++] = run;
+            pos += run;
+        }
+        return result;
+    }
+
+    /** Appends text to the added buffer. @return Its source, for {@link #replace(int, int, int, int, boolean)}. */
+    int append(String text) {
+        int source = ~added.length();
+        added.append(text);
+        return source;
+    }
+
+    /** Replaces {@code [start, end)} with one run of a buffer. */
+    TextDelta replace(int start, int end, int source, int sourceLength, boolean userEdit) {
+        return replace(start, end, null, source, sourceLength, userEdit);
+    }
+
+    /** Replaces {@code [start, end)} with the given spans, which must come from this table's buffers. */
+    TextDelta replace(int start, int end, int[] spans, boolean userEdit) {
+        return replace(start, end, spans, 0, 0, userEdit);
+    }
+
+    private TextDelta replace(int start, int end, int[] spans, int source, int sourceLength, boolean userEdit) {
+        checkRange(start, end);
+        int first = split(start);
+        int last = split(end);
+        int removedBreaks = 0;
+        for (int i = first; i < last; i++) removedBreaks += breaks[i];
+        removeSlots(first, last);
+        int previousStart = first > 0 ? start - lengths[first - 1] : 0;
+
+        int at = first;
+        int inserted = 0;
+        int insertedBreaks = 0;
+        int runs = spans == null ? 1 : spans.length / 2;
+        for (int r = 0; r < runs; r++) {
+            int runSource = spans == null ? source : spans[2 * r];
+            int runLength = spans == null ? sourceLength : spans[2 * r + 1];
+            if (runLength == 0) continue;
+            int runBreaks = countBreaks(runSource, 0, runLength);
+            if (at > 0 && advance(sources[at - 1], lengths[at - 1]) == runSource) {
+                lengths[at - 1] += runLength; // Continues the previous piece, as typing does
+                breaks[at - 1] += runBreaks;
+            } else {
+                insertSlot(at);
+                sources[at] = runSource;
+                lengths[at] = runLength;
+                breaks[at] = runBreaks;
+                at++;
+            }
+            inserted += runLength;
+            insertedBreaks += runBreaks;
+        }
+        if (at > 0 && at < count && advance(sources[at - 1], lengths[at - 1]) == sources[at]) {
+            lengths[at - 1] += lengths[at]; // Rejoins a piece that an earlier edit split
+            breaks[at - 1] += breaks[at];
+            removeSlots(at, at + 1);
+        }
+
+        length += inserted - (end - start);
+        lineBreaks += insertedBreaks - removedBreaks;
+        cursorPiece = first > 0 ? first - 1 : 0;
+        cursorStart = previousStart;
+        return new TextDelta(start, end - start, removedBreaks, inserted, insertedBreaks, userEdit);
+    }
+
+    /** @return Characters in the added buffer, whether still referenced or not. */
+    int addedLength() {
+        return added.length();
+    }
+
+    /**
+     * Rewrites the added buffer to hold only the runs still referenced by the text or by the
+     * given span lists (the edit history), remapping those lists in place.
+     */
+    void compact(List<int[]> spanLists) {
+        long[] runs = new long[count + 16];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (sources[i] < 0) {
+                if (n == runs.length) runs = Arrays.copyOf(runs, n * 2);
+                runs[n++] = packRun(~sources[i], lengths[i]);
+            }
+        }
+        for (int[] spans : spanLists) {
+            for (int k = 0; k < spans.length; k += 2) {
+                if (spans[k] < 0 && spans[k + 1] > 0) {
+                    if (n == runs.length) runs = Arrays.copyOf(runs, n * 2);
+                    runs[n++] = packRun(~spans[k], spans[k + 1]);
+                }
+            }
+        }
+        Arrays.sort(runs, 0, n);
+
+        // Merge overlapping and touching runs, so contiguous pieces stay contiguous.
+        int[] oldStarts = new int[n];
+        int[] newStarts = new int[n];
+        int merged = 0;
+        StringBuilder compacted = new StringBuilder();
+        for (int i = 0; i < n; ) {
+            int runStart = (int) (runs[i] >>> 32);
+            int runEnd = (int) runs[i];
+            for (i++; i < n && (int) (runs[i] >>> 32) <= runEnd; i++) {
+                runEnd = Math.max(runEnd, (int) runs[i]);
+            }
+            oldStarts[merged] = runStart;
+            newStarts[merged++] = compacted.length();
+            compacted.append(added, runStart, runEnd);
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (sources[i] < 0) sources[i] = ~remap(~sources[i], oldStarts, newStarts, merged);
+        }
+        for (int[] spans : spanLists) {
+            for (int k = 0; k < spans.length; k += 2) {
+                if (spans[k] < 0 && spans[k + 1] > 0) spans[k] = ~remap(~spans[k], oldStarts, newStarts, merged);
+            }
+        }
+        added = compacted;
+    }
+
+    private static long packRun(int start, int length) {
+        return (long) start << 32 | (start + length);
+    }
+
+    private static int remap(int offset, int[] oldStarts, int[] newStarts, int runs) {
+        int i = Arrays.binarySearch(oldStarts, 0, runs, offset);
+        if (i < 0) i = -i - 2;
+        return newStarts[i] + offset - oldStarts[i];
+    }
+
+    // Returns the piece containing offset (count at the end) and leaves its start in cursorStart.
+    private int find(int offset) {
+        int p = cursorPiece;
+        int start = cursorStart;
+        if (p > count) {
+            p = 0;
+            start = 0;
+        }
+        while (p > 0 && start > offset) {
+            start -= lengths[--p];
+        }
+        while (p < count && start + lengths[p] <= offset) {
+            start += lengths[p++];
+        }
+        cursorPiece = p;
+        cursorStart = start;
+        return p;
+    }
+
+    // Makes offset a piece boundary and returns the index of the piece starting there.
+    private int split(int offset) {
+        int p = find(offset);
+        int within = offset - cursorStart;
+        if (p == count || within == 0) return p;
+        int firstBreaks = breaksBefore(p, within);
+        insertSlot(p + 1);
+        sources[p + 1] = advance(sources[p], within);
+        lengths[p + 1] = lengths[p] - within;
+        breaks[p + 1] = breaks[p] - firstBreaks;
+        lengths[p] = within;
+        breaks[p] = firstBreaks;
+        cursorPiece = p + 1;
+        cursorStart = offset;
+        return p + 1;
+    }
+
+    // Line breaks in the first `within` characters of piece p, counted from the nearer end.
+    private int breaksBefore(int p, int within) {
+        if (within <= lengths[p] / 2) return countBreaks(sources[p], 0, within);
+        return breaks[p] - countBreaks(sources[p], within, lengths[p]);
+    }
+
+    private int countBreaks(int source, int from, int to) {
+        int n = 0;
+        if (source >= 0) {
+            for (int i = source + from; i < source + to; i++) {
+                if (original.charAt(i) == '\n') n++;
+            }
+        } else {
+            int base = ~source;
+            for (int i = base + from; i < base + to; i++) {
+                if (added.charAt(i) == '\n') n++;
+            }
+        }
+        return n;
+    }
+
+    private char charIn(int source, int offset) {
+        return source >= 0 ? original.charAt(source + offset) : added.charAt(~source + offset);
+    }
+
+    private void appendRun(StringBuilder sb, int source, int from, int to) {
+        if (source >= 0) {
+            sb.append(original, source + from, source + to);
+        } else {
+            sb.append(added, ~source + from, ~source + to);
+        }
+    }
+
+    // The source `by` characters further into the same buffer.
+    private static int advance(int source, int by) {
+        return source >= 0 ? source + by : source - by;
+    }
+
+    private void insertSlot(int index) {
+        if (count == sources.length) {
+            int capacity = count * 2;
+            sources = Arrays.copyOf(sources, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            breaks = Arrays.copyOf(breaks, capacity);
+        }
+        int moved = count - index;
+        System.arraycopy(sources, index, sources, index + 1, moved);
+        System.arraycopy(lengths, index, lengths, index + 1, moved);
+        System.arraycopy(breaks, index, breaks, index + 1, moved);
+        count++;
+    }
+
+    private void removeSlots(int from, int to) {
+        int moved = count - to;
+        System.arraycopy(sources, to, sources, from, moved);
+        System.arraycopy(lengths, to, lengths, from, moved);
+        System.arraycopy(breaks, to, breaks, from, moved);
+        count -= to - from;
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end < start || end > length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + "), length " + length);
+        }
+    }
+}
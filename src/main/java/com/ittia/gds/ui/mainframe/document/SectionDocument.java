@@ -0,0 +1,274 @@
+package com.ittia.gds.ui.mainframe.document;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TextFormatter;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
+
+/**
+ * The edit model behind one section's text area.
+ * A {@link TextFormatter} filter sees every change before the text area applies it and mirrors
+ * it into a {@link PieceTable}. Listeners then get a {@link TextDelta} with just the changed
+ * range and read whatever text they need from {@link #getContent()}, so nothing asks the text
+ * area for a string of the whole section on every keystroke, as {@code textProperty} change
+ * listeners do. Undo and redo (Shortcut+Z, Shortcut+Y or Shortcut+Shift+Z, and the context
+ * menu) use this document's bounded {@link EditHistory}; unlike the text area's own history,
+ * it keeps working across abbreviation expansions and notes being loaded in other sections.
+ * Listeners may edit the document; such edits are applied once every listener has seen the
+ * current change, so all of them observe the same sequence of deltas.
+ */
+public class SectionDocument {
+
+    /** History budget per section. */
+    public static final long DEFAULT_HISTORY_BYTES = 2L << 20;
+
+    // The added buffer is compacted once it is this large and mostly unreferenced.
+    private static final int COMPACT_MIN_CHARS = 64 * 1024;
+
+    private static final KeyCombination UNDO = new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN);
+    private static final KeyCombination REDO = new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN);
+    private static final KeyCombination REDO_SHIFTED =
+            new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
+
+    private final TextArea textArea;
+    private final EditHistory history;
+    private final List<Consumer<TextDelta>> listeners = new ArrayList<>();
+    private final ArrayDeque<TextDelta> pending = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> deferred = new ArrayDeque<>();
+    private PieceTable content;
+    private boolean dispatching;
+    private boolean programmatic; // Set while this document itself edits the text area
+    private boolean loading;
+    private EditHistory.Edit replaying;
+    private boolean replayingUndo;
+
+    public SectionDocument(TextArea textArea) {
+        this(textArea, DEFAULT_HISTORY_BYTES);
+    }
+
+    /**
+     * Takes over the text area's edit handling. Must be called on the FX thread.
+     * @param historyBytes The memory budget for undo and redo.
+     */
+    public SectionDocument(TextArea textArea, long historyBytes) {
+        this.textArea = textArea;
+        this.history = new EditHistory(historyBytes);
+        this.content = new PieceTable(textArea.getText() == null ? "" : textArea.getText());
+        textArea.setTextFormatter(new TextFormatter<String>(this::filter));
+        // An invalidation listener: unlike a change listener, it does not make the text area build the text.
+        textArea.textProperty().addListener(observable -> dispatch());
+        textArea.addEventFilter(KeyEvent.KEY_PRESSED, this::handleKey);
+        textArea.setContextMenu(createContextMenu());
+    }
+
+    /** Registers a listener for every change, including undo, redo and {@link #load}. */
+    public void addListener(Consumer<TextDelta> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<TextDelta> listener) {
+        listeners.remove(listener);
+    }
+
+    /** @return The current text; read it on the FX thread, and do not keep it across a {@link #load}. */
+    public PieceTable getContent() {
+        return content;
+    }
+
+    public TextArea getTextArea() {
+        return textArea;
+    }
+
+    /**
+     * Replaces {@code [start, end)} and puts the caret after the new text, as one undo step.
+     * Called from a listener, it takes effect once the current change has been delivered.
+     */
+    public void replace(int start, int end, String text) {
+        run(() -> {
+            programmatic = true;
+            try {
+                textArea.replaceText(start, end, text);
+            } finally {
+                programmatic = false;
+            }
+            textArea.positionCaret(start + text.length());
+        });
+    }
+
+    /** Replaces the whole section, e.g. with a saved note, and starts a fresh history. */
+    public void load(String text) {
+        run(() -> {
+            history.clear();
+            if (text.isEmpty() && content.length() == 0) {
+                content = new PieceTable(""); // Nothing changes, but the old buffers can go
+                return;
+            }
+            loading = true;
+            try {
+                textArea.setText(text);
+            } finally {
+                loading = false;
+            }
+        });
+    }
+
+    /** @return False when there was nothing to undo. */
+    public boolean undo() {
+        EditHistory.Edit edit = history.undo();
+        if (edit == null) return false;
+        run(() -> replay(edit, true));
+        return true;
+    }
+
+    /** @return False when there was nothing to redo. */
+    public boolean redo() {
+        EditHistory.Edit edit = history.redo();
+        if (edit == null) return false;
+        run(() -> replay(edit, false));
+        return true;
+    }
+
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    private void replay(EditHistory.Edit edit, boolean undo) {
+        int end = edit.start + (undo ? edit.insertedLength : edit.removedLength);
+        String text = content.text(undo ? edit.removed : edit.inserted);
+        replaying = edit;
+        replayingUndo = undo;
+        try {
+            textArea.replaceText(edit.start, end, text);
+        } finally {
+            replaying = null;
+        }
+        textArea.positionCaret(edit.start + text.length());
+    }
+
+    private TextFormatter.Change filter(TextFormatter.Change change) {
+        if (!change.isContentChange()) return change;
+        String text = change.getText();
+        String accepted = acceptedText(text);
+        if (accepted != text) change.setText(accepted);
+        int start = change.getRangeStart();
+        int end = change.getRangeEnd();
+        if (start == end && accepted.isEmpty()) return change;
+
+        TextDelta delta;
+        if (loading) {
+            int removedBreaks = content.lineBreaks();
+            content = new PieceTable(accepted);
+            delta = new TextDelta(0, end - start, removedBreaks, accepted.length(), content.lineBreaks(), false);
+        } else if (replaying != null) {
+            delta = content.replace(start, end, replayingUndo ? replaying.removed : replaying.inserted, false);
+        } else {
+            int[] removed = content.spans(start, end);
+            int source = content.append(accepted);
+            delta = content.replace(start, end, source, accepted.length(), !programmatic);
+            history.record(start, removed, end - start, source, accepted.length(),
+                    delta.insertedLineBreaks() > 0, System.currentTimeMillis());
+            compactIfWasteful();
+        }
+        pending.add(delta);
+        return change;
+    }
+
+    private void compactIfWasteful() {
+        int added = content.addedLength();
+        if (added > COMPACT_MIN_CHARS && added > 2 * (content.length() + history.retainedChars())) {
+            content.compact(history.spanLists());
+        }
+    }
+
+    // The text area drops control characters other than tab and line feed; so must the mirror.
+    private static String acceptedText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == 0x7F || c < 0x20 && c != '\n' && c != '\t') {
+                StringBuilder sb = new StringBuilder(text.length());
+                for (int j = 0; j < text.length(); j++) {
+                    char d = text.charAt(j);
+                    if (!(d == 0x7F || d < 0x20 && d != '\n' && d != '\t')) sb.append(d);
+                }
+                return sb.toString();
+            }
+        }
+        return text;
+    }
+
+    private void dispatch() {
+        if (dispatching) return;
+        dispatching = true;
+        try {
+            TextDelta delta;
+            while ((delta = pending.poll()) != null) {
+                for (Consumer<TextDelta> listener : listeners) {
+                    listener.accept(delta);
+                }
+            }
+        } finally {
+            dispatching = false;
+        }
+        Runnable edit;
+        while ((edit = deferred.poll()) != null) {
+            edit.run();
+        }
+    }
+
+    private void run(Runnable edit) {
+        if (dispatching) {
+            deferred.add(edit);
+        } else {
+            edit.run();
+        }
+    }
+
+    private void handleKey(KeyEvent event) {
+        if (REDO.match(event) || REDO_SHIFTED.match(event)) {
+            redo();
+            event.consume();
+        } else if (UNDO.match(event)) {
+            undo();
+            event.consume();
+        }
+    }
+
+    private ContextMenu createContextMenu() {
+        MenuItem undo = new MenuItem("Undo");
+        undo.setOnAction(e -> undo());
+        MenuItem redo = new MenuItem("Redo");
+        redo.setOnAction(e -> redo());
+        MenuItem cut = new MenuItem("Cut");
+        cut.setOnAction(e -> textArea.cut());
+        MenuItem copy = new MenuItem("Copy");
+        copy.setOnAction(e -> textArea.copy());
+        MenuItem paste = new MenuItem("Paste");
+        paste.setOnAction(e -> textArea.paste());
+        MenuItem selectAll = new MenuItem("Select All");
+        selectAll.setOnAction(e -> textArea.selectAll());
+        ContextMenu menu = new ContextMenu(undo, redo, new SeparatorMenuItem(), cut, copy, paste,
+                new SeparatorMenuItem(), selectAll);
+        menu.setOnShowing(e -> {
+            boolean selected = textArea.getSelection().getLength() > 0;
+            undo.setDisable(!history.canUndo());
+            redo.setDisable(!history.canRedo());
+            cut.setDisable(!selected);
+            copy.setDisable(!selected);
+        });
+        return menu;
+    }
+}
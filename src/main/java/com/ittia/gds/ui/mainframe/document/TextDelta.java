@@ -0,0 +1,21 @@
+package com.ittia.gds.ui.mainframe.document;
+
+/**
+ * One change to a section, as offsets and line-break counts only; the text itself is read
+ * from the document when a listener needs it.
+ * @param start Where the change begins.
+ * @param removedLength How many characters were removed at {@code start}.
+ * @param removedLineBreaks How many of those were line breaks.
+ * @param insertedLength How many characters were inserted at {@code start}.
+ * @param insertedLineBreaks How many of those are line breaks.
+ * @param userEdit True for typing, pasting and other input through the text area; false for
+ *        undo, redo, loading and edits made by listeners through the document.
+ */
+public record TextDelta(int start, int removedLength, int removedLineBreaks,
+                        int insertedLength, int insertedLineBreaks, boolean userEdit) {
+
+    /** @return The offset just after the inserted text. */
+    public int insertedEnd() {
+        return start + insertedLength;
+    }
+}
@@ -0,0 +1,195 @@
+package com.ittia.gds.ui.mainframe.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.collections.ObservableList;
+import javafx.css.PseudoClass;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+
+import com.ittia.gds.ui.mainframe.document.PieceTable;
+import com.ittia.gds.ui.mainframe.document.TextDelta;
+
+/**
+ * Read-only view of the combined note, one list item per paragraph.
+ * ListView only creates cells for the paragraphs in the viewport, so layout and rendering
+ * cost follows the window size rather than the note size. A section change rebuilds just the
+ * paragraphs on the lines it touched; the rest of the note is not read or copied. Paragraphs can be selected
+ * and copied, and "Copy All" copies the note exactly as the old output text area showed it.
+ */
+public class CombinedOutputView extends ListView<CombinedOutputView.Paragraph> {
+
+    /** One line of a section; the first line of each section carries the section title. */
+    public record Paragraph(int section, String text, boolean first) {}
+
+    private static final PseudoClass SECTION_START = PseudoClass.getPseudoClass("section-start");
+    private static final KeyCombination COPY = new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN);
+
+    private final String[] titles;
+    private final PieceTable[] contents;
+    private final int[] firstLines; // The line each section's first paragraph comes from
+    private final int[] paragraphCounts;
+    private int lastRebuilt;
+
+    public CombinedOutputView(String[] titles) {
+        this.titles = titles;
+        this.contents = new PieceTable[titles.length];
+        this.firstLines = new int[titles.length];
+        this.paragraphCounts = new int[titles.length];
+
+        getStyleClass().add("output-view");
+        getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        setCellFactory(list -> new ParagraphCell());
+        setPlaceholder(new Label("Output"));
+
+        MenuItem copy = new MenuItem("Copy");
+        copy.setOnAction(e -> copySelection());
+        MenuItem copyAll = new MenuItem("Copy All");
+        copyAll.setOnAction(e -> copyAll());
+        setContextMenu(new ContextMenu(copy, copyAll));
+        setOnKeyPressed(e -> {
+            if (COPY.match(e)) {
+                copySelection();
+                e.consume();
+            }
+        });
+    }
+
+    /**
+     * Shows a change to a section, rebuilding only the paragraphs on the lines it touched.
+     * Paragraphs are the section's lines after trimming, as the old output showed them.
+     * @param section The section index in title order.
+     * @param content The section's text after the change.
+     * @param delta The change.
+     */
+    public void updateSection(int section, PieceTable content, TextDelta delta) {
+        contents[section] = content;
+        int trimStart = 0;
+        while (trimStart < content.length() && content.charAt(trimStart) <= ' ') trimStart++;
+        int trimEnd = content.length();
+        while (trimEnd > trimStart && content.charAt(trimEnd - 1) <= ' ') trimEnd--;
+        int newFirst = trimStart < trimEnd ? content.lineOf(trimStart) : 0;
+        int newCount = trimStart < trimEnd ? content.lineOf(trimEnd - 1) - newFirst + 1 : 0;
+        int oldFirst = firstLines[section];
+        int oldCount = paragraphCounts[section];
+
+        // Lines before the change are untouched, and so are lines after it, shifted by the change in
+        // line breaks. Only the first and last paragraph are clipped by the trim, so those are rebuilt
+        // whenever they move.
+        int changedLine = content.lineOf(delta.start());
+        int shift = delta.insertedLineBreaks() - delta.removedLineBreaks();
+        int head = oldFirst == newFirst ? Math.min(changedLine - oldFirst, Math.min(oldCount, newCount) - 1) : 0;
+        head = Math.max(0, head);
+        int tail = 0;
+        if (oldFirst + oldCount + shift == newFirst + newCount) {
+            int afterChange = oldFirst + oldCount - 1 - (changedLine + delta.removedLineBreaks());
+            tail = Math.max(0, Math.min(afterChange, Math.min(oldCount, newCount) - 1 - head));
+        }
+
+        List<Paragraph> fresh = new ArrayList<>(newCount - head - tail);
+        if (newCount - tail > head) {
+            int lineStart = Math.max(trimStart, content.lineStart(newFirst + head));
+            for (int i = head; i < newCount - tail; i++) {
+                int lineEnd = Math.min(trimEnd, content.lineEnd(lineStart));
+                String line = content.subSequence(lineStart, lineEnd);
+                fresh.add(new Paragraph(section, i == 0 ? titles[section] + " " + line : line, i == 0));
+                lineStart = lineEnd + 1;
+            }
+        }
+        int from = head;
+        for (int i = 0; i < section; i++) from += paragraphCounts[i];
+        replaceParagraphs(from, oldCount - head - tail, fresh);
+        firstLines[section] = newFirst;
+        paragraphCounts[section] = newCount;
+        lastRebuilt = fresh.size();
+    }
+
+    /** @return How many paragraphs the last update read from its section; the rest were kept. */
+    int lastRebuilt() {
+        return lastRebuilt;
+    }
+
+    // Replaces `old` items at `from` with `fresh`, touching only the items that differ.
+    private void replaceParagraphs(int from, int old, List<Paragraph> fresh) {
+        ObservableList<Paragraph> items = getItems();
+        int prefix = 0;
+        while (prefix < old && prefix < fresh.size() && items.get(from + prefix).equals(fresh.get(prefix))) prefix++;
+        int suffix = 0;
+        while (suffix < old - prefix && suffix < fresh.size() - prefix
+                && items.get(from + old - 1 - suffix).equals(fresh.get(fresh.size() - 1 - suffix))) suffix++;
+
+        int removeEnd = from + old - suffix;
+        List<Paragraph> inserted = fresh.subList(prefix, fresh.size() - suffix);
+        int replaced = Math.min(removeEnd - (from + prefix), inserted.size());
+        for (int i = 0; i < replaced; i++) {
+            items.set(from + prefix + i, inserted.get(i));
+        }
+        if (from + prefix + replaced < removeEnd) {
+            items.remove(from + prefix + replaced, removeEnd);
+        } else if (replaced < inserted.size()) {
+            items.addAll(from + prefix + replaced, inserted.subList(replaced, inserted.size()));
+        }
+    }
+
+    /** @return The whole combined note, in the same form the output text area used to hold. */
+    public String getText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < titles.length; i++) {
+            String text = contents[i] == null ? "" : contents[i].toString().trim();
+            if (text.isEmpty()) continue;
+            if (sb.length() > 0) sb.append("\n\n");
+            sb.append(titles[i]).append(' ').append(text);
+        }
+        return sb.toString();
+    }
+
+    public void copyAll() {
+        putOnClipboard(getText());
+    }
+
+    // In list order: the selection itself is in the order paragraphs were clicked.
+    private void copySelection() {
+        List<Integer> indices = new ArrayList<>(getSelectionModel().getSelectedIndices());
+        indices.sort(null);
+        StringBuilder sb = new StringBuilder();
+        Paragraph previous = null;
+        for (int index : indices) {
+            Paragraph p = getItems().get(index);
+            if (previous != null) sb.append(p.first() ? "\n\n" : "\n");
+            sb.append(p.text());
+            previous = p;
+        }
+        if (sb.length() > 0) putOnClipboard(sb.toString());
+    }
+
+    private static void putOnClipboard(String text) {
+        ClipboardContent content = new ClipboardContent();
+        content.putString(text);
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    private static final class ParagraphCell extends ListCell<Paragraph> {
+        ParagraphCell() {
+            getStyleClass().add("output-paragraph");
+            setWrapText(true);
+            setPrefWidth(0); // Wrap to the list's width instead of widening it
+        }
+
+        @Override
+        protected void updateItem(Paragraph item, boolean empty) {
+            super.updateItem(item, empty);
+            setText(empty || item == null ? null : item.text());
+            pseudoClassStateChanged(SECTION_START, !empty && item != null && item.first());
+        }
+    }
+}
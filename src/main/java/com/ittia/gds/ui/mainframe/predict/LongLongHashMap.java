@@ -0,0 +1,120 @@
+package com.ittia.gds.ui.mainframe.predict;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from {@code long} to {@code long} with linear probing.
+ * Keys and values live in two parallel primitive arrays, so neither lookups nor
+ * increments allocate. {@link #EMPTY_KEY} is reserved and cannot be stored.
+ */
+final class LongLongHashMap {
+
+    static final long EMPTY_KEY = 0L;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /** @return The value for the key, or {@code defaultValue} when absent. */
+    long get(long key, long defaultValue) {
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    void put(long key, long value) {
+        checkKey(key);
+        int slot = slotFor(key);
+        if (keys[slot] == EMPTY_KEY) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size >= resizeAt) grow();
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    /** Adds {@code delta} to the value for the key (absent counts as 0) and returns the new value. */
+    long addTo(long key, long delta) {
+        checkKey(key);
+        int slot = slotFor(key);
+        if (keys[slot] == EMPTY_KEY) {
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size >= resizeAt) grow();
+            return delta;
+        }
+        return values[slot] += delta;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Visits every entry; the map must not be modified during the visit. */
+    void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY) visitor.visit(keys[i], values[i]);
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryVisitor {
+        void visit(long key, long value);
+    }
+
+    private int find(long key) {
+        if (key == EMPTY_KEY) return -1;
+        int slot = slotFor(key);
+        return keys[slot] == key ? slot : -1;
+    }
+
+    // Returns the slot holding the key or the empty slot where it belongs.
+    private int slotFor(long key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = slotFor(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+        Arrays.fill(keys, EMPTY_KEY);
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY_KEY) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
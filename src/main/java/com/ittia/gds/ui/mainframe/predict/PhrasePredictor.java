@@ -0,0 +1,276 @@
+package com.ittia.gds.ui.mainframe.predict;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/**
+ * A per-section trigram/bigram phrase model.
+ * Word ids are packed 21 bits at a time into {@code long} keys:
+ * n-gram counts are keyed by (w1, w2, next) and the best continuation of each context
+ * (w1, w2) is kept alongside as (count &lt;&lt; 32 | next), so a prediction is a couple of
+ * primitive hash probes per word. Bigram backoff uses w1 = 0.
+ * Training is incremental, one saved note at a time; reads and training are guarded by
+ * a read/write lock so predictions on the FX thread never see a half-updated table.
+ */
+public class PhrasePredictor {
+
+    private static final int MAGIC = 0x47445031; // "GDP1"
+    private static final int BITS = 21;
+    private static final long ID_MASK = (1L << BITS) - 1;
+    private static final int NONE = 0;
+    private static final int START = 1;
+    private static final int MAX_PREDICTED_WORDS = 4;
+    private static final int MIN_COUNT = 2;
+
+    private final Map<String, Integer> vocabulary = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    private final LongLongHashMap[] counts;
+    private final LongLongHashMap[] best;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PhrasePredictor(int sectionCount) {
+        words.add(null);    // NONE
+        words.add("<s>");   // START
+        counts = new LongLongHashMap[sectionCount];
+        best = new LongLongHashMap[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            counts[i] = new LongLongHashMap(1024);
+            best[i] = new LongLongHashMap(256);
+        }
+    }
+
+    /**
+     * Adds one saved note to the model.
+     * @param sections The section texts, indexed like the model's sections.
+     */
+    public void train(String[] sections) {
+        lock.writeLock().lock();
+        try {
+            for (int s = 0; s < Math.min(sections.length, counts.length); s++) {
+                if (sections[s] == null) continue;
+                for (String line : sections[s].split("\n")) {
+                    int w1 = START;
+                    int w2 = START;
+                    for (String token : line.trim().split("\\s+")) {
+                        if (token.isEmpty()) continue;
+                        int next = idFor(token);
+                        if (next == NONE) break; // Vocabulary is full
+                        record(s, w1, w2, next);
+                        record(s, NONE, w2, next);
+                        w1 = w2;
+                        w2 = next;
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void record(int section, int w1, int w2, int next) {
+        long count = counts[section].addTo(ngramKey(w1, w2, next), 1);
+        long context = contextKey(w1, w2);
+        long current = best[section].get(context, 0);
+        if ((int) current == next || beats(count, next, current)) {
+            best[section].put(context, (count << 32) | next);
+        }
+    }
+
+    // The higher count wins; a tie goes to the word learned first, so a reloaded model predicts the same.
+    private static boolean beats(long count, int next, long current) {
+        long currentCount = current >>> 32;
+        return count > currentCount || (count == currentCount && next < (int) (current & ID_MASK));
+    }
+
+    /**
+     * Predicts how the text at the caret is likely to continue.
+     * @param section The section being edited.
+     * @param textBeforeCaret The end of the text before the caret; a few dozen characters suffice.
+     * @return The text to insert at the caret, or an empty string when there is no confident guess.
+     */
+    public String predict(int section, CharSequence textBeforeCaret) {
+        if (section < 0 || section >= counts.length) return "";
+        int length = textBeforeCaret.length();
+        boolean atBoundary = length == 0 || Character.isWhitespace(textBeforeCaret.charAt(length - 1));
+
+        // Collect up to three trailing tokens on the current line, last one possibly partial.
+        String[] tail = new String[3];
+        int found = 0;
+        int pos = length - 1;
+        while (found < tail.length && pos >= 0) {
+            while (pos >= 0 && textBeforeCaret.charAt(pos) != '\n' && Character.isWhitespace(textBeforeCaret.charAt(pos))) pos--;
+            if (pos < 0 || textBeforeCaret.charAt(pos) == '\n') break;
+            int end = pos + 1;
+            while (pos >= 0 && !Character.isWhitespace(textBeforeCaret.charAt(pos))) pos--;
+            tail[found++] = textBeforeCaret.subSequence(pos + 1, end).toString();
+        }
+        // Fewer tokens than requested means the scan reached the start of the line (or of the window).
+        boolean lineStart = found < tail.length;
+
+        String partial = atBoundary || found == 0 ? "" : tail[0];
+        int offset = atBoundary ? 0 : 1;
+
+        lock.readLock().lock();
+        try {
+            int w2 = contextId(tail, offset, found, lineStart);
+            int w1 = contextId(tail, offset + 1, found, lineStart);
+            if (w2 == NONE) return "";
+
+            StringBuilder prediction = new StringBuilder();
+            for (int n = 0; n < MAX_PREDICTED_WORDS; n++) {
+                long entry = best[section].get(contextKey(w1, w2), 0);
+                if (w1 != NONE && (entry >>> 32) < MIN_COUNT) {
+                    entry = best[section].get(contextKey(NONE, w2), 0);
+                }
+                if ((entry >>> 32) < MIN_COUNT) break;
+                int next = (int) (entry & ID_MASK);
+                String word = words.get(next);
+                if (n == 0 && !partial.isEmpty()) {
+                    if (word.length() <= partial.length() || !word.regionMatches(true, 0, partial, 0, partial.length())) {
+                        return "";
+                    }
+                    prediction.append(word, partial.length(), word.length());
+                } else {
+                    if (prediction.length() > 0 || !atBoundary) prediction.append(' ');
+                    prediction.append(word);
+                }
+                w1 = w2;
+                w2 = next;
+            }
+            return prediction.toString();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Id of the i-th complete token counted back from the caret, START at the line start, NONE if unknown.
+    private int contextId(String[] tail, int index, int found, boolean lineStart) {
+        if (index < found) {
+            Integer id = vocabulary.get(tail[index].toLowerCase(Locale.ROOT));
+            return id == null ? NONE : id;
+        }
+        return index == found && lineStart ? START : NONE;
+    }
+
+    private int idFor(String token) {
+        String key = token.toLowerCase(Locale.ROOT);
+        Integer id = vocabulary.get(key);
+        if (id != null) return id;
+        if (words.size() > ID_MASK) return NONE;
+        int newId = words.size();
+        words.add(token);
+        vocabulary.put(key, newId);
+        return newId;
+    }
+
+    private static long ngramKey(int w1, int w2, int next) {
+        return ((long) w1 << (2 * BITS)) | ((long) w2 << BITS) | next;
+    }
+
+    private static long contextKey(int w1, int w2) {
+        return ((long) w1 << BITS) | w2;
+    }
+
+    public void save(Path file) throws IOException {
+        save(file, null);
+    }
+
+    /**
+     * Writes the model as a gzip-compressed stream of the vocabulary and the raw n-gram counts;
+     * the best-continuation tables are rebuilt on load.
+     * @param cipher Encrypts the compressed model when not null, since the vocabulary is patient text.
+     */
+    public void save(Path file, StreamingAead cipher) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                cipher != null ? cipher.newOutputStream(temp) : Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(words.size());
+            for (int i = START + 1; i < words.size(); i++) {
+                out.writeUTF(words.get(i));
+            }
+            out.writeInt(counts.length);
+            for (LongLongHashMap sectionCounts : counts) {
+                out.writeInt(sectionCounts.size());
+                IOException[] failure = new IOException[1];
+                sectionCounts.forEach((key, count) -> {
+                    if (failure[0] != null) return;
+                    try {
+                        out.writeLong(key);
+                        out.writeInt((int) count);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) throw failure[0];
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static PhrasePredictor loadOrCreate(Path file, int sectionCount) throws IOException {
+        return loadOrCreate(file, sectionCount, null);
+    }
+
+    /**
+     * Loads a model written by {@link #save(Path, StreamingAead)}, or returns an empty one when the
+     * file does not exist.
+     * @throws IOException If the file exists but cannot be read, or a cipher is given and the file
+     *         is not encrypted.
+     */
+    public static PhrasePredictor loadOrCreate(Path file, int sectionCount, StreamingAead cipher) throws IOException {
+        PhrasePredictor predictor = new PhrasePredictor(sectionCount);
+        if (!Files.exists(file)) {
+            return predictor;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+                cipher != null ? cipher.newInputStream(file) : Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a phrase model: " + file);
+            }
+            int wordCount = in.readInt();
+            for (int i = START + 1; i < wordCount; i++) {
+                String word = in.readUTF();
+                predictor.words.add(word);
+                predictor.vocabulary.put(word.toLowerCase(Locale.ROOT), i);
+            }
+            int sections = in.readInt();
+            for (int s = 0; s < sections; s++) {
+                int entries = in.readInt();
+                for (int e = 0; e < entries; e++) {
+                    long key = in.readLong();
+                    int count = in.readInt();
+                    if (s >= sectionCount) continue;
+                    predictor.counts[s].put(key, count);
+                    long context = key >>> BITS;
+                    int next = (int) (key & ID_MASK);
+                    if (beats(count, next, predictor.best[s].get(context, 0))) {
+                        predictor.best[s].put(context, ((long) count << 32) | next);
+                    }
+                }
+            }
+        }
+        return predictor;
+    }
+}
@@ -0,0 +1,104 @@
+package com.ittia.gds.ui.mainframe.predict;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+
+/**
+ * Offers the {@link PhrasePredictor}'s guess for the active section as ghost text.
+ * The prediction is refreshed whenever the caret moves and shown in the section's
+ * ghost label; pressing Tab inserts it at the caret. Training happens elsewhere,
+ * off the FX thread, via {@link #train(String[])}.
+ */
+public class PhraseSuggestionService {
+
+    // Enough text before the caret to see the last few words without copying the section.
+    private static final int CONTEXT_CHARS = 80;
+
+    private final Path modelFile;
+    private final StreamingAead cipher; // Null saves the model unencrypted
+    private final CompletableFuture<PhrasePredictor> predictor;
+
+    public PhraseSuggestionService(Path modelFile, int sectionCount) {
+        this(modelFile, sectionCount, null);
+    }
+
+    /**
+     * Starts loading the model in the background. Given a cipher, a model saved unencrypted
+     * earlier is first rewritten encrypted; only the encrypted file is ever loaded.
+     * @param modelFile Where the model is persisted.
+     * @param sectionCount The number of sections the model is split into.
+     * @param cipher Encrypts the model when not null.
+     */
+    public PhraseSuggestionService(Path modelFile, int sectionCount, StreamingAead cipher) {
+        this.modelFile = modelFile;
+        this.cipher = cipher;
+        this.predictor = CompletableFuture.supplyAsync(() -> {
+            try {
+                if (cipher != null && Files.exists(modelFile) && !StreamingAead.isEncrypted(modelFile)) {
+                    PhrasePredictor.loadOrCreate(modelFile, sectionCount).save(modelFile, cipher);
+                }
+                return PhrasePredictor.loadOrCreate(modelFile, sectionCount, cipher);
+            } catch (Exception e) {
+                System.err.println("Failed to load phrase model, starting empty: " + e.getMessage());
+                return new PhrasePredictor(sectionCount);
+            }
+        });
+    }
+
+    /**
+     * Hooks the ghost labels and the Tab key up to the text areas. Must be called on the FX thread.
+     * @param textAreas The section text areas.
+     * @param ghostLabels One label per section that shows the current suggestion.
+     */
+    public void attach(TextArea[] textAreas, Label[] ghostLabels) {
+        for (int i = 0; i < textAreas.length; i++) {
+            final int section = i;
+            TextArea ta = textAreas[i];
+            Label ghost = ghostLabels[i];
+            ta.caretPositionProperty().addListener((obs, oldVal, newVal) -> refresh(section, ta, ghost));
+            ta.focusedProperty().addListener((obs, oldVal, focused) -> {
+                if (!focused) ghost.setText("");
+            });
+            ta.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+                if (event.getCode() == KeyCode.TAB && !event.isShiftDown() && !ghost.getText().isEmpty()) {
+                    String suggestion = ghost.getText();
+                    ghost.setText("");
+                    ta.insertText(ta.getCaretPosition(), suggestion);
+                    event.consume();
+                }
+            });
+        }
+    }
+
+    private void refresh(int section, TextArea ta, Label ghost) {
+        PhrasePredictor model = predictor.getNow(null);
+        if (model == null || !ta.isFocused() || ta.getSelection().getLength() > 0) {
+            ghost.setText("");
+            return;
+        }
+        int caret = ta.getCaretPosition();
+        String before = ta.getText(Math.max(0, caret - CONTEXT_CHARS), caret);
+        ghost.setText(model.predict(section, before));
+    }
+
+    /**
+     * Adds a saved note to the model and persists it. Runs on the caller's (background) thread.
+     */
+    public void train(String[] sections) {
+        PhrasePredictor model = predictor.join();
+        model.train(sections);
+        try {
+            model.save(modelFile, cipher);
+        } catch (Exception e) {
+            System.err.println("Failed to save phrase model: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ittia.gds.ui.mainframe.search;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.ittia.gds.note.NoteStore;
+import com.ittia.gds.note.index.NoteIndex;
+import com.ittia.gds.ui.theme.ThemeManager;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.stage.Stage;
+
+public class NoteSearchUI {
+
+    private static final int MAX_RESULTS = 200;
+    private static final int PREVIEW_CHARS = 80;
+
+    private final NoteIndex noteIndex;
+    private final NoteStore noteStore;
+    private final Consumer<NoteStore.SavedNote> openHandler; // Loads the chosen note into the frame
+    private final ListView<Result> resultList = new ListView<>();
+    private final Label statusLabel = new Label();
+    private Stage stage; // One search window per frame, brought back to front when reopened
+    private long searchGeneration;
+
+    private record Results(List<Result> results, long micros) {
+    }
+
+    private record Result(int id, String label) {
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public NoteSearchUI(NoteIndex noteIndex, NoteStore noteStore, Consumer<NoteStore.SavedNote> openHandler) {
+        this.noteIndex = noteIndex;
+        this.noteStore = noteStore;
+        this.openHandler = openHandler;
+    }
+
+    public void display() {
+        if (stage != null) {
+            stage.show();
+            stage.toFront();
+            return;
+        }
+        stage = new Stage();
+        stage.setTitle("Find Notes");
+        stage.setMinWidth(650);
+        stage.setMinHeight(450);
+
+        TextField queryField = new TextField();
+        queryField.setPromptText("e.g.  P> levothyroxine   |   \"free t4\"   |   thyro*");
+        queryField.setOnAction(e -> search(queryField.getText()));
+
+        Button searchButton = new Button("Search");
+        searchButton.setOnAction(e -> search(queryField.getText()));
+
+        Button openButton = new Button("Open");
+        openButton.setOnAction(e -> openSelected());
+
+        Button quitButton = new Button("Quit");
+        quitButton.setOnAction(e -> stage.close());
+
+        resultList.setOnMouseClicked(event -> {
+            if (event.getClickCount() == 2 && resultList.getSelectionModel().getSelectedItem() != null) {
+                openSelected();
+            }
+        });
+
+        HBox controls = new HBox(10, queryField, searchButton, openButton, quitButton);
+        controls.setPadding(new Insets(10));
+        controls.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(queryField, Priority.ALWAYS);
+
+        HBox status = new HBox(statusLabel);
+        status.setPadding(new Insets(0, 10, 10, 10));
+
+        BorderPane layout = new BorderPane();
+        layout.setTop(controls);
+        layout.setCenter(resultList);
+        layout.setBottom(status);
+
+        Scene scene = new Scene(layout, 650, 450);
+        ThemeManager.apply(scene);
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    // Queries the index and reads result previews off the FX thread; stale searches are discarded.
+    private void search(String query) {
+        long generation = ++searchGeneration;
+        statusLabel.setText("Searching...");
+        CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            List<Integer> ids = noteIndex.search(query, MAX_RESULTS);
+            long micros = (System.nanoTime() - start) / 1000;
+            List<Result> results = new ArrayList<>();
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+            for (int id : ids) {
+                try {
+                    NoteStore.SavedNote note = noteStore.load(id);
+                    results.add(new Result(id, "#" + id + "  " + format.format(new Date(note.savedAt())) + "  " + preview(note)));
+                } catch (IOException e) {
+                    results.add(new Result(id, "#" + id + "  (unreadable)"));
+                }
+            }
+            return new Results(results, micros);
+        }).whenComplete((found, error) -> Platform.runLater(() -> {
+            if (generation != searchGeneration) return;
+            if (error != null) {
+                System.err.println("Note search failed: " + error.getMessage());
+                statusLabel.setText("Search failed.");
+            } else {
+                resultList.getItems().setAll(found.results());
+                statusLabel.setText(found.results().size() + " note(s), index lookup " + found.micros() / 1000.0 + " ms");
+            }
+        }));
+    }
+
+    private static String preview(NoteStore.SavedNote note) {
+        for (String section : note.sections()) {
+            if (section != null && !section.isBlank()) {
+                String oneLine = section.strip().replace('\n', ' ');
+                return oneLine.length() > PREVIEW_CHARS ? oneLine.substring(0, PREVIEW_CHARS) + "..." : oneLine;
+            }
+        }
+        return "";
+    }
+
+    private void openSelected() {
+        Result selected = resultList.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            new Alert(Alert.AlertType.WARNING, "Please select a note to open.").showAndWait();
+            return;
+        }
+        statusLabel.setText("Opening note #" + selected.id() + "...");
+        noteStore.loadAsync(selected.id()).whenComplete((note, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println(error.getMessage());
+                statusLabel.setText("");
+                new Alert(Alert.AlertType.ERROR, "Could not read note #" + selected.id() + ".").showAndWait();
+            } else {
+                openHandler.accept(note);
+                stage.close();
+            }
+        }));
+    }
+}
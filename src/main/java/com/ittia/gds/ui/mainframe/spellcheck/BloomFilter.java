@@ -0,0 +1,73 @@
+package com.ittia.gds.ui.mainframe.spellcheck;
+
+/**
+ * A fixed-size Bloom filter over character sequences.
+ * Used as the first, allocation-free membership test before the exact dictionary is consulted:
+ * a negative answer is definitive, a positive one may be a false positive.
+ */
+final class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedEntries The number of terms that will be added.
+     * @param falsePositiveRate The target false positive probability (e.g. 0.01).
+     */
+    BloomFilter(int expectedEntries, double falsePositiveRate) {
+        int n = Math.max(1, expectedEntries);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, m);
+        this.bits = new long[(int) ((m + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    void add(CharSequence term) {
+        long h = hash(term, 0, term.length());
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(CharSequence term) {
+        return mightContain(term, 0, term.length());
+    }
+
+    boolean mightContain(CharSequence text, int start, int end) {
+        long h = hash(text, start, end);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return The size of the bit array in bytes. */
+    long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    // 64-bit FNV-1a followed by a murmur finaliser to spread the bits for double hashing.
+    private static long hash(CharSequence text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e88cdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
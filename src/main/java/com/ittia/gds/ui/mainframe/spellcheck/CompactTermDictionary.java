@@ -0,0 +1,149 @@
+package com.ittia.gds.ui.mainframe.spellcheck;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * An immutable, front-coded sorted term list.
+ * Terms are stored as UTF-8 in blocks of {@link #BLOCK_SIZE}; the first term of a block is
+ * stored whole and every following term only as the suffix it does not share with its
+ * predecessor. A lookup binary-searches the block heads and decodes at most one block,
+ * so the whole dictionary lives in one byte array plus one int per block.
+ */
+final class CompactTermDictionary {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final int termCount;
+
+    private CompactTermDictionary(byte[] data, int[] blockOffsets, int termCount) {
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.termCount = termCount;
+    }
+
+    /**
+     * Builds the dictionary.
+     * @param sortedTerms Distinct terms in ascending {@link String#compareTo} order.
+     *        For the ASCII vocabulary used here this equals UTF-8 byte order.
+     */
+    static CompactTermDictionary build(List<String> sortedTerms) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sortedTerms.size() * 6);
+        int[] offsets = new int[(sortedTerms.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        byte[] previous = new byte[0];
+        for (int i = 0; i < sortedTerms.size(); i++) {
+            byte[] term = sortedTerms.get(i).getBytes(StandardCharsets.UTF_8);
+            if (i % BLOCK_SIZE == 0) {
+                offsets[i / BLOCK_SIZE] = out.size();
+                writeVarInt(out, term.length);
+                out.write(term, 0, term.length);
+            } else {
+                int shared = 0;
+                int max = Math.min(previous.length, term.length);
+                while (shared < max && previous[shared] == term[shared]) shared++;
+                writeVarInt(out, shared);
+                writeVarInt(out, term.length - shared);
+                out.write(term, shared, term.length - shared);
+            }
+            previous = term;
+        }
+        return new CompactTermDictionary(out.toByteArray(), offsets, sortedTerms.size());
+    }
+
+    boolean contains(String term) {
+        if (termCount == 0) {
+            return false;
+        }
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+
+        // Find the last block whose head is <= key.
+        int lo = 0;
+        int hi = blockOffsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (compareHead(mid, key) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (compareHead(lo, key) > 0) {
+            return false;
+        }
+        return scanBlock(lo, key);
+    }
+
+    int size() {
+        return termCount;
+    }
+
+    long sizeInBytes() {
+        return data.length + (long) blockOffsets.length * Integer.BYTES;
+    }
+
+    private int compareHead(int block, byte[] key) {
+        int[] pos = { blockOffsets[block] };
+        int length = readVarInt(pos);
+        return compare(data, pos[0], length, key);
+    }
+
+    private boolean scanBlock(int block, byte[] key) {
+        int[] pos = { blockOffsets[block] };
+        int end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : data.length;
+        byte[] current = new byte[64];
+        int length = readVarInt(pos);
+        current = ensure(current, length);
+        System.arraycopy(data, pos[0], current, 0, length);
+        pos[0] += length;
+        while (true) {
+            int cmp = compare(current, 0, length, key);
+            if (cmp == 0) return true;
+            if (cmp > 0 || pos[0] >= end) return false;
+            int shared = readVarInt(pos);
+            int suffix = readVarInt(pos);
+            current = ensure(current, shared + suffix);
+            System.arraycopy(data, pos[0], current, shared, suffix);
+            pos[0] += suffix;
+            length = shared + suffix;
+        }
+    }
+
+    private static byte[] ensure(byte[] buffer, int length) {
+        if (buffer.length >= length) return buffer;
+        byte[] grown = new byte[Math.max(length, buffer.length * 2)];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        return grown;
+    }
+
+    private static int compare(byte[] a, int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int diff = (a[offset + i] & 0xff) - (key[i] & 0xff);
+            if (diff != 0) return diff;
+        }
+        return length - key.length;
+    }
+
+    private int readVarInt(int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,187 @@
+package com.ittia.gds.ui.mainframe.spellcheck;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Checks free text against a clinical vocabulary.
+ * Membership goes through a {@link BloomFilter} first and is confirmed in a
+ * {@link CompactTermDictionary}. Because notes mix clinical terms with ordinary prose,
+ * a word is only reported when it is unknown <em>and</em> lies one edit away from a known
+ * term (e.g. "levothyroxin"), which keeps common English words from being flagged.
+ * Instances are immutable and safe to share between threads; all methods are meant to be
+ * called off the FX thread.
+ */
+public final class MedicalSpellChecker {
+
+    public static final String DEFAULT_RESOURCE = "/com/ittia/gds/spell/medical_terms.txt";
+
+    private static final int MIN_WORD_LENGTH = 4;
+    private static final int MAX_SUGGESTIONS = 3;
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz-".toCharArray();
+
+    private final BloomFilter filter;
+    private final CompactTermDictionary dictionary;
+
+    private MedicalSpellChecker(BloomFilter filter, CompactTermDictionary dictionary) {
+        this.filter = filter;
+        this.dictionary = dictionary;
+    }
+
+    /** A word that was not found in the dictionary, with its position in the checked text. */
+    public record Misspelling(String word, int start, int end, List<String> suggestions) {
+    }
+
+    /**
+     * Loads the bundled vocabulary and, when present, an additional site word list
+     * (one term per line) such as a full 500k-term clinical lexicon.
+     * @param extraTerms An optional plain-text word list on disk; may be null.
+     * @throws IOException If the bundled resource cannot be read.
+     */
+    public static MedicalSpellChecker load(Path extraTerms) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (InputStream is = MedicalSpellChecker.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (is == null) {
+                throw new IOException("Spell check dictionary not found: " + DEFAULT_RESOURCE);
+            }
+            readTerms(new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)), terms);
+        }
+        if (extraTerms != null && Files.isRegularFile(extraTerms)) {
+            try (BufferedReader reader = Files.newBufferedReader(extraTerms, StandardCharsets.UTF_8)) {
+                readTerms(reader, terms);
+            }
+        }
+        return fromTerms(terms);
+    }
+
+    /** Builds a checker from an arbitrary collection of terms. */
+    public static MedicalSpellChecker fromTerms(List<String> terms) {
+        List<String> sorted = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            sorted.add(term.toLowerCase(Locale.ROOT));
+        }
+        Collections.sort(sorted);
+        List<String> distinct = new ArrayList<>(sorted.size());
+        String previous = null;
+        for (String term : sorted) {
+            if (!term.equals(previous)) distinct.add(term);
+            previous = term;
+        }
+
+        BloomFilter filter = new BloomFilter(distinct.size(), 0.01);
+        for (String term : distinct) {
+            filter.add(term);
+        }
+        return new MedicalSpellChecker(filter, CompactTermDictionary.build(distinct));
+    }
+
+    private static void readTerms(BufferedReader reader, List<String> terms) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String term = line.trim();
+            if (!term.isEmpty() && !term.startsWith("#")) {
+                terms.add(term);
+            }
+        }
+    }
+
+    public boolean isKnown(String word) {
+        String lower = word.toLowerCase(Locale.ROOT);
+        return filter.mightContain(lower) && dictionary.contains(lower);
+    }
+
+    /**
+     * Scans the text and reports near-miss spellings of dictionary terms.
+     * @param text The section text to check.
+     * @return The misspellings in text order; empty if none were found.
+     */
+    public List<Misspelling> check(String text) {
+        List<Misspelling> result = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && !Character.isLetter(text.charAt(i))) i++;
+            int start = i;
+            while (i < n && (Character.isLetter(text.charAt(i)) || text.charAt(i) == '-')) i++;
+            int end = i;
+            if (end - start < MIN_WORD_LENGTH) continue;
+
+            String word = text.substring(start, end).toLowerCase(Locale.ROOT);
+            if (isKnown(word)) continue;
+            List<String> suggestions = suggest(word);
+            if (!suggestions.isEmpty()) {
+                result.add(new Misspelling(text.substring(start, end), start, end, suggestions));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns dictionary terms one edit (delete, transpose, replace or insert) away from the word.
+     * Candidates are screened by the Bloom filter before the exact dictionary is consulted.
+     */
+    public List<String> suggest(String word) {
+        Set<String> found = new LinkedHashSet<>();
+        char[] chars = word.toLowerCase(Locale.ROOT).toCharArray();
+        StringBuilder candidate = new StringBuilder(chars.length + 1);
+
+        for (int i = 0; i < chars.length && found.size() < MAX_SUGGESTIONS; i++) {
+            candidate.setLength(0);
+            candidate.append(chars, 0, i).append(chars, i + 1, chars.length - i - 1);
+            offer(candidate, found);
+        }
+        for (int i = 0; i + 1 < chars.length && found.size() < MAX_SUGGESTIONS; i++) {
+            candidate.setLength(0);
+            candidate.append(chars);
+            candidate.setCharAt(i, chars[i + 1]);
+            candidate.setCharAt(i + 1, chars[i]);
+            offer(candidate, found);
+        }
+        for (int i = 0; i < chars.length && found.size() < MAX_SUGGESTIONS; i++) {
+            candidate.setLength(0);
+            candidate.append(chars);
+            for (char c : ALPHABET) {
+                if (c == chars[i]) continue;
+                candidate.setCharAt(i, c);
+                offer(candidate, found);
+            }
+        }
+        for (int i = 0; i <= chars.length && found.size() < MAX_SUGGESTIONS; i++) {
+            for (char c : ALPHABET) {
+                candidate.setLength(0);
+                candidate.append(chars, 0, i).append(c).append(chars, i, chars.length - i);
+                offer(candidate, found);
+            }
+        }
+        return found.isEmpty() ? List.of() : List.copyOf(found);
+    }
+
+    private void offer(CharSequence candidate, Set<String> found) {
+        if (found.size() < MAX_SUGGESTIONS && filter.mightContain(candidate)) {
+            String term = candidate.toString();
+            if (dictionary.contains(term)) {
+                found.add(term);
+            }
+        }
+    }
+
+    public int size() {
+        return dictionary.size();
+    }
+
+    /** @return The heap footprint of the filter and dictionary arrays in bytes. */
+    public long sizeInBytes() {
+        return filter.sizeInBytes() + dictionary.sizeInBytes();
+    }
+}
@@ -0,0 +1,182 @@
+package com.ittia.gds.ui.mainframe.spellcheck;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import javafx.application.Platform;
+import javafx.css.PseudoClass;
+
+import com.ittia.gds.ui.mainframe.document.PieceTable;
+import com.ittia.gds.ui.mainframe.document.SectionDocument;
+import com.ittia.gds.ui.mainframe.document.TextDelta;
+
+/**
+ * Runs {@link MedicalSpellChecker} for the section text areas on a background thread.
+ * Checking is debounced per section: only once typing pauses does the FX thread copy the
+ * lines touched since the last check and hand them over; findings elsewhere in the section
+ * are kept and only shifted as edits move them. The result is posted back with
+ * {@link Platform#runLater}, where it is dropped if the section has been edited again in the
+ * meantime; the lines then stay due and are checked with the next pause.
+ * Sections with findings get the {@code misspelled} pseudo-class.
+ */
+public class SpellCheckService {
+
+    public static final PseudoClass MISSPELLED = PseudoClass.getPseudoClass("misspelled");
+
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "spell-check");
+        t.setDaemon(true);
+        return t;
+    });
+    private final CompletableFuture<MedicalSpellChecker> checker;
+    private final BiConsumer<Integer, List<MedicalSpellChecker.Misspelling>> resultHandler;
+
+    private SectionDocument[] documents;
+    private long[] versions;
+    private ScheduledFuture<?>[] pending;
+    private List<List<MedicalSpellChecker.Misspelling>> findings; // Per section, in text order
+    private int[] dirtyStart; // Per section: the range edited since the last check, or -1
+    private int[] dirtyEnd;
+
+    /**
+     * Starts loading the dictionary in the background.
+     * @param extraTerms An optional site word list on disk; may be null.
+     * @param resultHandler Receives (section index, findings) on the FX thread.
+     */
+    public SpellCheckService(Path extraTerms, BiConsumer<Integer, List<MedicalSpellChecker.Misspelling>> resultHandler) {
+        this.resultHandler = resultHandler;
+        this.checker = CompletableFuture.supplyAsync(() -> {
+            try {
+                MedicalSpellChecker loaded = MedicalSpellChecker.load(extraTerms);
+                System.out.println("Spell check dictionary loaded: " + loaded.size() + " terms, "
+                        + loaded.sizeInBytes() / 1024 + " KB");
+                return loaded;
+            } catch (Exception e) {
+                System.err.println("Failed to load spell check dictionary: " + e.getMessage());
+                return null;
+            }
+        }, executor);
+    }
+
+    /**
+     * Starts watching the given section documents. Must be called on the FX thread.
+     */
+    public void attach(SectionDocument[] sectionDocuments) {
+        this.documents = sectionDocuments;
+        this.versions = new long[sectionDocuments.length];
+        this.pending = new ScheduledFuture<?>[sectionDocuments.length];
+        this.findings = new ArrayList<>();
+        this.dirtyStart = new int[sectionDocuments.length];
+        this.dirtyEnd = new int[sectionDocuments.length];
+        for (int i = 0; i < sectionDocuments.length; i++) {
+            final int section = i;
+            findings.add(List.of());
+            dirtyStart[i] = -1;
+            sectionDocuments[i].addListener(delta -> {
+                track(section, delta);
+                schedule(section);
+            });
+        }
+    }
+
+    // Moves the findings after the edit, drops those it touched and widens the range due for a check.
+    private void track(int section, TextDelta delta) {
+        int start = delta.start();
+        int removedEnd = start + delta.removedLength();
+        int shift = delta.insertedLength() - delta.removedLength();
+        List<MedicalSpellChecker.Misspelling> kept = new ArrayList<>();
+        for (MedicalSpellChecker.Misspelling m : findings.get(section)) {
+            if (m.end() < start) {
+                kept.add(m);
+            } else if (m.start() > removedEnd) {
+                kept.add(new MedicalSpellChecker.Misspelling(m.word(), m.start() + shift, m.end() + shift, m.suggestions()));
+            }
+        }
+        findings.set(section, kept);
+
+        int from = start;
+        int to = delta.insertedEnd();
+        if (dirtyStart[section] >= 0) {
+            from = Math.min(from, moved(dirtyStart[section], start, removedEnd, shift, start));
+            to = Math.max(to, moved(dirtyEnd[section], start, removedEnd, shift, delta.insertedEnd()));
+        }
+        dirtyStart[section] = from;
+        dirtyEnd[section] = to;
+    }
+
+    private static int moved(int offset, int start, int removedEnd, int shift, int ifRemoved) {
+        if (offset <= start) return offset;
+        return offset >= removedEnd ? offset + shift : ifRemoved;
+    }
+
+    private void schedule(int section) {
+        long version = ++versions[section];
+        if (pending[section] != null) {
+            pending[section].cancel(false);
+        }
+        // The executor may be shut down by a closing window at any point; a check it refuses is simply dropped.
+        try {
+            pending[section] = executor.schedule(() -> Platform.runLater(() -> {
+                if (versions[section] != version || dirtyStart[section] < 0) {
+                    return; // Edited again; that edit has scheduled its own check.
+                }
+                // Whole lines, so that words cut by the edit are checked complete.
+                PieceTable content = documents[section].getContent();
+                int from = content.lineStart(content.lineOf(Math.min(dirtyStart[section], content.length())));
+                int to = content.lineEnd(Math.min(dirtyEnd[section], content.length()));
+                String text = content.subSequence(from, to);
+                try {
+                    executor.execute(() -> check(section, version, from, to, text));
+                } catch (RejectedExecutionException e) {
+                    // The window has closed.
+                }
+            }), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending[section] = null;
+        }
+    }
+
+    private void check(int section, long version, int from, int to, String text) {
+        MedicalSpellChecker spellChecker = checker.getNow(null);
+        if (spellChecker == null) {
+            return;
+        }
+        List<MedicalSpellChecker.Misspelling> found = spellChecker.check(text);
+        Platform.runLater(() -> apply(section, version, from, to, found));
+    }
+
+    // Replaces the findings on the checked lines; words never span a line break, so nothing straddles them.
+    private void apply(int section, long version, int from, int to, List<MedicalSpellChecker.Misspelling> found) {
+        if (versions[section] != version) {
+            return; // The section changed again; a newer check is on its way.
+        }
+        List<MedicalSpellChecker.Misspelling> merged = new ArrayList<>();
+        for (MedicalSpellChecker.Misspelling m : findings.get(section)) {
+            if (m.end() <= from) merged.add(m);
+        }
+        for (MedicalSpellChecker.Misspelling m : found) {
+            merged.add(new MedicalSpellChecker.Misspelling(m.word(), m.start() + from, m.end() + from, m.suggestions()));
+        }
+        for (MedicalSpellChecker.Misspelling m : findings.get(section)) {
+            if (m.start() >= to) merged.add(m);
+        }
+        findings.set(section, merged);
+        dirtyStart[section] = -1;
+        documents[section].getTextArea().pseudoClassStateChanged(MISSPELLED, !merged.isEmpty());
+        resultHandler.accept(section, merged);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,15 +1,33 @@
 package com.ittia.gds.ui.model;
 
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
 public class Abbreviation {
+    public static final String DEFAULT_CATEGORY = "General";
+
     private final StringProperty key;
     private final StringProperty value;
+    private final StringProperty category;
+    private final StringProperty owner;
+    private final LongProperty updatedAt; // Milliseconds since the epoch
+    private final IntegerProperty usageCount;
 
     public Abbreviation(String key, String value) {
+        this(key, value, DEFAULT_CATEGORY, "", 0, 0);
+    }
+
+    public Abbreviation(String key, String value, String category, String owner, long updatedAt, int usageCount) {
         this.key = new SimpleStringProperty(key);
         this.value = new SimpleStringProperty(value);
+        this.category = new SimpleStringProperty(category);
+        this.owner = new SimpleStringProperty(owner);
+        this.updatedAt = new SimpleLongProperty(updatedAt);
+        this.usageCount = new SimpleIntegerProperty(usageCount);
     }
 
     public String getKey() {
@@ -35,4 +53,44 @@ public class Abbreviation {
     public StringProperty valueProperty() {
         return value;
     }
-}
\ No newline at end of file
+
+    public String getCategory() {
+        return category.get();
+    }
+
+    public void setCategory(String category) {
+        this.category.set(category);
+    }
+
+    public StringProperty categoryProperty() {
+        return category;
+    }
+
+    public String getOwner() {
+        return owner.get();
+    }
+
+    public void setOwner(String owner) {
+        this.owner.set(owner);
+    }
+
+    public StringProperty ownerProperty() {
+        return owner;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt.get();
+    }
+
+    public LongProperty updatedAtProperty() {
+        return updatedAt;
+    }
+
+    public int getUsageCount() {
+        return usageCount.get();
+    }
+
+    public IntegerProperty usageCountProperty() {
+        return usageCount;
+    }
+}
@@ -0,0 +1,151 @@
+package com.ittia.gds.ui.rescue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.ittia.gds.db.DatabaseBackup;
+import com.ittia.gds.ui.mainframe.changestring.AbbreviationsMain;
+import com.ittia.gds.ui.theme.ThemeManager;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+/**
+ * The launcher's Rescue window: lists the retained dictionary backups, newest first and
+ * preselected, so restoring the latest good copy is a single click on "Restore".
+ */
+public class RescueUI {
+
+    private final DatabaseBackup backup;
+    private final ListView<Path> generationList = new ListView<>();
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private final Label statusLabel = new Label();
+
+    public RescueUI(DatabaseBackup backup) {
+        this.backup = backup;
+    }
+
+    public void display() {
+        Stage stage = new Stage();
+        stage.setTitle("Rescue Abbreviation Dictionary");
+        stage.setMinWidth(480);
+        stage.setMinHeight(360);
+
+        generationList.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(Path item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : describe(item));
+            }
+        });
+
+        Button restoreButton = new Button("Restore");
+        restoreButton.setDefaultButton(true);
+        restoreButton.setOnAction(e -> restoreSelected(stage));
+
+        Button backupButton = new Button("Back Up Now");
+        backupButton.setOnAction(e -> {
+            statusLabel.setText("Backing up...");
+            backup.backupAsync(this::showProgress).whenComplete((path, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    System.err.println(error.getMessage());
+                    statusLabel.setText("Backup failed.");
+                } else {
+                    statusLabel.setText("Saved " + path.getFileName());
+                }
+                refresh();
+            }));
+        });
+
+        Button quitButton = new Button("Quit");
+        quitButton.setOnAction(e -> stage.close());
+
+        progressBar.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(progressBar, Priority.ALWAYS);
+        HBox controls = new HBox(10, restoreButton, backupButton, quitButton);
+        controls.setAlignment(Pos.CENTER_RIGHT);
+        VBox bottom = new VBox(8, progressBar, statusLabel, controls);
+        bottom.setPadding(new Insets(10));
+
+        BorderPane root = new BorderPane(generationList);
+        root.setBottom(bottom);
+        BorderPane.setMargin(generationList, new Insets(10, 10, 0, 10));
+
+        refresh();
+        Scene scene = new Scene(root, 520, 400);
+        ThemeManager.apply(scene);
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    private void refresh() {
+        try {
+            List<Path> generations = backup.listGenerations();
+            generationList.getItems().setAll(generations);
+            generationList.getSelectionModel().selectFirst();
+            if (generations.isEmpty()) {
+                statusLabel.setText("No backups yet.");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to list backups: " + e.getMessage());
+            statusLabel.setText("Could not read the rescue directory.");
+        }
+    }
+
+    private void restoreSelected(Stage owner) {
+        Path selected = generationList.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                "Replace the current dictionary with " + selected.getFileName() + "?\n"
+                + "The current dictionary is backed up first.", ButtonType.OK, ButtonType.CANCEL);
+        confirm.initOwner(owner);
+        confirm.setHeaderText(null);
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+        statusLabel.setText("Restoring...");
+        // The dictionary is shared by every open EMR window; reload it on the restore's thread.
+        CompletableFuture<Void> restored = backup.restoreAsync(selected, this::showProgress)
+                .thenRun(AbbreviationsMain::reloadDictionary);
+        restored.whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println(error.getMessage());
+                statusLabel.setText("Restore failed: " + error.getCause().getMessage());
+            } else {
+                statusLabel.setText("Restored " + selected.getFileName() + "; open windows now use it.");
+            }
+            refresh();
+        }));
+    }
+
+    private void showProgress(double fraction) {
+        Platform.runLater(() -> progressBar.setProgress(fraction));
+    }
+
+    private static String describe(Path generation) {
+        try {
+            return generation.getFileName() + "   (" + (Files.size(generation) / 1024) + " KB)";
+        } catch (IOException e) {
+            return generation.getFileName().toString();
+        }
+    }
+}
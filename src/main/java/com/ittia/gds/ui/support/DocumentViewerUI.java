@@ -0,0 +1,48 @@
+package com.ittia.gds.ui.support;
+
+import com.ittia.gds.support.SupportDocument;
+import com.ittia.gds.ui.theme.ThemeManager;
+
+import javafx.scene.Scene;
+import javafx.scene.control.Pagination;
+import javafx.scene.control.TextArea;
+import javafx.scene.text.Font;
+import javafx.stage.Stage;
+
+/**
+ * Shows a {@link SupportDocument} one page at a time. Only the visible page exists as a node
+ * and as a String, so a 50 MB guideline costs no more to display than a short note.
+ */
+public class DocumentViewerUI {
+
+    private final SupportDocument document;
+    private final String title;
+
+    public DocumentViewerUI(SupportDocument document, String title) {
+        this.document = document;
+        this.title = title;
+    }
+
+    public void display() {
+        Stage stage = new Stage();
+        stage.setTitle(title);
+        Scene scene = new Scene(createPagination(document), 900, 800);
+        ThemeManager.apply(scene);
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    /** Builds a pager whose page factory decodes each page only when it is shown. */
+    static Pagination createPagination(SupportDocument document) {
+        Pagination pagination = new Pagination(document.getPageCount(), 0);
+        pagination.setPageFactory(index -> {
+            if (index < 0 || index >= document.getPageCount()) return null;
+            TextArea page = new TextArea(document.page(index));
+            page.setEditable(false);
+            page.setWrapText(true);
+            page.setFont(Font.font("Consolas", 13));
+            return page;
+        });
+        return pagination;
+    }
+}
@@ -0,0 +1,98 @@
+package com.ittia.gds.ui.support;
+
+import com.ittia.gds.support.SupportLibrary;
+import com.ittia.gds.ui.theme.ThemeManager;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+/**
+ * Browses the support folder: the index on the left, the selected document paged on the right.
+ * Indexing and opening happen on the library's thread; the FX thread only swaps in the result.
+ */
+public class SupportLibraryUI {
+
+    private final SupportLibrary library;
+    private final ObservableList<SupportLibrary.Entry> entries = FXCollections.observableArrayList();
+    private final StackPane viewer = new StackPane();
+    private final Label statusLabel = new Label();
+    private SupportLibrary.Entry requested; // The document the user most recently asked for
+
+    public SupportLibraryUI(SupportLibrary library) {
+        this.library = library;
+    }
+
+    public void display() {
+        Stage stage = new Stage();
+        stage.setTitle("Support Library");
+
+        FilteredList<SupportLibrary.Entry> filtered = new FilteredList<>(entries, e -> true);
+        TextField filterField = new TextField();
+        filterField.setPromptText("Filter documents...");
+        filterField.textProperty().addListener((obs, oldVal, newVal) -> {
+            String needle = newVal == null ? "" : newVal.toLowerCase();
+            filtered.setPredicate(e -> needle.isEmpty() || e.relativeName().toLowerCase().contains(needle));
+        });
+
+        ListView<SupportLibrary.Entry> documentList = new ListView<>(filtered);
+        documentList.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal != null) open(newVal);
+        });
+
+        VBox left = new VBox(8, filterField, documentList);
+        left.setPadding(new Insets(10));
+        VBox.setVgrow(documentList, Priority.ALWAYS);
+        viewer.getChildren().setAll(new Label("Select a document."));
+
+        SplitPane split = new SplitPane(left, viewer);
+        split.setDividerPositions(0.28);
+        BorderPane root = new BorderPane(split);
+        root.setBottom(statusLabel);
+        BorderPane.setMargin(statusLabel, new Insets(4, 10, 6, 10));
+
+        statusLabel.setText("Indexing " + library.getRoot() + "...");
+        library.indexAsync().whenComplete((list, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println(error.getMessage());
+                statusLabel.setText("Could not index the support folder.");
+            } else {
+                entries.setAll(list);
+                statusLabel.setText(list.size() + " document(s)");
+            }
+        }));
+
+        Scene scene = new Scene(root, 1100, 800);
+        ThemeManager.apply(scene);
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    private void open(SupportLibrary.Entry entry) {
+        requested = entry;
+        statusLabel.setText("Opening " + entry.relativeName() + "...");
+        library.openAsync(entry.path()).whenComplete((document, error) -> Platform.runLater(() -> {
+            if (requested != entry) return; // The user has already moved on
+            if (error != null) {
+                System.err.println(error.getMessage());
+                statusLabel.setText("Could not open " + entry.relativeName());
+                return;
+            }
+            viewer.getChildren().setAll(DocumentViewerUI.createPagination(document));
+            statusLabel.setText(entry.relativeName() + " - " + (document.getSize() / 1024) + " KB, "
+                    + document.getPageCount() + " page(s)");
+        }));
+    }
+}
@@ -0,0 +1,78 @@
+package com.ittia.gds.ui.theme;
+
+import java.util.Arrays;
+
+import javafx.scene.Scene;
+
+/**
+ * Measures the styling cost of each pulse of a scene.
+ * JavaFX runs a scene's pre-layout pulse listeners immediately before its CSS pass and the
+ * post-layout listeners right after the layout pass, so the time between them is the CSS plus
+ * layout work done for that frame. Enable it for the EMR frame with {@code -Dgds.profile.css=true};
+ * the summary is printed when the window closes.
+ */
+public final class StyleProfiler {
+
+    /** Per-pulse CSS and layout time, in microseconds. */
+    public record Summary(int pulses, double mean, double p50, double p99, double max) {
+        @Override
+        public String toString() {
+            return String.format("%d pulses, CSS+layout per pulse: mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us",
+                    pulses, mean, p50, p99, max);
+        }
+    }
+
+    private static final int MAX_SAMPLES = 1 << 16;
+
+    private final Scene scene;
+    private final Runnable before = this::pulseStarted;
+    private final Runnable after = this::pulseFinished;
+    private final long[] samples = new long[MAX_SAMPLES]; // Ring buffer of nanoseconds
+    private int count;
+    private long pulseStart;
+
+    private StyleProfiler(Scene scene) {
+        this.scene = scene;
+    }
+
+    /** Starts measuring; call on the FX thread. */
+    public static StyleProfiler attach(Scene scene) {
+        StyleProfiler profiler = new StyleProfiler(scene);
+        scene.addPreLayoutPulseListener(profiler.before);
+        scene.addPostLayoutPulseListener(profiler.after);
+        return profiler;
+    }
+
+    public void detach() {
+        scene.removePreLayoutPulseListener(before);
+        scene.removePostLayoutPulseListener(after);
+    }
+
+    /** Forgets the samples taken so far, e.g. after a warm-up. */
+    public void reset() {
+        count = 0;
+    }
+
+    private void pulseStarted() {
+        pulseStart = System.nanoTime();
+    }
+
+    private void pulseFinished() {
+        if (pulseStart == 0) return;
+        samples[count++ & (MAX_SAMPLES - 1)] = System.nanoTime() - pulseStart;
+        pulseStart = 0;
+    }
+
+    public Summary summary() {
+        int n = Math.min(count, MAX_SAMPLES);
+        if (n == 0) {
+            return new Summary(0, 0, 0, 0, 0);
+        }
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long s : sorted) total += s;
+        return new Summary(count, total / 1e3 / n, sorted[n / 2] / 1e3,
+                sorted[Math.min(n - 1, (int) Math.ceil(n * 0.99) - 1)] / 1e3, sorted[n - 1] / 1e3);
+    }
+}
@@ -0,0 +1,99 @@
+package com.ittia.gds.ui.theme;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.ittia.gds.EntryDir;
+
+import javafx.scene.Scene;
+
+/**
+ * Applies the shared stylesheets to every window and switches between themes.
+ * Each scene gets {@code base.css} plus one theme sheet; JavaFX parses each sheet once and
+ * caches it, so switching themes or opening another window never re-parses inline styles.
+ * The choice is remembered in {@code HOME_DIR/theme}. Call from the FX thread only.
+ */
+public final class ThemeManager {
+
+    public enum Theme {
+        LIGHT("Light", "light.css"),
+        DARK("Dark", "dark.css"),
+        HIGH_CONTRAST("High Contrast", "high-contrast.css");
+
+        private final String label;
+        private final String stylesheet;
+
+        Theme(String label, String stylesheet) {
+            this.label = label;
+            this.stylesheet = stylesheet;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final String BASE_STYLESHEET = url("base.css");
+    private static final Path SETTINGS_FILE = EntryDir.HOME_DIR.resolve("theme");
+    private static final List<WeakReference<Scene>> scenes = new ArrayList<>();
+    private static Theme current = loadTheme();
+
+    /** Styles a scene with the current theme and keeps it in step with later theme changes. */
+    public static void apply(Scene scene) {
+        scenes.add(new WeakReference<>(scene));
+        style(scene);
+    }
+
+    public static Theme getTheme() {
+        return current;
+    }
+
+    /** Switches every open window to the theme and remembers the choice. */
+    public static void setTheme(Theme theme) {
+        if (theme == current) return;
+        current = theme;
+        for (Iterator<WeakReference<Scene>> it = scenes.iterator(); it.hasNext(); ) {
+            Scene scene = it.next().get();
+            if (scene == null) {
+                it.remove();
+            } else {
+                style(scene);
+            }
+        }
+        try {
+            Files.writeString(SETTINGS_FILE, theme.name(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Failed to save theme: " + e.getMessage());
+        }
+    }
+
+    private static void style(Scene scene) {
+        scene.getStylesheets().setAll(BASE_STYLESHEET, url(current.stylesheet));
+    }
+
+    private static Theme loadTheme() {
+        String name = System.getProperty("gds.theme");
+        try {
+            if (name == null && Files.exists(SETTINGS_FILE)) {
+                name = Files.readString(SETTINGS_FILE, StandardCharsets.UTF_8).trim();
+            }
+            return name == null ? Theme.LIGHT : Theme.valueOf(name.toUpperCase().replace('-', '_'));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Unknown theme '" + name + "'; using Light.");
+            return Theme.LIGHT;
+        }
+    }
+
+    private static String url(String stylesheet) {
+        return ThemeManager.class.getResource(stylesheet).toExternalForm();
+    }
+
+    private ThemeManager() {}
+}
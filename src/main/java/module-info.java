@@ -5,5 +5,6 @@ module com.ittia.gds {
 //	requires org.slf4j;
 	requires java.desktop;
 	requires java.sql; // 그래픽 기능에 필요할 수 있음
+	requires org.xerial.sqlitejdbc; // Online backup API
     opens com.ittia.gds to javafx.fxml, javafx.graphics;
 }
\ No newline at end of file
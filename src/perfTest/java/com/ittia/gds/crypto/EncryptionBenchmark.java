@@ -0,0 +1,120 @@
+package com.ittia.gds.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import javax.crypto.KeyGenerator;
+
+/**
+ * Compares plain and encrypted file throughput, to show what {@link StreamingAead} costs.
+ * Each pass writes the same data raw and encrypted (synced to disk), reads both back
+ * sequentially, and reads random chunks of the encrypted file; the best of three passes is
+ * reported, after an in-memory warm-up so that the JIT has compiled the AES-GCM intrinsics
+ * before anything is timed. Reads follow the writes, so they mostly come from the page cache and show the
+ * cipher's CPU cost rather than the disk's.
+ * <p>
+ * Usage: {@code gradle encryptionBenchmark -PbenchmarkArgs="[megabytes] [directory]"}
+ */
+public final class EncryptionBenchmark {
+
+    private static final int PASSES = 3;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int RANDOM_READS = 2000;
+    private static final long WARMUP_BYTES = 1L << 30;
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        Path directory = args.length > 1 ? Paths.get(args[1]) : Files.createTempDirectory("gds-crypto-bench");
+        long bytes = (long) megabytes << 20;
+
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        StreamingAead cipher = new StreamingAead(generator.generateKey());
+        byte[] block = new byte[BUFFER_BYTES];
+        new Random(42).nextBytes(block);
+
+        byte[] warmup = new byte[64 << 20];
+        for (long done = 0; done < WARMUP_BYTES; done += warmup.length) {
+            read(cipher.newDecryptingStream(new ByteArrayInputStream(cipher.encrypt(warmup))));
+        }
+
+        Path plain = directory.resolve("bench-plain.bin");
+        Path encrypted = directory.resolve("bench-encrypted.gde");
+        double[] best = new double[5];
+        try {
+            for (int pass = 0; pass < PASSES; pass++) {
+                double[] rates = {
+                        rate(bytes, () -> write(plain, block, bytes, false, cipher)),
+                        rate(bytes, () -> write(encrypted, block, bytes, true, cipher)),
+                        rate(bytes, () -> read(Files.newInputStream(plain))),
+                        rate(bytes, () -> read(cipher.newInputStream(encrypted))),
+                        rate((long) RANDOM_READS * StreamingAead.CHUNK_SIZE, () -> randomReads(cipher, encrypted)),
+                };
+                for (int i = 0; i < rates.length; i++) best[i] = Math.max(best[i], rates[i]);
+            }
+        } finally {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(encrypted);
+        }
+
+        System.out.printf("%d MB in %s, best of %d passes%n", megabytes, directory, PASSES);
+        System.out.printf("write  plain %8.1f MB/s   encrypted %8.1f MB/s   overhead %5.1f%%%n",
+                best[0], best[1], overhead(best[0], best[1]));
+        System.out.printf("read   plain %8.1f MB/s   decrypted %8.1f MB/s   overhead %5.1f%%%n",
+                best[2], best[3], overhead(best[2], best[3]));
+        System.out.printf("random 64 KB chunk reads, decrypted: %.1f MB/s (%d chunks)%n", best[4], RANDOM_READS);
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private static double rate(long bytes, Task task) throws IOException {
+        long start = System.nanoTime();
+        task.run();
+        return bytes / 1e6 / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void write(Path file, byte[] block, long bytes, boolean encrypt, StreamingAead cipher) throws IOException {
+        OutputStream raw = Files.newOutputStream(file);
+        try (OutputStream out = encrypt ? cipher.newEncryptingStream(raw) : raw) {
+            for (long written = 0; written < bytes; written += block.length) {
+                out.write(block);
+            }
+        }
+        // fsync applies to the file, not the descriptor, so a fresh channel syncs what was written.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void read(InputStream stream) throws IOException {
+        byte[] buffer = new byte[BUFFER_BYTES];
+        try (InputStream in = stream) {
+            while (in.read(buffer) >= 0) { }
+        }
+    }
+
+    private static void randomReads(StreamingAead cipher, Path file) throws IOException {
+        Random random = new Random(7);
+        try (StreamingAead.RandomAccessReader reader = cipher.openRandomAccess(file)) {
+            for (int i = 0; i < RANDOM_READS; i++) {
+                reader.readChunk(random.nextLong(reader.getChunkCount()));
+            }
+        }
+    }
+
+    private static double overhead(double plain, double encrypted) {
+        return (plain / encrypted - 1) * 100;
+    }
+
+    private EncryptionBenchmark() {}
+}
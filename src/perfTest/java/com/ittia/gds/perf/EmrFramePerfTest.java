@@ -0,0 +1,217 @@
+package com.ittia.gds.perf;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.testfx.api.FxToolkit;
+
+import com.ittia.gds.GDSEMR_frame;
+import com.ittia.gds.db.DatabaseManager;
+import com.ittia.gds.ui.mainframe.changestring.AbbreviationsMain;
+import com.ittia.gds.ui.model.Abbreviation;
+
+import javafx.scene.control.TextArea;
+import javafx.scene.text.Text;
+import javafx.stage.Stage;
+
+/**
+ * Drives the real EMR frame, headless, with scripted typing, abbreviation and paste workloads.
+ * Each scenario pairs a note size with a dictionary size: the dictionary is seeded into the
+ * frame's database, the frame is started, one section is pre-filled to the note size, and then
+ * every input is timed by {@link SyntheticTypist}. Distributions are printed, along with the
+ * FX-thread allocation per keystroke and the GC time of the scenario; the raw samples go
+ * to {@code build/reports/perf/latency.csv}, and a scenario fails when a distribution is over
+ * its budget in {@code perf-budgets.properties}, or, with {@code -Pperf.calibrate}, contributes
+ * to {@code build/reports/perf/perf-budgets.calibrated.properties} instead.
+ * <p>
+ * The matrix can be narrowed with {@code -Pperf.noteSizes=1024,65536} and
+ * {@code -Pperf.dictionarySizes=100,10000}.
+ */
+class EmrFramePerfTest {
+
+    private static final String PROSE =
+            "patient reports intermittent substernal chest pressure on exertion, relieved by rest within minutes\n";
+    private static final int SECTION = 1; // PI>, the section that grows longest in practice
+    private static final int WARMUP_KEYSTROKES = 100;
+    private static final int KEYSTROKES = 500;
+    private static final int EXPANSIONS = 50;
+    private static final int PASTES = 20;
+    private static final int PASTE_BYTES = 2048;
+
+    private static final PerfBudgets budgets = new PerfBudgets();
+    private static Stage stage;
+    private static Path report;
+    private static int seededDictionarySize = -1;
+
+    @BeforeAll
+    static void startToolkit() throws Exception {
+        stage = FxToolkit.registerPrimaryStage();
+        requireTextLayout();
+        report = Path.of(System.getProperty("perf.reportDir", "build/reports/perf")).resolve("latency.csv");
+        Files.deleteIfExists(report);
+    }
+
+    @AfterAll
+    static void writeCalibratedBudgets() throws Exception {
+        if (report != null) budgets.writeCalibrated(report.resolveSibling("perf-budgets.calibrated.properties"));
+    }
+
+    /**
+     * Lays out one string before any scenario, so a machine without the native font stack fails
+     * once with the packages to install rather than with an UnsatisfiedLinkError per scenario.
+     */
+    private static void requireTextLayout() throws Exception {
+        try {
+            FxToolkit.setupFixture(() -> new Text("x").getLayoutBounds());
+        } catch (Exception | LinkageError e) {
+            Throwable cause = e;
+            while (cause.getCause() != null && !(cause instanceof LinkageError)) cause = cause.getCause();
+            if (!(cause instanceof LinkageError)) throw e;
+            throw new IllegalStateException("JavaFX text layout is unavailable (" + cause.getMessage()
+                    + "); on Linux install pango, fontconfig and freetype (see build.gradle.kts), or build with -PskipPerf", cause);
+        }
+    }
+
+    static Stream<Arguments> scenarios() {
+        // Dictionary sizes outermost, so each dictionary is seeded once.
+        int[] noteSizes = sizes("perf.noteSizes", "1024,65536,1048576");
+        int[] dictionarySizes = sizes("perf.dictionarySizes", "100,10000,1000000");
+        return Arrays.stream(dictionarySizes).boxed()
+                .flatMap(dictionary -> Arrays.stream(noteSizes).mapToObj(note -> Arguments.of(note, dictionary)));
+    }
+
+    @ParameterizedTest(name = "note {0} B, dictionary {1}")
+    @MethodSource("scenarios")
+    void inputLatencyWithinBudget(int noteSize, int dictionarySize) throws Exception {
+        seedDictionary(dictionarySize);
+        GDSEMR_frame app = (GDSEMR_frame) FxToolkit.setupApplication(GDSEMR_frame::new);
+        try {
+            SyntheticTypist typist = FxToolkit.setupFixture(() -> new SyntheticTypist(stage.getScene()));
+            TextArea target = app.getTextAreas()[SECTION];
+            // Focus first: the frame clears every section the first time one gains focus.
+            typist.run(target::requestFocus);
+            typist.run(() -> {
+                target.setText(filler(noteSize));
+                target.end();
+            });
+
+            LatencyRecorder typing = new LatencyRecorder("typing");
+            LatencyRecorder expansion = new LatencyRecorder("expansion");
+            LatencyRecorder paste = new LatencyRecorder("paste");
+
+            for (int i = 0; i < WARMUP_KEYSTROKES; i++) {
+                typist.type(target, PROSE.charAt(i % PROSE.length()));
+            }
+            long gcMillis = gcMillis();
+            long typingAllocated = 0;
+            for (int i = 0; i < KEYSTROKES; i++) {
+                typing.add(typist.type(target, PROSE.charAt(i % PROSE.length())));
+                typingAllocated += typist.getLastAllocatedBytes();
+            }
+
+            Random random = new Random(31L * noteSize + dictionarySize);
+            for (int i = 0; i < EXPANSIONS; i++) {
+                int entry = random.nextInt(dictionarySize);
+                String trigger = " :perf" + entry;
+                for (int j = 0; j < trigger.length(); j++) {
+                    typing.add(typist.type(target, trigger.charAt(j)));
+                }
+                expansion.add(typist.type(target, ' '));
+                AtomicReference<String> text = new AtomicReference<>();
+                typist.run(() -> text.set(target.getText()));
+                assertTrue(text.get().endsWith(expansionOf(entry) + " "), "Abbreviation :perf" + entry + " was not expanded");
+            }
+
+            String chunk = filler(PASTE_BYTES);
+            for (int i = 0; i < PASTES; i++) {
+                paste.add(typist.paste(target, chunk));
+            }
+
+            String scenario = "note=" + noteSize + " dictionary=" + dictionarySize;
+            System.out.printf("%s typing allocation: %,d B/keystroke, GC time: %d ms%n",
+                    scenario, typingAllocated / KEYSTROKES, gcMillis() - gcMillis);
+            List<String> violations = new ArrayList<>();
+            for (LatencyRecorder recorder : List.of(typing, expansion, paste)) {
+                LatencyRecorder.Distribution distribution = recorder.distribution();
+                System.out.println(scenario + " " + recorder.getWorkload() + ": " + distribution);
+                recorder.appendCsv(report, scenario);
+                violations.addAll(budgets.check(scenario, recorder.getWorkload(), noteSize, distribution));
+            }
+            assertTrue(violations.isEmpty(), "Latency budget exceeded:\n" + String.join("\n", violations));
+        } finally {
+            FxToolkit.cleanupApplication(app);
+            FxToolkit.cleanupStages();
+        }
+    }
+
+    /** Replaces the dictionary with {@code size} generated entries, in one transaction. */
+    private static void seedDictionary(int size) throws Exception {
+        if (size == seededDictionarySize) return;
+        DatabaseManager.migrate();
+        try (Connection conn = DriverManager.getConnection(DatabaseManager.DB_URL)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM abbreviations");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.UPSERT_SQL)) {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < size; i++) {
+                    pstmt.setString(1, ":perf" + i + " ");
+                    pstmt.setString(2, expansionOf(i));
+                    pstmt.setString(3, Abbreviation.DEFAULT_CATEGORY);
+                    pstmt.setString(4, "");
+                    pstmt.setLong(5, now);
+                    pstmt.addBatch();
+                    if (i % 10_000 == 9_999) pstmt.executeBatch();
+                }
+                pstmt.executeBatch();
+            }
+            conn.commit();
+        }
+        AbbreviationsMain.reloadDictionary(); // The dictionary is shared by every frame in the JVM
+        seededDictionarySize = size;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static String expansionOf(int entry) {
+        return "expanded phrase " + entry;
+    }
+
+    private static String filler(int bytes) {
+        StringBuilder sb = new StringBuilder(bytes + PROSE.length());
+        while (sb.length() < bytes) sb.append(PROSE);
+        sb.setLength(bytes);
+        return sb.toString();
+    }
+
+    private static int[] sizes(String property, String defaults) {
+        return Arrays.stream(System.getProperty(property, defaults).split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).mapToInt(Integer::parseInt).toArray();
+    }
+}
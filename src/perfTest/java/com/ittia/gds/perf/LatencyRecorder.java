@@ -0,0 +1,81 @@
+package com.ittia.gds.perf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Collects latency samples for one workload and summarises them as a distribution.
+ */
+final class LatencyRecorder {
+
+    /** Percentiles in milliseconds. */
+    record Distribution(int count, double mean, double p50, double p90, double p99, double max) {
+
+        double get(String stat) {
+            return switch (stat) {
+                case "mean" -> mean;
+                case "p50" -> p50;
+                case "p90" -> p90;
+                case "p99" -> p99;
+                case "max" -> max;
+                default -> throw new IllegalArgumentException("Unknown statistic: " + stat);
+            };
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean %.2f ms, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    count, mean, p50, p90, p99, max);
+        }
+    }
+
+    private final String workload;
+    private long[] samples = new long[256]; // Nanoseconds
+    private int count;
+
+    LatencyRecorder(String workload) {
+        this.workload = workload;
+    }
+
+    String getWorkload() {
+        return workload;
+    }
+
+    void add(long nanos) {
+        if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+    }
+
+    Distribution distribution() {
+        if (count == 0) return new Distribution(0, 0, 0, 0, 0, 0);
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long s : sorted) total += s;
+        return new Distribution(count, total / 1e6 / count, percentile(sorted, 0.50),
+                percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[count - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))] / 1e6;
+    }
+
+    /** Appends the raw samples as "scenario,workload,micros" rows, for plotting outside the build. */
+    void appendCsv(Path file, String scenario) throws IOException {
+        Files.createDirectories(file.getParent());
+        boolean header = Files.notExists(file);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (header) out.write("scenario,workload,micros\n");
+            for (int i = 0; i < count; i++) {
+                out.write(scenario + ',' + workload + ',' + samples[i] / 1000 + '\n');
+            }
+        }
+    }
+}
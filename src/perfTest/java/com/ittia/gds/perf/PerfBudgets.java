@@ -0,0 +1,83 @@
+package com.ittia.gds.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Latency budgets from {@code perf-budgets.properties}, overridable with {@code perf.budget.*}
+ * system properties (the perfTest task forwards {@code -Pperf.*} Gradle properties).
+ * A budget keyed by note size, such as {@code typing.1048576.p99}, wins over the plain one.
+ * <p>
+ * With {@code -Pperf.calibrate} nothing is enforced; instead the worst p50 and p99 seen for each
+ * workload and note size, times {@code perf.calibrate.headroom} (2 by default), are written as a
+ * replacement for {@code perf-budgets.properties}.
+ */
+final class PerfBudgets {
+
+    private static final String[] STATS = { "mean", "p50", "p90", "p99", "max" };
+
+    private final Properties budgets = new Properties();
+    private final boolean calibrating = System.getProperty("perf.calibrate") != null;
+    private final Map<String, Double> worst = new TreeMap<>();
+
+    PerfBudgets() {
+        try (InputStream in = PerfBudgets.class.getResourceAsStream("/perf-budgets.properties")) {
+            if (in != null) budgets.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read perf-budgets.properties", e);
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("perf.budget.")) {
+                budgets.setProperty(name.substring("perf.budget.".length()), System.getProperty(name));
+            }
+        }
+    }
+
+    /** @return One message per statistic of the distribution that is over its budget. */
+    List<String> check(String scenario, String workload, int noteSize, LatencyRecorder.Distribution distribution) {
+        List<String> violations = new ArrayList<>();
+        if (distribution.count() == 0) return violations;
+        if (calibrating) {
+            for (String stat : new String[] { "p50", "p99" }) {
+                worst.merge(workload + "." + noteSize + "." + stat, distribution.get(stat), Math::max);
+            }
+            return violations;
+        }
+        for (String stat : STATS) {
+            String budget = budgets.getProperty(workload + "." + noteSize + "." + stat,
+                    budgets.getProperty(workload + "." + stat));
+            if (budget == null) continue;
+            double limit = Double.parseDouble(budget.trim());
+            double actual = distribution.get(stat);
+            if (actual > limit) {
+                violations.add(String.format("%s %s %s = %.2f ms, budget %.2f ms", scenario, workload, stat, actual, limit));
+            }
+        }
+        return violations;
+    }
+
+    /** Writes the calibrated budgets, rounded up to whole milliseconds, if this run is calibrating. */
+    void writeCalibrated(Path file) throws IOException {
+        if (!calibrating || worst.isEmpty()) return;
+        double headroom = Double.parseDouble(System.getProperty("perf.calibrate.headroom", "2"));
+        Files.createDirectories(file.getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("# Calibrated by gradle perfTest -Pperf.calibrate on " + System.getProperty("os.name") + ' '
+                    + System.getProperty("os.arch") + ", " + Runtime.getRuntime().availableProcessors()
+                    + " CPUs, headroom x" + headroom + "\n");
+            for (Map.Entry<String, Double> e : worst.entrySet()) {
+                out.write(e.getKey() + '=' + (long) Math.ceil(Math.max(1, e.getValue() * headroom)) + '\n');
+            }
+        }
+        System.out.println("Calibrated budgets written to " + file);
+    }
+}
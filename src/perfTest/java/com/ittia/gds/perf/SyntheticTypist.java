@@ -0,0 +1,123 @@
+package com.ittia.gds.perf;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.scene.Scene;
+import javafx.scene.control.TextInputControl;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+
+/**
+ * Types into a live scene the way a keyboard would, one key at a time, and times each input.
+ * Every key is dispatched as pressed/typed/released events to the target control, so the
+ * control's own behaviour inserts the text and every listener on the section runs as it does
+ * for a user. The latency of one input is the FX-thread time spent dispatching it plus the
+ * CSS and layout pass of the pulse that follows; the idle wait for that pulse is excluded so
+ * the numbers do not depend on the pulse timer. Painting is not included. The bytes the FX
+ * thread allocated over the same span are kept as {@link #getLastAllocatedBytes()}.
+ */
+final class SyntheticTypist {
+
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Scene scene;
+    private long layoutStart;
+    private LongConsumer pendingLayout; // Receives the next pulse's CSS+layout time; FX thread only
+    private volatile long lastAllocatedBytes;
+
+    /** Attaches to the scene; call on the FX thread. */
+    SyntheticTypist(Scene scene) {
+        this.scene = scene;
+        scene.addPreLayoutPulseListener(() -> layoutStart = System.nanoTime());
+        scene.addPostLayoutPulseListener(() -> {
+            LongConsumer pending = pendingLayout;
+            if (pending != null && layoutStart != 0) {
+                pendingLayout = null;
+                pending.accept(System.nanoTime() - layoutStart);
+            }
+        });
+    }
+
+    Scene getScene() {
+        return scene;
+    }
+
+    /** @return Bytes the FX thread allocated for the last timed input, through its layout pass. */
+    long getLastAllocatedBytes() {
+        return lastAllocatedBytes;
+    }
+
+    /** Types one character into the target and waits for the resulting frame. */
+    long type(TextInputControl target, char c) throws Exception {
+        return measure(() -> {
+            KeyCode code = keyCode(c);
+            String text = String.valueOf(c);
+            Event.fireEvent(target, key(KeyEvent.KEY_PRESSED, code, "", KeyEvent.CHAR_UNDEFINED));
+            if (code != KeyCode.ENTER) {
+                Event.fireEvent(target, key(KeyEvent.KEY_TYPED, KeyCode.UNDEFINED, text, text));
+            }
+            Event.fireEvent(target, key(KeyEvent.KEY_RELEASED, code, "", KeyEvent.CHAR_UNDEFINED));
+        });
+    }
+
+    /**
+     * Pastes text at the caret. This is what TextInputControl.paste() does once it has read the
+     * clipboard; the headless platform has no system clipboard to read from.
+     */
+    long paste(TextInputControl target, String text) throws Exception {
+        return measure(() -> target.replaceSelection(text));
+    }
+
+    /** Runs an action on the FX thread, untimed, and waits for it. */
+    void run(Runnable action) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                action.run();
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private long measure(Runnable input) throws Exception {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                long allocated = THREADS.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                input.run();
+                long handled = System.nanoTime() - start;
+                pendingLayout = layout -> {
+                    lastAllocatedBytes = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+                    done.complete(handled + layout);
+                };
+                Platform.requestNextPulse();
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        return done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static KeyEvent key(EventType<KeyEvent> type, KeyCode code, String text, String character) {
+        return new KeyEvent(type, character, text, code, false, false, false, false);
+    }
+
+    private static KeyCode keyCode(char c) {
+        if (c == '\n') return KeyCode.ENTER;
+        if (c == ' ') return KeyCode.SPACE;
+        KeyCode code = KeyCode.getKeyCode(String.valueOf(Character.toUpperCase(c)));
+        return code == null ? KeyCode.UNDEFINED : code;
+    }
+}
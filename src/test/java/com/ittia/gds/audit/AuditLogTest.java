@@ -0,0 +1,162 @@
+package com.ittia.gds.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Writing, rotation and group commit in {@link AuditLog}; torn-tail handling in {@link AuditLogScanner}. */
+class AuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsReadBackInOrderWithEveryField() throws Exception {
+        AuditLog log = new AuditLog(directory, "dr.kim");
+        log.record(AuditRecord.Type.EDIT, 2, "");
+        log.record(AuditRecord.Type.EXPANSION, 4, ":bp");
+        log.record(AuditRecord.Type.NOTE_SAVED, -1, "note 7 é");
+        log.record(AuditRecord.Type.NOTE_SUBMITTED, -1, null);
+        log.close();
+
+        List<AuditRecord> records = scan();
+        assertEquals(4, records.size());
+        assertEquals(new AuditRecord(records.get(1).timestamp(), AuditRecord.Type.EXPANSION, 4, "dr.kim", ":bp"),
+                records.get(1));
+        assertEquals(AuditRecord.Type.EDIT, records.get(0).type());
+        assertEquals(-1, records.get(2).section());
+        assertEquals("note 7 é", records.get(2).detail());
+        assertEquals("", records.get(3).detail());
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).timestamp() <= records.get(i).timestamp());
+        }
+    }
+
+    @Test
+    void segmentsRotateAndReopeningStartsANewOne() throws Exception {
+        AuditLog log = new AuditLog(directory, "user", 4096);
+        // Rotation happens between batches, so write in bursts the writer commits one at a time.
+        for (int burst = 0; burst < 20; burst++) {
+            long batches = log.batchesWritten();
+            for (int i = burst * 50; i < (burst + 1) * 50; i++) {
+                log.record(AuditRecord.Type.EDIT, i % 10, "edit " + i);
+            }
+            while (log.batchesWritten() == batches) {
+                Thread.sleep(1);
+            }
+        }
+        log.close();
+        int rotated = segments().size();
+        assertTrue(rotated > 3, rotated + " segments");
+
+        AuditLog reopened = new AuditLog(directory, "user", 4096);
+        reopened.record(AuditRecord.Type.NOTE_SAVED, -1, "after restart");
+        reopened.close();
+        assertEquals(rotated + 1, segments().size());
+
+        List<AuditRecord> records = scan();
+        assertEquals(1001, records.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("edit " + i, records.get(i).detail(), "segments are read in sequence order");
+        }
+        assertEquals("after restart", records.get(1000).detail());
+    }
+
+    @Test
+    void tornOrCorruptTailEndsTheSegmentButNotTheScan() throws Exception {
+        AuditLog log = new AuditLog(directory, "user");
+        for (int i = 0; i < 10; i++) {
+            log.record(AuditRecord.Type.EDIT, 0, "first " + i);
+        }
+        log.close();
+        AuditLog next = new AuditLog(directory, "user");
+        next.record(AuditRecord.Type.EDIT, 0, "second");
+        next.close();
+        Path first = segments().get(0);
+        long size = Files.size(first);
+
+        // A crash in the middle of the last record.
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        List<AuditRecord> records = scan();
+        assertEquals(10, records.size());
+        assertEquals("first 8", records.get(8).detail());
+        assertEquals("second", records.get(9).detail());
+
+        // A flipped bit in the body of the fifth record fails its CRC32C.
+        byte[] bytes = Files.readAllBytes(first);
+        int recordLength = (int) (size - AuditLog.HEADER_BYTES) / 10;
+        bytes[AuditLog.HEADER_BYTES + 4 * recordLength + 12] ^= 0x10;
+        Files.write(first, bytes);
+        records = scan();
+        assertEquals(5, records.size());
+        assertEquals("first 3", records.get(3).detail());
+        assertEquals("second", records.get(4).detail());
+    }
+
+    @Test
+    void concurrentRecordsAreGroupCommitted() throws Exception {
+        AuditLog log = new AuditLog(directory, "user");
+        int threads = 4;
+        int perThread = 5000;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int section = t;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    log.record(AuditRecord.Type.EDIT, section, Integer.toString(i));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        log.close();
+
+        List<AuditRecord> records = scan();
+        assertEquals(threads * perThread, records.size());
+        int[] nextPerSection = new int[threads];
+        for (AuditRecord r : records) {
+            assertEquals(Integer.toString(nextPerSection[r.section()]++), r.detail(), "each thread's records stay in order");
+        }
+        assertTrue(log.batchesWritten() < records.size() / 4, log.batchesWritten() + " batches for " + records.size());
+    }
+
+    @Test
+    void closeFlushesEverythingQueued() throws Exception {
+        AuditLog log = new AuditLog(directory, "user");
+        for (int i = 0; i < 50_000; i++) {
+            log.record(AuditRecord.Type.EDIT, 1, "x");
+        }
+        log.close();
+        assertEquals(50_000, scan().size());
+    }
+
+    private List<AuditRecord> scan() throws IOException {
+        List<AuditRecord> records = new ArrayList<>();
+        long count = AuditLogScanner.scan(directory, records::add);
+        assertEquals(records.size(), count);
+        return records;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.toString().endsWith(AuditLog.SUFFIX))
+                    .sorted((a, b) -> Long.compare(AuditLog.sequenceOf(a), AuditLog.sequenceOf(b))).toList();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ittia.gds.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The data key needs a configured password, survives reopening, and old keystores are moved out. */
+class DataKeyStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void keyIsCreatedOnceAndNeedsItsPassword() throws IOException {
+        Path file = root.resolve("home/.gds/keys/data.p12");
+        Path legacy = root.resolve("data/keys/data.p12");
+        SecretKey key = DataKeyStore.installationKey(file, legacy, "secret".toCharArray());
+        assertArrayEquals(key.getEncoded(), DataKeyStore.installationKey(file, legacy, "secret".toCharArray()).getEncoded());
+        assertThrows(IOException.class, () -> DataKeyStore.installationKey(file, legacy, "wrong".toCharArray()));
+        assertThrows(IOException.class, () -> DataKeyStore.installationKey(file, legacy, null));
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            assertEquals(List.of(file), files.toList(), "no password file is written");
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(file.getParent()));
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+        }
+    }
+
+    @Test
+    void keystoreWithAGeneratedPasswordIsMovedAndReprotected() throws IOException {
+        Path legacy = root.resolve("data/keys/data.p12");
+        Files.createDirectories(legacy.getParent());
+        Files.writeString(legacy.resolveSibling("data.p12.pass"), "generated\n", StandardCharsets.UTF_8);
+        SecretKey original = DataKeyStore.loadOrCreate(legacy, "generated".toCharArray(), DataKeyStore.DATA_KEY_ALIAS);
+
+        Path file = root.resolve("home/.gds/keys/data.p12");
+        SecretKey moved = DataKeyStore.installationKey(file, legacy, "configured".toCharArray());
+        assertArrayEquals(original.getEncoded(), moved.getEncoded());
+        assertFalse(Files.exists(legacy));
+        assertFalse(Files.exists(legacy.resolveSibling("data.p12.pass")));
+        assertArrayEquals(original.getEncoded(),
+                DataKeyStore.loadOrCreate(file, "configured".toCharArray(), DataKeyStore.DATA_KEY_ALIAS).getEncoded());
+    }
+
+    @Test
+    void keystoreUnderTheConfiguredPasswordIsMovedAsItIs() throws IOException {
+        Path legacy = root.resolve("data/keys/data.p12");
+        SecretKey original = DataKeyStore.loadOrCreate(legacy, "configured".toCharArray(), DataKeyStore.DATA_KEY_ALIAS);
+
+        Path file = root.resolve("home/.gds/keys/data.p12");
+        assertArrayEquals(original.getEncoded(),
+                DataKeyStore.installationKey(file, legacy, "configured".toCharArray()).getEncoded());
+        assertFalse(Files.exists(legacy));
+    }
+}
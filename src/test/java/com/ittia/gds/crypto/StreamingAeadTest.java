@@ -0,0 +1,198 @@
+package com.ittia.gds.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** Round trips and tampering for {@link StreamingAead}; small chunks keep multi-chunk files small. */
+class StreamingAeadTest {
+
+    private static final int SMALL_CHUNK = 64;
+    private static final int HEADER_BYTES = 17;
+    private static final int TAG_BYTES = 16;
+    private static final int LAST_CHUNK = 5;
+
+    private static final SecretKeySpec KEY = new SecretKeySpec(new byte[32], "AES");
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, StreamingAead.CHUNK_SIZE - 1, StreamingAead.CHUNK_SIZE, StreamingAead.CHUNK_SIZE + 1,
+            3 * StreamingAead.CHUNK_SIZE })
+    void roundTripsAtChunkBoundaries(int size) throws IOException {
+        StreamingAead cipher = new StreamingAead(KEY);
+        byte[] plain = random(size);
+
+        byte[] sealed = cipher.encrypt(plain);
+        assertTrue(StreamingAead.isEncrypted(sealed));
+        assertArrayEquals(plain, cipher.decrypt(sealed));
+
+        Path file = write(cipher, plain);
+        try (InputStream in = cipher.newInputStream(file)) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+        try (StreamingAead.RandomAccessReader reader = cipher.openRandomAccess(file)) {
+            assertEquals(size, reader.size());
+            assertEquals(Math.max(1, (size + StreamingAead.CHUNK_SIZE - 1) / StreamingAead.CHUNK_SIZE),
+                    reader.getChunkCount());
+        }
+    }
+
+    @Test
+    void byteAtATimeWritesMatchBulkWrites() throws IOException {
+        StreamingAead cipher = new StreamingAead(KEY, SMALL_CHUNK);
+        byte[] plain = random(5 * SMALL_CHUNK + 7);
+        Path file = directory.resolve("bytes");
+        try (OutputStream out = cipher.newOutputStream(file)) {
+            for (byte b : plain) out.write(b);
+        }
+        try (InputStream in = cipher.newInputStream(file)) {
+            for (byte b : plain) assertEquals(b & 0xFF, in.read());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "GDE", "not encrypted" })
+    void unencryptedDataIsRefused(String text) throws IOException {
+        StreamingAead cipher = new StreamingAead(KEY);
+        Path file = directory.resolve("plain");
+        Files.write(file, text.getBytes());
+        assertFalse(StreamingAead.isEncrypted(file));
+        assertThrows(IOException.class, () -> cipher.newInputStream(file).close());
+        assertThrows(IOException.class, () -> cipher.openRandomAccess(file).close());
+        assertThrows(IOException.class, () -> cipher.decrypt(text.getBytes()));
+    }
+
+    @Test
+    void randomAccessReadsMatchTheStream() throws IOException {
+        StreamingAead cipher = new StreamingAead(KEY, SMALL_CHUNK);
+        byte[] plain = random(10 * SMALL_CHUNK + 13);
+        Path file = write(cipher, plain);
+        byte[] streamed;
+        try (InputStream in = cipher.newInputStream(file)) {
+            streamed = in.readAllBytes();
+        }
+        assertArrayEquals(plain, streamed);
+
+        Random random = new Random(7);
+        try (StreamingAead.RandomAccessReader reader = cipher.openRandomAccess(file)) {
+            assertEquals(plain.length, reader.size());
+            assertEquals(-1, reader.read(plain.length, new byte[1], 0, 1));
+            for (int i = 0; i < 500; i++) {
+                int position = random.nextInt(plain.length);
+                int length = random.nextInt(3 * SMALL_CHUNK);
+                byte[] dst = new byte[length + 2];
+                int n = reader.read(position, dst, 1, length);
+                assertEquals(Math.min(length, plain.length - position), n);
+                assertArrayEquals(Arrays.copyOfRange(streamed, position, position + n), Arrays.copyOfRange(dst, 1, 1 + n));
+            }
+            for (long c = 0; c < reader.getChunkCount(); c++) {
+                int from = (int) c * SMALL_CHUNK;
+                assertArrayEquals(Arrays.copyOfRange(streamed, from, Math.min(plain.length, from + SMALL_CHUNK)),
+                        reader.readChunk(c));
+            }
+        }
+    }
+
+    @Test
+    void flippedBitFails() throws IOException {
+        byte[] sealed = sealed(4);
+        // Including the header: a damaged magic number is refused, not read as unencrypted data.
+        for (int i = 0; i < sealed.length; i += 7) {
+            byte[] tampered = sealed.clone();
+            tampered[i] ^= 0x10;
+            assertTampered(tampered);
+        }
+    }
+
+    @Test
+    void droppedLastChunkFails() throws IOException {
+        byte[] sealed = sealed(4);
+        assertTampered(Arrays.copyOf(sealed, sealed.length - (LAST_CHUNK + TAG_BYTES)));
+    }
+
+    @Test
+    void truncatedChunkFails() throws IOException {
+        byte[] sealed = sealed(4);
+        assertTampered(Arrays.copyOf(sealed, sealed.length - 1));
+    }
+
+    @Test
+    void swappedChunksFail() throws IOException {
+        byte[] sealed = sealed(4);
+        int full = SMALL_CHUNK + TAG_BYTES;
+        byte[] swapped = sealed.clone();
+        System.arraycopy(sealed, HEADER_BYTES, swapped, HEADER_BYTES + full, full);
+        System.arraycopy(sealed, HEADER_BYTES + full, swapped, HEADER_BYTES, full);
+        assertTampered(swapped);
+    }
+
+    @Test
+    void appendedChunkFails() throws IOException {
+        byte[] sealed = sealed(4);
+        int full = SMALL_CHUNK + TAG_BYTES;
+        byte[] appended = Arrays.copyOf(sealed, sealed.length + full);
+        System.arraycopy(sealed, HEADER_BYTES, appended, sealed.length, full);
+        assertTampered(appended);
+    }
+
+    @Test
+    void chunkFromAnotherFileFails() throws IOException {
+        byte[] first = sealed(4);
+        byte[] second = sealed(4);
+        byte[] mixed = first.clone();
+        System.arraycopy(second, HEADER_BYTES, mixed, HEADER_BYTES, SMALL_CHUNK + TAG_BYTES);
+        assertTampered(mixed);
+    }
+
+    /** @return A file of {@code chunks} full chunks plus a short last one. */
+    private byte[] sealed(int chunks) throws IOException {
+        return new StreamingAead(KEY, SMALL_CHUNK).encrypt(random(chunks * SMALL_CHUNK + LAST_CHUNK));
+    }
+
+    // Every read path has to notice, not just the whole-file one.
+    private void assertTampered(byte[] sealed) throws IOException {
+        StreamingAead cipher = new StreamingAead(KEY, SMALL_CHUNK);
+        assertThrows(IOException.class, () -> cipher.decrypt(sealed));
+        Path file = directory.resolve("tampered");
+        Files.write(file, sealed);
+        assertThrows(IOException.class, () -> {
+            try (StreamingAead.RandomAccessReader reader = cipher.openRandomAccess(file)) {
+                for (long c = 0; c < reader.getChunkCount(); c++) reader.readChunk(c);
+            }
+        });
+    }
+
+    private Path write(StreamingAead cipher, byte[] plain) throws IOException {
+        Path file = directory.resolve("file");
+        try (OutputStream out = cipher.newOutputStream(file)) {
+            out.write(plain);
+        }
+        return file;
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
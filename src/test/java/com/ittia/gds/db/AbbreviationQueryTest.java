@@ -0,0 +1,98 @@
+package com.ittia.gds.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.ui.model.Abbreviation;
+
+/** The manager's find box matches any part of the key or value, ignoring case, as it always has. */
+class AbbreviationQueryTest {
+
+    @TempDir
+    Path root;
+
+    private Connection conn;
+
+    @BeforeEach
+    void open() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + root.resolve("abbreviations.db"));
+        SchemaMigrator.migrate(conn);
+        insert(":HTN ", "Hypertension", "Cardiology", "kim", 3000, 1);
+        insert(":dm ", "Diabetes mellitus", "Endocrine", "lee", 1000, 9);
+        insert(":bp ", "BP {1}/{2} mmHg", "Cardiology", "lee", 2000, 4);
+        insert(":pct_ ", "100% adherence", "General", "kim", 4000, 0);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void textMatchesAnyPartOfTheKeyIgnoringCase() throws SQLException {
+        assertEquals(List.of(":HTN "), keys(find("htn")));
+        assertEquals(List.of(":HTN "), keys(find("Tn")));
+        assertEquals(List.of(":dm "), keys(find("m ")));
+    }
+
+    @Test
+    void textMatchesAnyPartOfTheValueIgnoringCase() throws SQLException {
+        assertEquals(List.of(":dm "), keys(find("MELLITUS")));
+        assertEquals(List.of(":HTN "), keys(find("tension")));
+    }
+
+    @Test
+    void wildcardsAreLiteral() throws SQLException {
+        assertEquals(List.of(":pct_ "), keys(find("%")));
+        assertEquals(List.of(":pct_ "), keys(find("_")));
+    }
+
+    @Test
+    void emptyTextMatchesEverything() throws SQLException {
+        assertEquals(4, find("").size());
+        assertEquals(4, find(null).size());
+    }
+
+    @Test
+    void filtersSortAndLimitCombine() throws SQLException {
+        assertEquals(List.of(":HTN ", ":bp "), keys(AbbreviationQuery.find(conn, "Cardiology", null, null,
+                DatabaseManager.SortOrder.RECENTLY_UPDATED, 10)));
+        assertEquals(List.of(":dm ", ":bp "), keys(AbbreviationQuery.find(conn, null, "lee", null,
+                DatabaseManager.SortOrder.MOST_USED, 10)));
+        assertEquals(List.of(":dm "), keys(AbbreviationQuery.find(conn, null, null, "m",
+                DatabaseManager.SortOrder.MOST_USED, 1)));
+    }
+
+    private List<Abbreviation> find(String text) throws SQLException {
+        return AbbreviationQuery.find(conn, null, null, text, DatabaseManager.SortOrder.KEY, 100);
+    }
+
+    private static List<String> keys(List<Abbreviation> rows) {
+        return rows.stream().map(Abbreviation::getKey).toList();
+    }
+
+    private void insert(String key, String value, String category, String owner, long updatedAt, int uses)
+            throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO abbreviations (key, value, category, owner, updated_at, usage_count) VALUES (?, ?, ?, ?, ?, ?)")) {
+            pstmt.setString(1, key);
+            pstmt.setString(2, value);
+            pstmt.setString(3, category);
+            pstmt.setString(4, owner);
+            pstmt.setLong(5, updatedAt);
+            pstmt.setInt(6, uses);
+            pstmt.executeUpdate();
+        }
+    }
+}
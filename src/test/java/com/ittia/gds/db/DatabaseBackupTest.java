@@ -0,0 +1,228 @@
+package com.ittia.gds.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/** Backups are verifiable, restore the dictionary as it was, and only the newest generations stay. */
+class DatabaseBackupTest {
+
+    @TempDir
+    Path root;
+
+    private Path database;
+    private Path rescue;
+    private final StreamingAead cipher = new StreamingAead(new SecretKeySpec(new byte[32], "AES"));
+    private final List<DatabaseBackup> opened = new ArrayList<>();
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        database = Files.createDirectories(root.resolve("db")).resolve("abbreviations.db");
+        rescue = root.resolve("rescue");
+        execute("CREATE TABLE abbreviations (key TEXT PRIMARY KEY, value TEXT)");
+        for (int i = 0; i < 2000; i++) {
+            execute("INSERT INTO abbreviations VALUES (':k" + i + "', 'value " + i + "')");
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        opened.forEach(DatabaseBackup::shutdown);
+    }
+
+    @Test
+    void backupIsAVerifiedCopy() throws Exception {
+        DatabaseBackup backup = open(10, null);
+        Path generation = backup.backupAsync(fraction -> { }).get(30, TimeUnit.SECONDS);
+        assertTrue(generation.getFileName().toString().matches("abbreviations-\\d{8}-\\d{6}-\\d{3}\\.db"));
+        assertTrue(backup.verify(generation));
+        assertEquals(2000, count(generation));
+
+        String sidecar = Files.readString(generation.resolveSibling(generation.getFileName() + ".sha256"));
+        assertTrue(sidecar.matches("[0-9a-f]{64}  " + generation.getFileName() + "\n"), sidecar);
+
+        byte[] bytes = Files.readAllBytes(generation);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(generation, bytes);
+        assertFalse(backup.verify(generation));
+        Files.delete(generation.resolveSibling(generation.getFileName() + ".sha256"));
+        assertFalse(backup.verify(generation));
+    }
+
+    @Test
+    void encryptedBackupLeavesNoPlaintextBehind() throws Exception {
+        DatabaseBackup backup = open(10, cipher);
+        Path generation = backup.backupAsync(fraction -> { }).get(30, TimeUnit.SECONDS);
+        assertTrue(generation.getFileName().toString().endsWith(".db.gde"));
+        assertTrue(StreamingAead.isEncrypted(generation));
+        assertTrue(backup.verify(generation));
+        assertFalse(new String(Files.readAllBytes(generation), StandardCharsets.ISO_8859_1).contains("value 1"));
+        assertEquals(List.of(generation.getFileName().toString(), generation.getFileName() + ".sha256"), names(rescue));
+        assertEquals(List.of("abbreviations.db"), names(database.getParent()), "the plaintext snapshot is removed");
+    }
+
+    @Test
+    void restoreBringsTheGenerationBackAndKeepsTheCurrentDatabase() throws Exception {
+        DatabaseBackup backup = open(10, cipher);
+        Path generation = backup.backupAsync(fraction -> { }).get(30, TimeUnit.SECONDS);
+        execute("DELETE FROM abbreviations WHERE key <> ':k1'");
+        assertEquals(1, count(database));
+
+        List<Double> progress = new ArrayList<>();
+        backup.restoreAsync(generation, progress::add).get(30, TimeUnit.SECONDS);
+        assertEquals(2000, count(database));
+        assertEquals(1.0, progress.get(progress.size() - 1));
+
+        List<Path> generations = backup.listGenerations();
+        assertEquals(2, generations.size(), "the database as it was before the restore is kept too");
+        assertEquals(generation, generations.get(1));
+        assertEquals(List.of("abbreviations.db"), names(database.getParent()));
+    }
+
+    @Test
+    void generationsTakenBeforeEncryptionAreEncryptedOnceThenRefused() throws Exception {
+        DatabaseBackup plain = open(10, null);
+        Path generation = plain.backupAsync(fraction -> { }).get(30, TimeUnit.SECONDS);
+        plain.shutdown();
+        byte[] plainBytes = Files.readAllBytes(generation);
+        FileTime taken = Files.getLastModifiedTime(generation);
+
+        DatabaseBackup backup = open(10, cipher);
+        Path encrypted = generation.resolveSibling(generation.getFileName() + ".gde");
+        assertEquals(List.of(encrypted), backup.listGenerations());
+        assertEquals(List.of(encrypted.getFileName().toString(), encrypted.getFileName() + ".sha256"), names(rescue));
+        assertTrue(StreamingAead.isEncrypted(encrypted));
+        assertTrue(backup.verify(encrypted));
+        assertEquals(taken, Files.getLastModifiedTime(encrypted), "still counts as taken when it was");
+
+        execute("DELETE FROM abbreviations");
+        backup.restoreAsync(encrypted, fraction -> { }).get(30, TimeUnit.SECONDS);
+        assertEquals(2000, count(database));
+
+        // An unencrypted generation appearing later, with a valid checksum, is still refused.
+        Files.write(generation, plainBytes);
+        Files.writeString(generation.resolveSibling(generation.getFileName() + ".sha256"),
+                sha256(generation) + "  " + generation.getFileName() + "\n");
+        assertTrue(backup.verify(generation));
+        execute("DELETE FROM abbreviations");
+        assertThrows(ExecutionException.class,
+                () -> backup.restoreAsync(generation, fraction -> { }).get(30, TimeUnit.SECONDS));
+        assertEquals(0, count(database));
+    }
+
+    @Test
+    void tamperedGenerationIsNotRestored() throws Exception {
+        DatabaseBackup backup = open(10, cipher);
+        Path generation = backup.backupAsync(fraction -> { }).get(30, TimeUnit.SECONDS);
+        execute("DELETE FROM abbreviations");
+        byte[] bytes = Files.readAllBytes(generation);
+        bytes[100] ^= 1;
+        Files.write(generation, bytes);
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> backup.restoreAsync(generation, fraction -> { }).get(30, TimeUnit.SECONDS));
+        assertTrue(failure.getCause().getMessage().contains("Checksum mismatch"), failure.getCause().getMessage());
+        assertEquals(0, count(database));
+    }
+
+    @Test
+    void onlyTheNewestGenerationsAreRetained() throws Exception {
+        DatabaseBackup backup = open(3, cipher);
+        List<Path> taken = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            taken.add(backup.backupAsync(fraction -> { }).get(30, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(taken.get(4), taken.get(3), taken.get(2)), backup.listGenerations());
+        assertEquals(6, names(rescue).size(), "pruned generations take their checksums with them");
+    }
+
+    @Test
+    void overlappingBackupsAndRestoresRunOneAtATime() throws Exception {
+        DatabaseBackup backup = open(10, cipher);
+        Path first = backup.backupAsync(fraction -> { }).get(30, TimeUnit.SECONDS);
+        List<CompletableFuture<?>> work = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            work.add(backup.backupAsync(fraction -> { }));
+            work.add(backup.restoreAsync(first, fraction -> { }));
+        }
+        CompletableFuture.allOf(work.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+        for (Path generation : backup.listGenerations()) {
+            assertTrue(backup.verify(generation), generation.getFileName().toString());
+        }
+        assertEquals(2000, count(database));
+        assertEquals(List.of("abbreviations.db"), names(database.getParent()));
+    }
+
+    @Test
+    void scheduledBackupSkipsAnUnchangedDatabase() throws Exception {
+        DatabaseBackup backup = open(10, cipher);
+        backup.schedule(0, 20, TimeUnit.MILLISECONDS);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (backup.listGenerations().isEmpty()) {
+            assertFalse(System.currentTimeMillis() > deadline, "no scheduled backup");
+            Thread.sleep(10);
+        }
+        Thread.sleep(300);
+        assertEquals(1, backup.listGenerations().size());
+    }
+
+    private DatabaseBackup open(int generations, StreamingAead cipher) throws IOException {
+        DatabaseBackup backup = new DatabaseBackup(database, rescue, generations, cipher);
+        opened.add(backup);
+        return backup;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private static int count(Path file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM abbreviations")) {
+            return rs.getInt(1);
+        }
+    }
+
+    private static String sha256(Path file) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+    }
+
+    private static List<String> names(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+}
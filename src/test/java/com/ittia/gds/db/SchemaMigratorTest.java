@@ -0,0 +1,118 @@
+package com.ittia.gds.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Upgrades from the unversioned dictionary, fresh databases, and re-runs on a migrated one. */
+class SchemaMigratorTest {
+
+    @TempDir
+    Path root;
+
+    private Connection conn;
+
+    @BeforeEach
+    void open() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + root.resolve("abbreviations.db"));
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void unversionedDictionaryIsUpgradedInPlace() throws SQLException {
+        // The layout every install had before migrations existed, at user_version 0
+        execute("CREATE TABLE abbreviations (key TEXT PRIMARY KEY, value TEXT NOT NULL)");
+        execute("INSERT INTO abbreviations VALUES (':htn ', 'Hypertension'), (':dm ', 'Diabetes mellitus')");
+        assertEquals(0, SchemaMigrator.userVersion(conn));
+
+        assertEquals(SchemaMigrator.LATEST_VERSION, SchemaMigrator.migrate(conn));
+
+        assertEquals(SchemaMigrator.LATEST_VERSION, SchemaMigrator.userVersion(conn));
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT value, category, owner, updated_at, usage_count FROM abbreviations WHERE key = ':htn '")) {
+            assertTrue(rs.next());
+            assertEquals("Hypertension", rs.getString(1));
+            assertEquals("General", rs.getString(2));
+            assertEquals("", rs.getString(3));
+            assertTrue(rs.getLong(4) > 0, "existing rows are stamped with the upgrade time");
+            assertEquals(0, rs.getInt(5));
+        }
+        assertEquals(2, count());
+        assertTrue(indexes().containsAll(Set.of("idx_abbreviations_category", "idx_abbreviations_owner",
+                "idx_abbreviations_updated", "idx_abbreviations_usage")));
+    }
+
+    @Test
+    void emptyDatabaseGetsTheWholeSchema() throws SQLException {
+        assertEquals(SchemaMigrator.LATEST_VERSION, SchemaMigrator.migrate(conn));
+        execute("INSERT INTO abbreviations (key, value) VALUES (':x ', 'y')");
+        assertEquals(1, count());
+    }
+
+    @Test
+    void rerunningOnAMigratedDatabaseChangesNothing() throws SQLException {
+        SchemaMigrator.migrate(conn);
+        execute("INSERT INTO abbreviations (key, value, updated_at, usage_count) VALUES (':x ', 'y', 42, 7)");
+
+        assertEquals(0, SchemaMigrator.migrate(conn));
+
+        assertEquals(SchemaMigrator.LATEST_VERSION, SchemaMigrator.userVersion(conn));
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT updated_at, usage_count FROM abbreviations")) {
+            assertTrue(rs.next());
+            assertEquals(42, rs.getLong(1));
+            assertEquals(7, rs.getInt(2));
+        }
+        assertTrue(conn.getAutoCommit(), "the caller's auto-commit mode is restored");
+    }
+
+    @Test
+    void newerSchemaIsRefused() throws SQLException {
+        execute("PRAGMA user_version = " + (SchemaMigrator.LATEST_VERSION + 1));
+        assertThrows(SQLException.class, () -> SchemaMigrator.migrate(conn));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private int count() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM abbreviations")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private Set<String> indexes() throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index'")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,53 @@
+package com.ittia.gds.instance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Command hand-off between launches, and the private directory the socket is bound in. */
+class SingleInstanceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void socketIsBoundInADirectoryOnlyItsOwnerCanEnter() throws IOException {
+        Path socket = dir.resolve("run").resolve("instance.sock");
+        List<String> received = new CopyOnWriteArrayList<>();
+        try (SingleInstance instance = SingleInstance.listen(socket, received::add)) {
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket.getParent())));
+            assertTrue(SingleInstance.sendToRunning(socket, SingleInstance.OPEN_EMR));
+            assertEquals(List.of(SingleInstance.OPEN_EMR), received);
+            assertNull(SingleInstance.listen(socket, received::add)); // Already owned by a live instance
+        }
+        assertFalse(Files.exists(socket));
+        assertFalse(SingleInstance.sendToRunning(socket, SingleInstance.OPEN_EMR));
+    }
+
+    @Test
+    void anExistingDirectoryIsTightenedBeforeBinding() throws IOException {
+        Path run = Files.createDirectory(dir.resolve("run"));
+        Files.setPosixFilePermissions(run, PosixFilePermissions.fromString("rwxrwxrwx"));
+        try (SingleInstance instance = SingleInstance.listen(run.resolve("instance.sock"), command -> {})) {
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(run)));
+        }
+    }
+
+    @Test
+    void aFileInPlaceOfTheDirectoryIsRefused() throws IOException {
+        Path run = Files.createFile(dir.resolve("run"));
+        assertThrows(IOException.class, () -> SingleInstance.listen(run.resolve("instance.sock"), command -> {}));
+    }
+}
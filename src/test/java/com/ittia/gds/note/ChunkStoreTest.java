@@ -0,0 +1,121 @@
+package com.ittia.gds.note;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/** Content addressing: identical content is stored once and read back verified. */
+class ChunkStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final StreamingAead cipher = new StreamingAead(new SecretKeySpec(new byte[32], "AES"));
+
+    @Test
+    void identicalContentIsStoredOnce() throws Exception {
+        ChunkStore store = new ChunkStore(directory);
+        byte[] content = "levothyroxine 50 mcg daily".getBytes(StandardCharsets.UTF_8);
+        byte[] hash = ChunkStore.hash(content);
+        assertTrue(store.putIfAbsent(hash, content));
+        assertFalse(store.putIfAbsent(hash, content.clone()));
+        assertEquals(1, files().size());
+
+        String hex = HexFormat.of().formatHex(hash);
+        assertEquals(directory.resolve(hex.substring(0, 2)).resolve(hex.substring(2)), files().get(0));
+        assertArrayEquals(content, store.get(hash));
+    }
+
+    @Test
+    void encryptedChunksHideContentAndAddress() throws Exception {
+        ChunkStore store = new ChunkStore(directory, cipher);
+        byte[] content = "patient reports levothyroxine side effects".getBytes(StandardCharsets.UTF_8);
+        byte[] hash = ChunkStore.hash(content);
+        assertTrue(store.putIfAbsent(hash, content));
+        assertFalse(store.putIfAbsent(hash, content));
+
+        Path file = files().get(0);
+        String hex = HexFormat.of().formatHex(hash);
+        assertNotEquals(directory.resolve(hex.substring(0, 2)).resolve(hex.substring(2)), file);
+        assertTrue(StreamingAead.isEncrypted(file));
+        assertFalse(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1).contains("levothyroxine"));
+        assertArrayEquals(content, store.get(hash));
+        assertArrayEquals(content, new ChunkStore(directory, cipher).get(hash), "found again after reopening");
+    }
+
+    @Test
+    void largeAndEmptyContentRoundTrip() throws Exception {
+        ChunkStore store = new ChunkStore(directory, cipher);
+        byte[] random = new byte[300_000];
+        new Random(1).nextBytes(random); // Incompressible, and larger than one cipher chunk
+        byte[] repetitive = "normal exam\n".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+        for (byte[] content : List.of(random, repetitive, new byte[0])) {
+            byte[] hash = ChunkStore.hash(content);
+            store.putIfAbsent(hash, content);
+            assertArrayEquals(content, store.get(hash));
+        }
+    }
+
+    @Test
+    void missingOrSwappedChunksAreRejected() throws Exception {
+        ChunkStore store = new ChunkStore(directory, cipher);
+        byte[] a = "first".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "second".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> store.get(ChunkStore.hash(a)));
+
+        store.putIfAbsent(ChunkStore.hash(a), a);
+        store.putIfAbsent(ChunkStore.hash(b), b);
+        List<Path> chunks = files();
+        byte[] first = Files.readAllBytes(chunks.get(0));
+        Files.write(chunks.get(0), Files.readAllBytes(chunks.get(1)));
+        Files.write(chunks.get(1), first);
+        assertThrows(IOException.class, () -> store.get(ChunkStore.hash(a)));
+        assertThrows(IOException.class, () -> store.get(ChunkStore.hash(b)));
+    }
+
+    @Test
+    void unencryptedChunksAreConvertedOnceAndRefusedAfter() throws Exception {
+        byte[] content = "carried over from before encryption".getBytes(StandardCharsets.UTF_8);
+        byte[] hash = ChunkStore.hash(content);
+        new ChunkStore(directory).putIfAbsent(hash, content);
+        Path plain = files().get(0);
+        byte[] plainBytes = Files.readAllBytes(plain);
+
+        ChunkStore store = new ChunkStore(directory, cipher);
+        assertThrows(IOException.class, () -> store.get(hash), "not found under its plain name");
+        assertEquals(1, store.encryptPlainChunks());
+        assertEquals(0, store.encryptPlainChunks());
+        assertFalse(Files.exists(plain));
+        assertTrue(StreamingAead.isEncrypted(files().get(0)));
+        assertArrayEquals(content, store.get(hash));
+
+        // An unencrypted file under the encrypted chunk's name is refused, not read.
+        Files.write(files().get(0), plainBytes);
+        assertThrows(IOException.class, () -> store.get(hash));
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ittia.gds.note;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/** Manifests round-trip through save and load, and unchanged sections are stored once. */
+class NoteStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final StreamingAead cipher = new StreamingAead(new SecretKeySpec(new byte[32], "AES"));
+
+    @Test
+    void savedNotesLoadBackSectionForSection() throws Exception {
+        NoteStore store = new NoteStore(directory, cipher);
+        assertNull(store.loadLatestAsync().get(5, TimeUnit.SECONDS));
+
+        String[] first = { "fatigue", "", "levothyroxine 50 mcg\nrecheck TSH", null };
+        NoteStore.SavedNote saved = store.saveAsync(first).get(5, TimeUnit.SECONDS);
+        first[0] = "changed after saving"; // The store copied the array
+        assertEquals(1, saved.id());
+        assertEquals(2, saved.newChunks());
+
+        NoteStore.SavedNote loaded = store.loadAsync(1).get(5, TimeUnit.SECONDS);
+        assertArrayEquals(new String[] { "fatigue", "", "levothyroxine 50 mcg\nrecheck TSH", "" }, loaded.sections());
+        assertEquals(saved.savedAt(), loaded.savedAt());
+        store.shutdown();
+
+        NoteStore reopened = new NoteStore(directory, cipher);
+        assertEquals(1, reopened.getLastId());
+        assertEquals("fatigue", reopened.loadLatestAsync().get(5, TimeUnit.SECONDS).sections()[0]);
+        assertEquals(2, reopened.saveAsync(new String[] { "next visit" }).get(5, TimeUnit.SECONDS).id());
+        reopened.shutdown();
+    }
+
+    @Test
+    void sectionsCarriedForwardAreStoredOnce() throws Exception {
+        NoteStore store = new NoteStore(directory, cipher);
+        String history = "long past history\n".repeat(200);
+        assertEquals(2, store.saveAsync(new String[] { "visit one", history }).get(5, TimeUnit.SECONDS).newChunks());
+        assertEquals(1, store.saveAsync(new String[] { "visit two", history }).get(5, TimeUnit.SECONDS).newChunks());
+        assertEquals(0, store.saveAsync(new String[] { "visit two", history }).get(5, TimeUnit.SECONDS).newChunks());
+        assertEquals(3, chunkFiles().size());
+        assertEquals(history, store.load(1).sections()[1]);
+        assertEquals(history, store.load(3).sections()[1]);
+        store.shutdown();
+    }
+
+    @Test
+    void listenersAndReplaySeeNotesInOrder() throws Exception {
+        NoteStore store = new NoteStore(directory, cipher);
+        List<Integer> heard = new CopyOnWriteArrayList<>();
+        store.addSaveListener(note -> heard.add(note.id()));
+        store.addSaveListener(note -> {
+            throw new IllegalStateException("A failing listener does not fail the save");
+        });
+        for (int i = 0; i < 5; i++) {
+            store.saveAsync(new String[] { "note " + i });
+        }
+        List<String> replayed = new ArrayList<>();
+        store.replayAsync(2, note -> replayed.add(note.sections()[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 2, 3, 4, 5), heard);
+        assertEquals(List.of("note 2", "note 3", "note 4"), replayed);
+        store.shutdown();
+    }
+
+    @Test
+    void shutdownWaitsForQueuedSaves() throws Exception {
+        NoteStore store = new NoteStore(directory, cipher);
+        List<CompletableFuture<NoteStore.SavedNote>> saves = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            saves.add(store.saveAsync(new String[] { "section " + i, ("text " + i + "\n").repeat(2000) }));
+        }
+        store.shutdown();
+        for (CompletableFuture<NoteStore.SavedNote> save : saves) {
+            assertTrue(save.isDone() && !save.isCompletedExceptionally());
+        }
+        assertEquals(50, new NoteStore(directory, cipher).getLastId());
+    }
+
+    @Test
+    void missingAndForeignNotesAreRejected() throws Exception {
+        NoteStore store = new NoteStore(directory, cipher);
+        assertThrows(IOException.class, () -> store.load(1));
+        store.saveAsync(new String[] { "a" }).get(5, TimeUnit.SECONDS);
+        try (Stream<Path> files = Files.list(directory)) {
+            Path note = files.filter(p -> p.toString().endsWith(".gdn")).findFirst().orElseThrow();
+            Files.write(note, cipher.encrypt(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 }));
+        }
+        assertThrows(IOException.class, () -> store.load(1));
+        store.shutdown();
+    }
+
+    @Test
+    void notesSavedBeforeEncryptionAreEncryptedOnceThenRefused() throws Exception {
+        NoteStore plain = new NoteStore(directory);
+        plain.saveAsync(new String[] { "saved before", "the key existed" }).get(5, TimeUnit.SECONDS);
+        plain.shutdown();
+        Path note;
+        try (Stream<Path> files = Files.list(directory)) {
+            note = files.filter(p -> p.toString().endsWith(".gdn")).findFirst().orElseThrow();
+        }
+        byte[] plainNote = Files.readAllBytes(note);
+
+        NoteStore store = new NoteStore(directory, cipher);
+        assertArrayEquals(new String[] { "saved before", "the key existed" }, store.load(1).sections());
+        assertTrue(StreamingAead.isEncrypted(note));
+        for (Path chunk : chunkFiles()) {
+            assertTrue(StreamingAead.isEncrypted(chunk), chunk.toString());
+        }
+        store.shutdown();
+
+        // Written unencrypted after the migration, e.g. by a copy running without the key.
+        Files.write(note, plainNote);
+        NoteStore reopened = new NoteStore(directory, cipher);
+        assertThrows(IOException.class, () -> reopened.load(1));
+        reopened.shutdown();
+    }
+
+    private List<Path> chunkFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.resolve("chunks"))) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ittia.gds.note.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/** Indexing, merging and reopening, with and without encrypted segments. */
+class NoteIndexTest {
+
+    private static final String[] TITLES = { "CC>", "PI>" };
+    private static final String SECRET_TERM = "levothyroxine";
+    // Terms every note shares, so the merged postings span several 64 KB chunks.
+    private static final int SHARED_TERMS = 4000;
+
+    @TempDir
+    Path directory;
+
+    private final StreamingAead cipher = new StreamingAead(new SecretKeySpec(new byte[32], "AES"));
+
+    @Test
+    void encryptedSegmentsAreSearchableAndMergedWithoutPlaintextTerms() throws Exception {
+        NoteIndex index = new NoteIndex(directory, TITLES, cipher);
+        for (int id = 1; id <= 8; id++) {
+            index.addNoteAsync(id, note(id));
+        }
+        // Eight single-note segments fill a tier and merge into one.
+        await(() -> index.getMaxIndexedId() == 8 && manifest().size() == 1);
+        assertTrue(Files.size(directory.resolve(manifest().get(0))) > 2 * 64 * 1024);
+        assertSearches(index);
+        index.shutdown();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(p -> p.toString().endsWith(".idx")).toList()) {
+                assertTrue(StreamingAead.isEncrypted(file));
+                String raw = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+                assertFalse(raw.contains(SECRET_TERM), "term readable in " + file.getFileName());
+            }
+        }
+
+        NoteIndex reopened = new NoteIndex(directory, TITLES, cipher);
+        assertEquals(8, reopened.getMaxIndexedId());
+        assertSearches(reopened);
+        reopened.shutdown();
+    }
+
+    @Test
+    void unencryptedIndexIsDiscardedWhenOpenedWithCipher() throws Exception {
+        NoteIndex plain = new NoteIndex(directory, TITLES);
+        plain.addNoteAsync(1, note(3));
+        await(() -> plain.getMaxIndexedId() == 1);
+        assertEquals(List.of(1), plain.search(SECRET_TERM, 10));
+        plain.shutdown();
+
+        NoteIndex encrypted = new NoteIndex(directory, TITLES, cipher);
+        assertEquals(0, encrypted.getMaxIndexedId(), "rebuilt from the notes by replay");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".idx")));
+        }
+        encrypted.addNoteAsync(1, note(3));
+        await(() -> encrypted.getMaxIndexedId() == 1);
+        assertEquals(List.of(1), encrypted.search(SECRET_TERM, 10));
+        encrypted.shutdown();
+    }
+
+    @Test
+    void scheduledCompactionMergesEverySegment() throws Exception {
+        NoteIndex index = new NoteIndex(directory, TITLES, cipher);
+        for (int id = 1; id <= 3; id++) {
+            index.addNoteAsync(id, note(id));
+        }
+        await(() -> index.getMaxIndexedId() == 3);
+        assertEquals(3, manifest().size(), "below the merge factor nothing is merged on add");
+
+        index.scheduleCompaction(0, 1, TimeUnit.HOURS);
+        await(() -> manifest().size() == 1);
+        assertEquals(List.of(3), index.search(SECRET_TERM, 10));
+        assertEquals(List.of(3, 2, 1), index.search("thyro*", 10));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(p -> p.toString().endsWith(".idx")).count());
+        }
+        index.shutdown();
+    }
+
+    @Test
+    void shutdownWaitsForQueuedNotes() throws Exception {
+        NoteIndex index = new NoteIndex(directory, TITLES, cipher);
+        for (int id = 1; id <= 20; id++) {
+            index.addNoteAsync(id, note(id));
+        }
+        index.shutdown();
+        assertEquals(20, index.getMaxIndexedId());
+        assertEquals(20, new NoteIndex(directory, TITLES, cipher).getMaxIndexedId());
+    }
+
+    private static void assertSearches(NoteIndex index) {
+        assertEquals(List.of(3), index.search(SECRET_TERM, 10));
+        assertEquals(List.of(3), index.search("PI> levothyroxine", 10));
+        assertEquals(List.of(), index.search("CC> levothyroxine", 10));
+        assertEquals(List.of(8, 6, 4, 2), index.search("\"free t4\"", 10));
+        assertEquals(List.of(8, 7, 6, 5, 4, 3, 2, 1), index.search("thyro*", 10));
+        for (int k = 0; k < SHARED_TERMS; k += 97) {
+            assertEquals(List.of(8, 7, 6, 5, 4, 3, 2, 1), index.search("CC> shared" + k, 10));
+        }
+        assertEquals(8, index.search("CC> shared*", 10).size());
+    }
+
+    private static String[] note(int id) {
+        String pi = "thyroid follow up " + id + (id % 2 == 0 ? ", free t4 normal" : ", t4 free of symptoms");
+        if (id == 3) pi += ", started " + SECRET_TERM;
+        StringBuilder cc = new StringBuilder("fatigue");
+        for (int k = 0; k < SHARED_TERMS; k++) cc.append(" shared").append(k);
+        return new String[] { cc.toString(), pi };
+    }
+
+    private List<String> manifest() {
+        try {
+            return Files.readAllLines(directory.resolve("segments.lst")).stream().filter(s -> !s.isBlank()).toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertFalse(System.currentTimeMillis() > deadline, "timed out waiting for the index");
+            Thread.sleep(10);
+        }
+    }
+}
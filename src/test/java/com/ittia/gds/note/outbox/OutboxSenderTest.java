@@ -0,0 +1,239 @@
+package com.ittia.gds.note.outbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/** Drives {@link OutboxSender} against a stand-in gateway on the loopback interface. */
+class OutboxSenderTest {
+
+    private static final long RESPONSE_TIMEOUT_MILLIS = 300;
+    private static final long BASE_BACKOFF_MILLIS = 20;
+    private static final String OK = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
+
+    @TempDir
+    Path directory;
+
+    private Gateway gateway;
+    private OutboxSender sender;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (sender != null) sender.stop();
+        if (gateway != null) gateway.close();
+    }
+
+    @Test
+    void acceptedEntriesArePipelinedAndDeleted() throws Exception {
+        Outbox outbox = new Outbox(directory);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(outbox.submitAsync("note " + i).get());
+        }
+        start(outbox, request -> OK);
+
+        await(() -> pendingCount(outbox) == 0);
+        assertEquals(List.of("note 0", "note 1", "note 2"), gateway.bodies());
+        assertEquals(1, gateway.connections.get(), "one batch, pipelined on one connection");
+    }
+
+    @Test
+    void serverErrorIsRetried() throws Exception {
+        Outbox outbox = new Outbox(directory);
+        assertTrue(outbox.submitAsync("note").get());
+        start(outbox, request -> request.attempt() == 1
+                ? "HTTP/1.1 503 Service Unavailable\r\nContent-Length: 4\r\n\r\nbusy"
+                : OK);
+
+        await(() -> pendingCount(outbox) == 0);
+        assertEquals(2, gateway.requests.size());
+        assertEquals(gateway.requests.get(0).key(), gateway.requests.get(1).key(), "same idempotency key");
+    }
+
+    @Test
+    void unansweredRequestTimesOutAndIsRetriedOnNewConnection() throws Exception {
+        Outbox outbox = new Outbox(directory);
+        assertTrue(outbox.submitAsync("note").get());
+        start(outbox, request -> request.attempt() == 1 ? null : OK);
+
+        await(() -> pendingCount(outbox) == 0);
+        assertEquals(2, gateway.requests.size());
+        assertTrue(gateway.connections.get() >= 2, "the timed-out connection is not reused");
+    }
+
+    @Test
+    void malformedResponseDoesNotStopTheSender() throws Exception {
+        Outbox outbox = new Outbox(directory);
+        assertTrue(outbox.submitAsync("note").get());
+        start(outbox, request -> request.attempt() == 1
+                ? "HTTP/1.1 abc Oops\r\nContent-Length: x\r\n\r\n"
+                : OK);
+
+        await(() -> pendingCount(outbox) == 0);
+        assertEquals(2, gateway.requests.size());
+    }
+
+    @Test
+    void unreadableEntryIsMovedToDeadLetters() throws Exception {
+        StreamingAead cipher = new StreamingAead(new SecretKeySpec(new byte[32], "AES"));
+        Outbox outbox = new Outbox(directory, cipher);
+        Path corrupt = directory.resolve("0000000000000001" + Outbox.SUFFIX);
+        byte[] sealed = cipher.encrypt("lost note".getBytes(StandardCharsets.UTF_8));
+        sealed[sealed.length - 1] ^= 1;
+        Files.write(corrupt, sealed);
+        assertTrue(outbox.submitAsync("good note").get());
+        start(outbox, request -> OK);
+
+        await(() -> pendingCount(outbox) == 0);
+        assertTrue(Files.exists(directory.resolve("dead").resolve(corrupt.getFileName())));
+        assertEquals(List.of("good note"), gateway.bodies());
+    }
+
+    private void start(Outbox outbox, Function<Request, String> responder) throws IOException {
+        gateway = new Gateway(responder);
+        sender = new OutboxSender(outbox, URI.create("http://127.0.0.1:" + gateway.port() + "/notes"),
+                RESPONSE_TIMEOUT_MILLIS, BASE_BACKOFF_MILLIS);
+        sender.start();
+    }
+
+    private static int pendingCount(Outbox outbox) {
+        try {
+            return outbox.pendingCount();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertFalse(System.currentTimeMillis() > deadline, "timed out waiting for the sender");
+            Thread.sleep(10);
+        }
+    }
+
+    /** One request as the gateway saw it; {@code attempt} counts requests with the same idempotency key. */
+    record Request(String key, String body, int attempt) {
+    }
+
+    /**
+     * A minimal HTTP/1.1 server: reads requests one after another on each connection and
+     * answers each with whatever the responder returns, or not at all for null.
+     */
+    private static final class Gateway implements AutoCloseable {
+        final List<Request> requests = new CopyOnWriteArrayList<>();
+        final AtomicInteger connections = new AtomicInteger();
+        private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private final ServerSocket server;
+        private final Function<Request, String> responder;
+
+        Gateway(Function<Request, String> responder) throws IOException {
+            this.responder = responder;
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::accept, "stand-in-gateway");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        List<String> bodies() {
+            List<String> bodies = new ArrayList<>();
+            for (Request r : requests) bodies.add(r.body());
+            return bodies;
+        }
+
+        private void accept() {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    sockets.add(socket);
+                    Thread t = new Thread(() -> serve(socket), "stand-in-connection");
+                    t.setDaemon(true);
+                    t.start();
+                }
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket; InputStream in = socket.getInputStream(); OutputStream out = socket.getOutputStream()) {
+                while (true) {
+                    String head = readHead(in);
+                    if (head == null) return;
+                    String key = "";
+                    int length = 0;
+                    for (String line : head.split("\r\n")) {
+                        int colon = line.indexOf(':');
+                        if (colon < 0) continue;
+                        String name = line.substring(0, colon).trim();
+                        String value = line.substring(colon + 1).trim();
+                        if (name.equalsIgnoreCase("Content-Length")) length = Integer.parseInt(value);
+                        if (name.equalsIgnoreCase("Idempotency-Key")) key = value;
+                    }
+                    String body = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+                    Request request = new Request(key, body,
+                            attempts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet());
+                    requests.add(request);
+                    String response = responder.apply(request);
+                    if (response != null) {
+                        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                // Closed by the sender
+            }
+        }
+
+        private static String readHead(InputStream in) throws IOException {
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            int matched = 0;
+            int b;
+            while ((b = in.read()) >= 0) {
+                head.write(b);
+                matched = b == "\r\n\r\n".charAt(matched) ? matched + 1 : (b == '\r' ? 1 : 0);
+                if (matched == 4) return head.toString(StandardCharsets.ISO_8859_1);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            for (Socket s : sockets) s.close();
+        }
+    }
+}
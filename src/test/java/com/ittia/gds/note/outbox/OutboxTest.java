@@ -0,0 +1,79 @@
+package com.ittia.gds.note.outbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/** Queueing, the pending bound, draining on shutdown, and encrypting what was queued before. */
+class OutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private final StreamingAead cipher = new StreamingAead(new SecretKeySpec(new byte[32], "AES"));
+
+    @Test
+    void shutdownWaitsForSubmittedNotes() throws Exception {
+        Outbox outbox = new Outbox(directory);
+        List<CompletableFuture<Boolean>> submissions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            submissions.add(outbox.submitAsync("note " + i));
+        }
+        outbox.shutdown();
+        for (CompletableFuture<Boolean> submission : submissions) {
+            assertTrue(submission.isDone() && submission.getNow(false));
+        }
+        Outbox reopened = new Outbox(directory);
+        List<Path> pending = reopened.pending();
+        assertEquals(200, pending.size());
+        assertEquals("note 0", new String(reopened.read(pending.get(0)), StandardCharsets.UTF_8));
+        assertEquals("note 199", new String(reopened.read(pending.get(199)), StandardCharsets.UTF_8));
+        reopened.shutdown();
+    }
+
+    @Test
+    void fullOutboxRefusesNewNotes() throws Exception {
+        Outbox outbox = new Outbox(directory);
+        for (int i = 0; i < Outbox.MAX_PENDING; i++) {
+            outbox.submitAsync("note " + i);
+        }
+        assertFalse(outbox.submitAsync("one too many").get());
+        assertEquals(Outbox.MAX_PENDING, outbox.pendingCount());
+        outbox.acknowledge(outbox.pending().get(0));
+        assertTrue(outbox.submitAsync("room again").get());
+        outbox.shutdown();
+    }
+
+    @Test
+    void notesQueuedBeforeEncryptionAreEncryptedOnOpen() throws Exception {
+        Outbox plain = new Outbox(directory);
+        plain.submitAsync("queued before the key existed").get();
+        plain.shutdown();
+        Path entry = plain.pending().get(0);
+        byte[] plainEntry = Files.readAllBytes(entry);
+
+        Outbox outbox = new Outbox(directory, cipher);
+        assertTrue(StreamingAead.isEncrypted(entry));
+        assertEquals("queued before the key existed", new String(outbox.read(entry), StandardCharsets.UTF_8));
+
+        Files.write(entry, plainEntry); // Once open, an unencrypted entry is refused
+        assertThrows(IOException.class, () -> outbox.read(entry));
+        outbox.shutdown();
+    }
+}
@@ -0,0 +1,79 @@
+package com.ittia.gds.ui.mainframe.changestring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** Placeholder and escape parsing, and the literal fallback for values that do not compile. */
+class AbbreviationTemplateTest {
+
+    @Test
+    void argumentsAreFilledInWhereverTheyAppear() {
+        AbbreviationTemplate template = AbbreviationTemplate.compile("BP {1}/{2} mmHg, repeat {1}");
+        assertEquals(2, template.getArity());
+        assertEquals("BP 120/80 mmHg, repeat 120", template.expand(new String[] { "120", "80" }));
+    }
+
+    @Test
+    void placeholdersMayBeAdjacentAndSpanLines() {
+        AbbreviationTemplate template = AbbreviationTemplate.compile("{2}{1}\n  - {3}\n");
+        assertEquals(3, template.getArity());
+        assertEquals("ba\n  - c\n", template.expand(new String[] { "a", "b", "c" }));
+    }
+
+    @Test
+    void doubledBracesAreLiteral() {
+        AbbreviationTemplate template = AbbreviationTemplate.compile("{{1}} is {1}, }}{{");
+        assertEquals(1, template.getArity());
+        assertEquals("{1} is x, }{", template.expand(new String[] { "x" }));
+    }
+
+    @Test
+    void dateAndTimeAreTakenAtExpansion() {
+        AbbreviationTemplate template = AbbreviationTemplate.compile("{ Date } {TIME}");
+        assertEquals(0, template.getArity());
+        String before = LocalDate.now().toString();
+        String expanded = template.expand(new String[0]);
+        String after = LocalDate.now().toString();
+        assertTrue(expanded.matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}"), expanded);
+        assertTrue(expanded.startsWith(before) || expanded.startsWith(after), expanded);
+    }
+
+    @Test
+    void plainValuesExpandToThemselves() {
+        assertEquals("", AbbreviationTemplate.compile("").expand(new String[0]));
+        AbbreviationTemplate template = AbbreviationTemplate.compile("no placeholders here");
+        assertEquals(0, template.getArity());
+        assertEquals("no placeholders here", template.expand(new String[0]));
+        assertEquals("no placeholders here", template.getSource());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "{", "a { b", "}", "a } b", "{0}", "{10}", "{x}", "{}", "{2}", "{1} {3}" })
+    void malformedValuesAreRejected(String source) {
+        assertThrows(IllegalArgumentException.class, () -> AbbreviationTemplate.compile(source));
+    }
+
+    @Test
+    void nullIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AbbreviationTemplate.compile(null));
+    }
+
+    @Test
+    void legacyValuesThatDoNotCompileExpandVerbatim() {
+        AbbreviationTemplate template = AbbreviationTemplate.compileOrLiteral("use {x} and } as typed");
+        assertEquals(0, template.getArity());
+        assertEquals("use {x} and } as typed", template.expand(new String[0]));
+        assertEquals("use {x} and } as typed", template.getSource());
+
+        AbbreviationTemplate valid = AbbreviationTemplate.compileOrLiteral("{1} mg");
+        assertEquals(1, valid.getArity());
+        assertEquals("5 mg", valid.expand(new String[] { "5" }));
+    }
+}
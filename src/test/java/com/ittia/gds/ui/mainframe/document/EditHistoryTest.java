@@ -0,0 +1,196 @@
+package com.ittia.gds.ui.mainframe.document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Drives a {@link PieceTable} and its {@link EditHistory} the way {@link SectionDocument} does,
+ * checking every undo and redo against snapshots of a plain StringBuilder.
+ */
+class EditHistoryTest {
+
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    /** The table and history, edited as SectionDocument's filter and replay do. */
+    private static final class Editor {
+        PieceTable table;
+        final EditHistory history;
+        long now = 1_000_000;
+
+        Editor(String text, long maxBytes) {
+            table = new PieceTable(text);
+            history = new EditHistory(maxBytes);
+        }
+
+        void edit(int start, int end, String text, long elapsed) {
+            now += elapsed;
+            int[] removed = table.spans(start, end);
+            int source = table.append(text);
+            TextDelta delta = table.replace(start, end, source, text.length(), true);
+            history.record(start, removed, end - start, source, text.length(), delta.insertedLineBreaks() > 0, now);
+        }
+
+        boolean undo() {
+            EditHistory.Edit edit = history.undo();
+            if (edit == null) return false;
+            table.replace(edit.start, edit.start + edit.insertedLength, edit.removed, false);
+            return true;
+        }
+
+        boolean redo() {
+            EditHistory.Edit edit = history.redo();
+            if (edit == null) return false;
+            table.replace(edit.start, edit.start + edit.removedLength, edit.inserted, false);
+            return true;
+        }
+
+        void compact() {
+            table.compact(history.spanLists());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = { 1, 2, 3, 4, 5, 6, 7, 8 })
+    void randomEditUndoRedoCompactMatchesSnapshots(long seed) {
+        Random random = new Random(seed);
+        String initial = PieceTableTest.randomText(random, random.nextInt(100));
+        Editor editor = new Editor(initial, UNBOUNDED);
+        StringBuilder model = new StringBuilder(initial);
+        ArrayDeque<String> undo = new ArrayDeque<>(); // Text before each entry
+        ArrayDeque<String> redo = new ArrayDeque<>();
+
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(10);
+            if (op < 6) {
+                int start = random.nextInt(model.length() + 1);
+                int end = op < 3 ? start : Math.min(model.length(), start + 1 + random.nextInt(15));
+                String text = op == 3 ? "" : PieceTableTest.randomText(random, op < 2 ? 1 : 1 + random.nextInt(20));
+                if (start == end && text.isEmpty()) continue;
+                undo.push(model.toString());
+                redo.clear();
+                // Each edit past the coalescing window is its own entry, so entries and snapshots pair up.
+                editor.edit(start, end, text, EditHistory.COALESCE_MILLIS);
+                model.replace(start, end, text);
+            } else if (op < 8) {
+                assertEquals(!undo.isEmpty(), editor.undo());
+                if (!undo.isEmpty()) {
+                    redo.push(model.toString());
+                    model.replace(0, model.length(), undo.pop());
+                }
+            } else if (op < 9) {
+                assertEquals(!redo.isEmpty(), editor.redo());
+                if (!redo.isEmpty()) {
+                    undo.push(model.toString());
+                    model.replace(0, model.length(), redo.pop());
+                }
+            } else {
+                editor.compact();
+            }
+            assertEquals(model.toString(), editor.table.toString());
+            assertEquals(!undo.isEmpty(), editor.history.canUndo());
+            assertEquals(!redo.isEmpty(), editor.history.canRedo());
+        }
+
+        // All the way back to the loaded text, and forward again.
+        String last = model.toString();
+        while (editor.undo()) { }
+        assertEquals(undo.isEmpty() ? last : undo.getLast(), editor.table.toString());
+        while (editor.redo()) { }
+        assertEquals(redo.isEmpty() ? last : redo.getLast(), editor.table.toString());
+    }
+
+    @Test
+    void typingWithinTheWindowIsOneEntry() {
+        Editor editor = new Editor("", UNBOUNDED);
+        editor.edit(0, 0, "a", 0);
+        editor.edit(1, 1, "b", 100);
+        editor.edit(2, 2, "c", 100);
+        assertTrue(editor.undo());
+        assertEquals("", editor.table.toString());
+        assertFalse(editor.history.canUndo());
+        assertTrue(editor.redo());
+        assertEquals("abc", editor.table.toString());
+    }
+
+    @Test
+    void pauseLineBreakAndPasteStartNewEntries() {
+        Editor editor = new Editor("", UNBOUNDED);
+        editor.edit(0, 0, "a", 0);
+        editor.edit(1, 1, "b", EditHistory.COALESCE_MILLIS); // After a pause
+        editor.edit(2, 2, "\n", 10);
+        editor.edit(3, 3, "c", 10);
+        editor.edit(4, 4, "pasted", 10);
+        editor.edit(10, 10, "d", 10);
+        String[] expected = { "ab\ncpasted", "ab\nc", "ab\n", "ab", "a", "" };
+        for (String text : expected) {
+            assertTrue(editor.undo());
+            assertEquals(text, editor.table.toString());
+        }
+        assertFalse(editor.undo());
+    }
+
+    @Test
+    void backspaceAndDeleteRunsAreOneEntryEach() {
+        Editor editor = new Editor("abcdef", UNBOUNDED);
+        editor.edit(3, 4, "", 0);   // Backspace "d" with the caret after it
+        editor.edit(2, 3, "", 100); // Backspace "c"
+        editor.edit(1, 2, "", 100); // Backspace "b"
+        assertEquals("aef", editor.table.toString());
+        editor.edit(1, 2, "", EditHistory.COALESCE_MILLIS); // Delete "e"
+        editor.edit(1, 2, "", 100);                          // Delete "f"
+        assertEquals("a", editor.table.toString());
+
+        assertTrue(editor.undo());
+        assertEquals("aef", editor.table.toString());
+        assertTrue(editor.undo());
+        assertEquals("abcdef", editor.table.toString());
+        assertFalse(editor.undo());
+    }
+
+    @Test
+    void editAfterUndoDropsRedo() {
+        Editor editor = new Editor("", UNBOUNDED);
+        editor.edit(0, 0, "one", 0);
+        editor.edit(3, 3, " two", EditHistory.COALESCE_MILLIS);
+        assertTrue(editor.undo());
+        editor.edit(3, 3, " three", EditHistory.COALESCE_MILLIS);
+        assertFalse(editor.history.canRedo());
+        assertFalse(editor.redo());
+        assertEquals("one three", editor.table.toString());
+    }
+
+    @Test
+    void budgetDropsOldestEntriesAndKeepsTheRestExact() {
+        Random random = new Random(11);
+        Editor editor = new Editor("", 4096);
+        StringBuilder model = new StringBuilder();
+        ArrayDeque<String> undo = new ArrayDeque<>();
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(model.length() + 1);
+            int end = Math.min(model.length(), start + random.nextInt(40));
+            String text = PieceTableTest.randomText(random, 1 + random.nextInt(100));
+            undo.push(model.toString());
+            editor.edit(start, end, text, EditHistory.COALESCE_MILLIS);
+            model.replace(start, end, text);
+            if (i % 37 == 0) editor.compact();
+        }
+        assertTrue(editor.history.retainedChars() < 4096 / 2, "retained " + editor.history.retainedChars());
+
+        int undone = 0;
+        while (editor.undo()) {
+            assertEquals(undo.pop(), editor.table.toString());
+            undone++;
+        }
+        assertTrue(undone >= 1 && undone < 500, "undone " + undone);
+        while (editor.redo()) { }
+        assertEquals(model.toString(), editor.table.toString());
+    }
+}
@@ -0,0 +1,119 @@
+package com.ittia.gds.ui.mainframe.document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** Random edits applied to a {@link PieceTable} and to a plain StringBuilder must read back alike. */
+class PieceTableTest {
+
+    @ParameterizedTest
+    @ValueSource(longs = { 1, 2, 3, 4, 5, 6, 7, 8 })
+    void randomEditsMatchStringBuilder(long seed) {
+        Random random = new Random(seed);
+        String initial = randomText(random, random.nextInt(200));
+        PieceTable table = new PieceTable(initial);
+        StringBuilder model = new StringBuilder(initial);
+        List<int[]> held = new ArrayList<>(); // Span lists kept alive across compactions, as the history does
+        List<String> heldText = new ArrayList<>();
+
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(10);
+            if (op < 7) {
+                int start = random.nextInt(model.length() + 1);
+                int end = op < 4 ? start : Math.min(model.length(), start + random.nextInt(20));
+                String text = op == 0 || op == 4 ? "" : randomText(random, op < 3 ? 1 : random.nextInt(30));
+                if (start == end && text.isEmpty()) continue;
+                int[] removed = table.spans(start, end);
+                String removedText = model.substring(start, end);
+                assertEquals(removedText, table.text(removed));
+                if (random.nextInt(4) == 0) {
+                    held.add(removed);
+                    heldText.add(removedText);
+                }
+
+                TextDelta delta = table.replace(start, end, table.append(text), text.length(), true);
+                model.replace(start, end, text);
+                assertEquals(new TextDelta(start, end - start, breaks(removedText), text.length(), breaks(text), true), delta);
+            } else if (op < 9 && model.length() > 0) {
+                // Re-insert text removed earlier, by its spans, as undo does.
+                int i = random.nextInt(held.size() + 1) - 1;
+                if (i < 0) continue;
+                int at = random.nextInt(model.length() + 1);
+                table.replace(at, at, held.get(i), false);
+                model.insert(at, heldText.get(i));
+            } else {
+                table.compact(held);
+                for (int i = 0; i < held.size(); i++) {
+                    assertEquals(heldText.get(i), table.text(held.get(i)), "span list remapped by compact");
+                }
+            }
+            if (step % 50 == 0) assertReadsMatch(model, table, random);
+        }
+        assertReadsMatch(model, table, random);
+    }
+
+    @Test
+    void compactKeepsOnlyReferencedText() {
+        PieceTable table = new PieceTable("");
+        for (int i = 0; i < 1000; i++) {
+            table.replace(0, table.length(), table.append("version " + i), ("version " + i).length(), true);
+        }
+        table.compact(List.of());
+        assertEquals("version 999", table.toString());
+        assertEquals("version 999".length(), table.addedLength());
+    }
+
+    @Test
+    void rangesAreChecked() {
+        PieceTable table = new PieceTable("abc");
+        assertThrows(IndexOutOfBoundsException.class, () -> table.charAt(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.subSequence(2, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.lineStart(1));
+    }
+
+    private static void assertReadsMatch(StringBuilder model, PieceTable table, Random random) {
+        String expected = model.toString();
+        assertEquals(expected, table.toString());
+        assertEquals(expected.length(), table.length());
+        assertEquals(breaks(expected), table.lineBreaks());
+        for (int i = 0; i < 20 && !expected.isEmpty(); i++) {
+            int index = random.nextInt(expected.length());
+            assertEquals(expected.charAt(index), table.charAt(index));
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(expected.length() - start + 1);
+            assertEquals(expected.substring(start, end), table.subSequence(start, end));
+            assertEquals(expected.substring(start, end), table.text(table.spans(start, end)));
+
+            int line = breaks(expected.substring(0, start));
+            assertEquals(line, table.lineOf(start));
+            assertEquals(expected.lastIndexOf('\n', start - 1) + 1, table.lineStart(line));
+            int lineEnd = expected.indexOf('\n', start);
+            assertEquals(lineEnd < 0 ? expected.length() : lineEnd, table.lineEnd(start));
+        }
+    }
+
+    static int breaks(String text) {
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') n++;
+        }
+        return n;
+    }
+
+    static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int r = random.nextInt(12);
+            sb.append(r == 0 ? '\n' : r == 1 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.ittia.gds.ui.mainframe.document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javafx.application.Platform;
+import javafx.scene.control.TextArea;
+
+/**
+ * Random edits through the text area, the document, undo, redo and load. The text area, the
+ * document's content and a StringBuilder that listeners keep up to date from the deltas alone
+ * must agree after every step. Runs on the FX thread of a headless toolkit (see build.gradle.kts).
+ */
+class SectionDocumentTest {
+
+    @BeforeAll
+    static void startToolkit() throws Exception {
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        try {
+            Platform.startup(() -> started.complete(null));
+        } catch (IllegalStateException e) {
+            started.complete(null); // Already running
+        }
+        started.get(10, TimeUnit.SECONDS);
+    }
+
+    /** A listener's copy of the section, built only from the deltas and the document's content. */
+    private static final class Mirror {
+        final StringBuilder text = new StringBuilder();
+
+        void apply(SectionDocument document, TextDelta delta) {
+            String removed = text.substring(delta.start(), delta.start() + delta.removedLength());
+            assertEquals(PieceTableTest.breaks(removed), delta.removedLineBreaks());
+            String inserted = document.getContent().subSequence(delta.start(), delta.insertedEnd());
+            assertEquals(PieceTableTest.breaks(inserted), delta.insertedLineBreaks());
+            text.replace(delta.start(), delta.start() + delta.removedLength(), inserted);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = { 1, 2, 3, 4 })
+    void randomEditsKeepTextAreaContentAndListenersInStep(long seed) throws Exception {
+        onFx(() -> {
+            Random random = new Random(seed);
+            TextArea area = new TextArea();
+            SectionDocument document = new SectionDocument(area);
+            Mirror mirror = new Mirror();
+            document.addListener(delta -> mirror.apply(document, delta));
+            String loaded = "";
+
+            for (int step = 0; step < 1500; step++) {
+                int length = area.getLength();
+                int op = random.nextInt(20);
+                if (op < 12) {
+                    int start = random.nextInt(length + 1);
+                    int end = op < 6 ? start : Math.min(length, start + random.nextInt(10));
+                    area.replaceText(start, end, PieceTableTest.randomText(random, op < 4 ? 1 : random.nextInt(12)));
+                } else if (op < 14) {
+                    int start = random.nextInt(length + 1);
+                    document.replace(start, start, PieceTableTest.randomText(random, 1 + random.nextInt(8)));
+                } else if (op < 17) {
+                    document.undo();
+                } else if (op < 19) {
+                    document.redo();
+                } else if (random.nextInt(10) == 0) {
+                    loaded = PieceTableTest.randomText(random, random.nextInt(300));
+                    document.load(loaded);
+                    assertFalse(document.canUndo(), "load starts a fresh history");
+                }
+                assertEquals(area.getText(), document.getContent().toString());
+                assertEquals(area.getText(), mirror.text.toString());
+            }
+
+            // Undo runs back to the last loaded text, and redo forward to where editing stopped.
+            String last = area.getText();
+            while (document.undo()) { }
+            assertEquals(loaded, area.getText());
+            while (document.redo()) { }
+            assertEquals(last, area.getText());
+            assertEquals(last, mirror.text.toString());
+        });
+    }
+
+    @Test
+    void controlCharactersAreDroppedFromTheMirrorToo() throws Exception {
+        onFx(() -> {
+            TextArea area = new TextArea();
+            SectionDocument document = new SectionDocument(area);
+            area.replaceText(0, 0, "a\u0001b\tc\u007f\nd");
+            assertEquals(area.getText(), document.getContent().toString());
+            assertEquals("ab\tc\nd", document.getContent().toString());
+        });
+    }
+
+    @Test
+    void listenerEditIsAppliedAfterEveryListenerSawTheChangeAndUndoesInOneStep() throws Exception {
+        onFx(() -> {
+            TextArea area = new TextArea();
+            SectionDocument document = new SectionDocument(area);
+            Mirror first = new Mirror();
+            Mirror last = new Mirror();
+            document.addListener(delta -> first.apply(document, delta));
+            // Expands ":bp " the way abbreviations are expanded: from a listener, through the document.
+            document.addListener(delta -> {
+                String text = document.getContent().toString();
+                if (delta.userEdit() && text.endsWith(":bp ")) {
+                    document.replace(text.length() - 4, text.length(), "blood pressure ");
+                }
+            });
+            document.addListener(delta -> last.apply(document, delta));
+
+            for (char c : "check :bp ".toCharArray()) {
+                area.replaceText(area.getLength(), area.getLength(), String.valueOf(c));
+            }
+            assertEquals("check blood pressure ", area.getText());
+            assertEquals(area.getText(), first.text.toString());
+            assertEquals(area.getText(), last.text.toString());
+
+            assertTrue(document.undo());
+            assertEquals("check :bp ", area.getText());
+            assertEquals(area.getText(), last.text.toString());
+        });
+    }
+
+    private interface FxAction {
+        void run() throws Exception;
+    }
+
+    private static void onFx(FxAction action) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                action.run();
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        try {
+            done.get(60, TimeUnit.SECONDS);
+        } catch (java.util.concurrent.ExecutionException e) {
+            if (e.getCause() instanceof Error error) throw error;
+            throw (Exception) e.getCause();
+        }
+    }
+}
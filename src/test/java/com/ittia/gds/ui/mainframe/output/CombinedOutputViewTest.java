@@ -0,0 +1,232 @@
+package com.ittia.gds.ui.mainframe.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javafx.application.Platform;
+import javafx.scene.control.TextArea;
+
+import com.ittia.gds.ui.mainframe.document.SectionDocument;
+
+/**
+ * A section change rebuilds only the paragraphs on the lines it touched: the paragraphs before
+ * and after it, and every other section's, are the same objects afterwards. After every edit the
+ * list must equal the note rebuilt from scratch. Runs on the FX thread of a headless toolkit.
+ */
+class CombinedOutputViewTest {
+
+    private static final String[] TITLES = { "CC>", "PI>", "A>" };
+
+    private CombinedOutputView view;
+    private SectionDocument[] documents;
+
+    @BeforeAll
+    static void startToolkit() throws Exception {
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        try {
+            Platform.startup(() -> started.complete(null));
+        } catch (IllegalStateException e) {
+            started.complete(null); // Already running
+        }
+        started.get(10, TimeUnit.SECONDS);
+    }
+
+    private void open(String... texts) {
+        view = new CombinedOutputView(TITLES);
+        documents = new SectionDocument[TITLES.length];
+        for (int i = 0; i < TITLES.length; i++) {
+            final int section = i;
+            documents[i] = new SectionDocument(new TextArea());
+            documents[i].addListener(delta -> view.updateSection(section, documents[section].getContent(), delta));
+            documents[i].load(texts[i]);
+        }
+        assertMatchesFullRebuild();
+    }
+
+    @Test
+    void typingInsideALineRebuildsOnlyThatLine() throws Exception {
+        onFx(() -> {
+            open("head", "a\nb\nc\nd\ne", "tail");
+            List<CombinedOutputView.Paragraph> before = new ArrayList<>(view.getItems());
+
+            documents[1].replace(4, 4, "X"); // "c" -> "Xc"
+
+            assertEquals(1, view.lastRebuilt());
+            assertMatchesFullRebuild();
+            assertEquals("Xc", view.getItems().get(3).text());
+            assertReused(before, 0, 0, 3);
+            assertReused(before, 4, 4, 3);
+        });
+    }
+
+    @Test
+    void splittingALineRebuildsItsTwoHalves() throws Exception {
+        onFx(() -> {
+            open("head", "a\nb\ncc\nd\ne", "tail");
+            List<CombinedOutputView.Paragraph> before = new ArrayList<>(view.getItems());
+
+            documents[1].replace(5, 5, "\n"); // "cc" -> "c" / "c"
+
+            assertEquals(2, view.lastRebuilt());
+            assertMatchesFullRebuild();
+            assertReused(before, 0, 0, 3);
+            assertReused(before, 4, 5, 3); // Shifted down by the new line, not rebuilt
+        });
+    }
+
+    @Test
+    void joiningTwoLinesRebuildsTheJoinedLine() throws Exception {
+        onFx(() -> {
+            open("head", "a\nb\nc\nd\ne", "tail");
+            List<CombinedOutputView.Paragraph> before = new ArrayList<>(view.getItems());
+
+            documents[1].replace(3, 4, ""); // "b" + "c" -> "bc"
+
+            assertEquals(1, view.lastRebuilt());
+            assertMatchesFullRebuild();
+            assertEquals("bc", view.getItems().get(2).text());
+            assertReused(before, 0, 0, 2);
+            assertReused(before, 4, 3, 3);
+        });
+    }
+
+    @Test
+    void deletingAcrossLinesRebuildsOnlyWhatIsLeftOfThem() throws Exception {
+        onFx(() -> {
+            open("head", "a\nbb\ncc\ndd\ne", "tail");
+            List<CombinedOutputView.Paragraph> before = new ArrayList<>(view.getItems());
+
+            documents[1].replace(3, 9, ""); // "bb cc dd" -> "bd"
+
+            assertEquals(1, view.lastRebuilt());
+            assertMatchesFullRebuild();
+            assertEquals("bd", view.getItems().get(2).text());
+            assertReused(before, 0, 0, 2);
+            assertReused(before, 5, 3, 2);
+        });
+    }
+
+    @Test
+    void whitespaceAtTheEdgesIsTrimmedAway() throws Exception {
+        onFx(() -> {
+            open("head", "a\nb\nc\nd\ne", "tail");
+            List<CombinedOutputView.Paragraph> before = new ArrayList<>(view.getItems());
+
+            documents[1].replace(0, 0, "\n  "); // The section now starts on its second line
+            assertEquals(1, view.lastRebuilt());
+            assertMatchesFullRebuild();
+            assertReused(before, 0, 0, before.size());
+
+            int end = documents[1].getContent().length();
+            documents[1].replace(end, end, "\n");
+            assertEquals(1, view.lastRebuilt());
+            assertMatchesFullRebuild();
+            assertReused(before, 0, 0, before.size());
+
+            documents[1].replace(end + 1, end + 1, "f"); // The old last line is no longer clipped
+            assertEquals(2, view.lastRebuilt());
+            assertMatchesFullRebuild();
+            assertReused(before, 0, 0, 5);
+            assertReused(before, 6, 7, 1);
+        });
+    }
+
+    @Test
+    void emptyingASectionRemovesItsParagraphs() throws Exception {
+        onFx(() -> {
+            open("head", "a\nb", "tail");
+            documents[1].replace(0, documents[1].getContent().length(), " \n ");
+            assertMatchesFullRebuild();
+            assertEquals(2, view.getItems().size());
+
+            documents[1].replace(1, 1, "x");
+            assertMatchesFullRebuild();
+            assertEquals("PI> x", view.getItems().get(1).text());
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = { 1, 2, 3, 4 })
+    void randomEditsMatchAFullRebuild(long seed) throws Exception {
+        onFx(() -> {
+            Random random = new Random(seed);
+            open("", " first\n\nsecond ", "x");
+            for (int step = 0; step < 2000; step++) {
+                SectionDocument document = documents[random.nextInt(documents.length)];
+                int length = document.getContent().length();
+                int start = random.nextInt(length + 1);
+                if (random.nextInt(8) == 0) {
+                    document.undo();
+                } else if (random.nextBoolean() && start < length) {
+                    document.replace(start, Math.min(length, start + 1 + random.nextInt(6)), "");
+                } else {
+                    document.replace(start, start, randomText(random));
+                }
+                assertMatchesFullRebuild();
+            }
+        });
+    }
+
+    private static String randomText(Random random) {
+        String alphabet = "ab \n";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private void assertMatchesFullRebuild() {
+        List<CombinedOutputView.Paragraph> expected = new ArrayList<>();
+        for (int i = 0; i < documents.length; i++) {
+            String text = documents[i].getContent().toString().trim();
+            if (text.isEmpty()) continue;
+            String[] lines = text.split("\n", -1);
+            for (int j = 0; j < lines.length; j++) {
+                expected.add(new CombinedOutputView.Paragraph(i, j == 0 ? TITLES[i] + " " + lines[j] : lines[j], j == 0));
+            }
+        }
+        assertEquals(expected, view.getItems());
+    }
+
+    // The `count` paragraphs at `from` before the edit are the very objects now at `to`.
+    private void assertReused(List<CombinedOutputView.Paragraph> before, int from, int to, int count) {
+        for (int i = 0; i < count; i++) {
+            assertSame(before.get(from + i), view.getItems().get(to + i), "paragraph " + (from + i));
+        }
+    }
+
+    private interface FxAction {
+        void run() throws Exception;
+    }
+
+    private static void onFx(FxAction action) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                action.run();
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        try {
+            done.get(60, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) throw error;
+            throw (Exception) e.getCause();
+        }
+    }
+}
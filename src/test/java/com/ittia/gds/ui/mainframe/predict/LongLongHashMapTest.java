@@ -0,0 +1,75 @@
+package com.ittia.gds.ui.mainframe.predict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** Random puts and increments through many rehashes must agree with a HashMap. */
+class LongLongHashMapTest {
+
+    @Test
+    void randomUpdatesMatchHashMapAcrossGrowth() {
+        Random random = new Random(1);
+        LongLongHashMap map = new LongLongHashMap(1);
+        Map<Long, Long> model = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // A narrow key range repeats keys; a few huge keys test the hash spread.
+            long key = random.nextInt(10) == 0 ? random.nextLong() : 1 + random.nextInt(50_000);
+            if (key == LongLongHashMap.EMPTY_KEY) continue;
+            if (random.nextBoolean()) {
+                long value = random.nextLong();
+                map.put(key, value);
+                model.put(key, value);
+            } else {
+                long expected = model.merge(key, 3L, Long::sum);
+                assertEquals(expected, map.addTo(key, 3));
+            }
+            if (i % 10_000 == 0) assertSameEntries(model, map);
+        }
+        assertSameEntries(model, map);
+        for (int i = 0; i < 1000; i++) {
+            long key = 100_000 + i;
+            assertEquals(-7, map.get(key, -7));
+        }
+    }
+
+    @Test
+    void keysThatCollideProbePastEachOther() {
+        // Multiples of a large power of two agree in every low bit before mixing.
+        LongLongHashMap map = new LongLongHashMap(16);
+        for (long i = 1; i <= 1000; i++) {
+            map.put(i << 40, i);
+        }
+        for (long i = 1; i <= 1000; i++) {
+            assertEquals(i, map.get(i << 40, 0));
+        }
+        assertEquals(1000, map.size());
+    }
+
+    @Test
+    void zeroKeyIsReserved() {
+        LongLongHashMap map = new LongLongHashMap(16);
+        assertThrows(IllegalArgumentException.class, () -> map.put(LongLongHashMap.EMPTY_KEY, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.addTo(LongLongHashMap.EMPTY_KEY, 1));
+        assertEquals(5, map.get(LongLongHashMap.EMPTY_KEY, 5));
+        assertEquals(0, map.size());
+    }
+
+    private static void assertSameEntries(Map<Long, Long> model, LongLongHashMap map) {
+        assertEquals(model.size(), map.size());
+        for (Map.Entry<Long, Long> entry : model.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey(), Long.MIN_VALUE), "key " + entry.getKey());
+        }
+        int[] visited = { 0 };
+        map.forEach((key, value) -> {
+            assertEquals(model.get(key), value);
+            visited[0]++;
+        });
+        assertEquals(model.size(), visited[0]);
+    }
+}
@@ -0,0 +1,159 @@
+package com.ittia.gds.ui.mainframe.predict;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ittia.gds.crypto.StreamingAead;
+
+/** Trigram prediction with bigram backoff, and the model's save/load round trip. */
+class PhrasePredictorTest {
+
+    private static final String[] VOCABULARY = {
+        "blood", "pressure", "stable", "heart", "rate", "regular", "no", "chest", "pain", "denies",
+        "fever", "cough", "follow", "up", "in", "two", "weeks", "continue", "current", "medication",
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void continuesAPhraseSeenAtLeastTwice() {
+        PhrasePredictor predictor = new PhrasePredictor(2);
+        predictor.train(new String[] { "blood pressure stable, heart rate regular", null });
+        assertEquals("", predictor.predict(0, "blood "), "seen once is not enough");
+
+        predictor.train(new String[] { "blood pressure stable, heart rate regular", null });
+        assertEquals("pressure stable, heart rate", predictor.predict(0, "blood "));
+        assertEquals("pressure stable, heart rate", predictor.predict(0, "Blood "), "case-insensitive");
+        assertEquals("", predictor.predict(1, "blood "), "sections are separate");
+        assertEquals("", predictor.predict(0, "unknown "));
+        assertEquals("", predictor.predict(5, "blood "));
+    }
+
+    @Test
+    void completesThePartialWordAtTheCaret() {
+        PhrasePredictor predictor = trained("follow up in two weeks", "follow up in two weeks");
+        assertEquals("llow up in two", predictor.predict(0, "fo"));
+        assertEquals("p in two weeks", predictor.predict(0, "follow u"));
+        assertEquals("", predictor.predict(0, "follow up"), "nothing left of the word to complete");
+        assertEquals("in two weeks", predictor.predict(0, "follow up "));
+        assertEquals("", predictor.predict(0, "follow ux"));
+    }
+
+    @Test
+    void lineStartIsPartOfTheContext() {
+        PhrasePredictor predictor = trained("no chest pain\ndenies fever", "denies fever\nno chest pain");
+        // Both lines opened twice: the tie goes to the word learned first.
+        assertEquals("no chest pain", predictor.predict(0, ""));
+        assertEquals("no chest pain", predictor.predict(0, "denies fever\n"));
+        assertEquals("fever", predictor.predict(0, "denies "));
+        assertEquals("chest pain", predictor.predict(0, "no "));
+    }
+
+    @Test
+    void unseenTrigramBacksOffToTheBigram() {
+        PhrasePredictor predictor = trained("check blood pressure stable", "today blood pressure stable");
+        // (check, blood) was seen once, (blood) twice: the bigram decides.
+        assertEquals("pressure stable", predictor.predict(0, "also check blood "));
+        assertEquals("pressure stable", predictor.predict(0, "never seen blood "));
+
+        // A trigram seen often enough wins over a more frequent bigram.
+        PhrasePredictor both = trained("a blood test", "a blood test", "x blood pressure", "y blood pressure", "z blood pressure");
+        assertEquals("test", both.predict(0, "a blood "));
+        assertEquals("pressure", both.predict(0, "q blood "));
+    }
+
+    @Test
+    void saveAndLoadKeepEveryPrediction() throws Exception {
+        PhrasePredictor predictor = randomlyTrained(new Random(1));
+        Path plain = directory.resolve("phrases.bin");
+        predictor.save(plain);
+        assertSamePredictions(predictor, PhrasePredictor.loadOrCreate(plain, 3), new Random(2));
+
+        StreamingAead cipher = new StreamingAead(new SecretKeySpec(new byte[32], "AES"));
+        Path encrypted = directory.resolve("encrypted.bin");
+        predictor.save(encrypted, cipher);
+        assertTrue(StreamingAead.isEncrypted(encrypted));
+        assertFalse(new String(Files.readAllBytes(encrypted), StandardCharsets.ISO_8859_1).contains("pressure"));
+        PhrasePredictor loaded = PhrasePredictor.loadOrCreate(encrypted, 3, cipher);
+        assertSamePredictions(predictor, loaded, new Random(3));
+        assertThrows(IOException.class, () -> PhrasePredictor.loadOrCreate(plain, 3, cipher),
+                "an unencrypted model is refused once a cipher is in use");
+
+        // Training carries on from the loaded counts.
+        predictor.train(new String[] { "rate regular medication", "", "" });
+        loaded.train(new String[] { "rate regular medication", "", "" });
+        assertSamePredictions(predictor, loaded, new Random(4));
+    }
+
+    @Test
+    void missingFileGivesAnEmptyModelAndForeignFileIsRejected() throws Exception {
+        PhrasePredictor empty = PhrasePredictor.loadOrCreate(directory.resolve("none.bin"), 2);
+        assertEquals("", empty.predict(0, ""));
+
+        Path foreign = directory.resolve("foreign.bin");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(foreign))) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        }
+        assertThrows(IOException.class, () -> PhrasePredictor.loadOrCreate(foreign, 2));
+    }
+
+    private static PhrasePredictor trained(String... notes) {
+        PhrasePredictor predictor = new PhrasePredictor(1);
+        for (String note : notes) {
+            predictor.train(new String[] { note });
+        }
+        return predictor;
+    }
+
+    private static PhrasePredictor randomlyTrained(Random random) {
+        PhrasePredictor predictor = new PhrasePredictor(3);
+        for (int note = 0; note < 300; note++) {
+            String[] sections = new String[3];
+            for (int s = 0; s < sections.length; s++) {
+                sections[s] = randomText(random, 5 + random.nextInt(30));
+            }
+            predictor.train(sections);
+        }
+        return predictor;
+    }
+
+    private static void assertSamePredictions(PhrasePredictor expected, PhrasePredictor actual, Random random) {
+        int predicted = 0;
+        for (int i = 0; i < 3000; i++) {
+            int section = random.nextInt(3);
+            String context = randomText(random, random.nextInt(4));
+            if (random.nextBoolean()) context += " ";
+            String prediction = expected.predict(section, context);
+            if (!prediction.isEmpty()) predicted++;
+            assertEquals(prediction, actual.predict(section, context), "after \"" + context + "\"");
+        }
+        assertTrue(predicted > 100, "only " + predicted + " contexts predicted anything");
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(random.nextInt(12) == 0 ? '\n' : ' ');
+            // Skewed towards the first words, so some continuations clearly dominate.
+            int index = Math.min(random.nextInt(VOCABULARY.length), random.nextInt(VOCABULARY.length));
+            sb.append(VOCABULARY[index]);
+        }
+        return sb.toString();
+    }
+}
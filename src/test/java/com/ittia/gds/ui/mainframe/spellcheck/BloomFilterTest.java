@@ -0,0 +1,53 @@
+package com.ittia.gds.ui.mainframe.spellcheck;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** A Bloom filter may answer yes for a term it never saw, but never no for one it did. */
+class BloomFilterTest {
+
+    private static final int TERMS = 50_000;
+
+    @Test
+    void everyAddedTermIsFound() {
+        BloomFilter filter = new BloomFilter(TERMS, 0.01);
+        for (int i = 0; i < TERMS; i++) {
+            filter.add("term" + i);
+        }
+        for (int i = 0; i < TERMS; i++) {
+            assertTrue(filter.mightContain("term" + i), "false negative for term" + i);
+        }
+    }
+
+    @Test
+    void falsePositivesStayNearTheTargetRate() {
+        BloomFilter filter = new BloomFilter(TERMS, 0.01);
+        for (int i = 0; i < TERMS; i++) {
+            filter.add("term" + i);
+        }
+        int positives = 0;
+        for (int i = 0; i < TERMS; i++) {
+            if (filter.mightContain("other" + i)) positives++;
+        }
+        assertTrue(positives < TERMS * 0.02, positives + " false positives");
+    }
+
+    @Test
+    void rangeLookupMatchesWholeTermLookup() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.add("metformin");
+        String text = "started metformin today";
+        assertTrue(filter.mightContain(text, 8, 17));
+        assertTrue(filter.mightContain(new StringBuilder("metformin")));
+        assertFalse(filter.mightContain(text, 8, 16));
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(0, 0.01);
+        assertFalse(filter.mightContain("anything"));
+        assertTrue(filter.sizeInBytes() >= Long.BYTES);
+    }
+}
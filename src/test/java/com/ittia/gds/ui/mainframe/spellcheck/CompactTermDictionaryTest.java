@@ -0,0 +1,91 @@
+package com.ittia.gds.ui.mainframe.spellcheck;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** Front-coded lookups must agree with a TreeSet, across block heads and long shared prefixes. */
+class CompactTermDictionaryTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 15, 16, 17, 32, 33, 1000 })
+    void lookupsMatchTreeSet(int count) {
+        Random random = new Random(count);
+        TreeSet<String> terms = new TreeSet<>();
+        while (terms.size() < count) {
+            terms.add(randomTerm(random));
+        }
+        CompactTermDictionary dictionary = CompactTermDictionary.build(new ArrayList<>(terms));
+        assertEquals(count, dictionary.size());
+        for (String term : terms) {
+            assertTrue(dictionary.contains(term), term);
+        }
+        for (int i = 0; i < 5000; i++) {
+            String probe = randomTerm(random);
+            assertEquals(terms.contains(probe), dictionary.contains(probe), probe);
+        }
+    }
+
+    @Test
+    void neighboursOfEveryTermAreNotFound() {
+        // Runs of terms that share most of their bytes, straddling the 16-term block boundaries.
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            terms.add(String.format("hypo%03d", i));
+            terms.add(String.format("hypo%03dx", i));
+        }
+        terms.sort(null);
+        CompactTermDictionary dictionary = CompactTermDictionary.build(terms);
+        for (String term : terms) {
+            assertTrue(dictionary.contains(term), term);
+            assertFalse(dictionary.contains(term + "a"), term + "a");
+            assertFalse(dictionary.contains(term.substring(0, term.length() - 1) + "~"), term);
+        }
+        assertFalse(dictionary.contains(""));
+        assertFalse(dictionary.contains("a"));
+        assertFalse(dictionary.contains("zzz"));
+        assertFalse(dictionary.contains("hypo"));
+    }
+
+    @Test
+    void termsLongerThanTheScanBufferAreDecoded() {
+        String stem = "x".repeat(200);
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            terms.add(stem + (char) ('a' + i % 26) + i);
+        }
+        terms.sort(null);
+        CompactTermDictionary dictionary = CompactTermDictionary.build(terms);
+        for (String term : terms) {
+            assertTrue(dictionary.contains(term), term);
+        }
+        assertFalse(dictionary.contains(stem));
+        assertTrue(dictionary.sizeInBytes() < 40 * 200, "prefixes are shared: " + dictionary.sizeInBytes());
+    }
+
+    @Test
+    void emptyDictionaryContainsNothing() {
+        CompactTermDictionary dictionary = CompactTermDictionary.build(List.of());
+        assertEquals(0, dictionary.size());
+        assertFalse(dictionary.contains("abdomen"));
+    }
+
+    private static String randomTerm(Random random) {
+        // A small alphabet and short length give many shared prefixes and many near misses.
+        int length = 1 + random.nextInt(8);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ittia.gds.ui.mainframe.spellcheck;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Only near misses of known terms are reported, and every known term is always accepted. */
+class MedicalSpellCheckerTest {
+
+    private final MedicalSpellChecker checker =
+            MedicalSpellChecker.fromTerms(List.of("Levothyroxine", "metformin", "hypertension", "hypotension", "metformin"));
+
+    @Test
+    void knownTermsAreAcceptedInAnyCase() {
+        assertEquals(4, checker.size());
+        assertTrue(checker.isKnown("levothyroxine"));
+        assertTrue(checker.isKnown("METFORMIN"));
+        assertFalse(checker.isKnown("metformi"));
+    }
+
+    @Test
+    void nearMissesAreReportedWithTheirPositionAndSuggestions() {
+        String text = "Started Levothyroxin and metfromin; hypertension well controlled.";
+        List<MedicalSpellChecker.Misspelling> found = checker.check(text);
+        assertEquals(2, found.size());
+
+        MedicalSpellChecker.Misspelling first = found.get(0);
+        assertEquals("Levothyroxin", first.word());
+        assertEquals(text.indexOf("Levothyroxin"), first.start());
+        assertEquals(first.start() + first.word().length(), first.end());
+        assertEquals(List.of("levothyroxine"), first.suggestions());
+
+        assertEquals("metfromin", found.get(1).word());
+        assertEquals(List.of("metformin"), found.get(1).suggestions());
+    }
+
+    @Test
+    void proseAndShortWordsAreNotFlagged() {
+        assertEquals(List.of(), checker.check("Patient feels well today, no new complaints. BP ok."));
+        assertEquals(List.of(), checker.check(""));
+    }
+
+    @Test
+    void suggestionsCoverEveryKindOfSingleEdit() {
+        assertEquals(List.of("metformin"), checker.suggest("metfformin")); // Delete
+        assertEquals(List.of("metformin"), checker.suggest("emtformin"));  // Transpose
+        assertEquals(List.of("metformin"), checker.suggest("metfxrmin"));  // Replace
+        assertEquals(List.of("metformin"), checker.suggest("metfrmin"));   // Insert
+        assertTrue(checker.suggest("hyportension").containsAll(List.of("hypertension", "hypotension")));
+        assertEquals(List.of(), checker.suggest("unrelated"));
+    }
+
+    @Test
+    void bundledVocabularyLoadsEveryTermAndSiteListIsAdded(@TempDir Path directory) throws Exception {
+        List<String> bundled;
+        try (InputStream in = MedicalSpellChecker.class.getResourceAsStream(MedicalSpellChecker.DEFAULT_RESOURCE)) {
+            bundled = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#")).toList();
+        }
+        Path site = directory.resolve("medical_terms.txt");
+        Files.writeString(site, "# site terms\nzolpidemx\n\n");
+
+        MedicalSpellChecker loaded = MedicalSpellChecker.load(site);
+        for (String term : bundled) {
+            assertTrue(loaded.isKnown(term), term);
+        }
+        assertTrue(loaded.isKnown("zolpidemx"));
+        assertTrue(loaded.sizeInBytes() > 0);
+        assertTrue(MedicalSpellChecker.load(directory.resolve("missing.txt")).size() < loaded.size());
+    }
+}